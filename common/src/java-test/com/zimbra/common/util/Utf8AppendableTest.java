@@ -0,0 +1,62 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+
+package com.zimbra.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class Utf8AppendableTest {
+
+    private static byte[] encode(int bufferSize, CharSequence... parts) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Utf8Appendable utf8 = new Utf8Appendable(baos, bufferSize);
+        for (CharSequence part : parts) {
+            if (part.length() == 1) {
+                utf8.append(part.charAt(0));
+            } else {
+                utf8.append(part);
+            }
+        }
+        utf8.flush();
+        return baos.toByteArray();
+    }
+
+    @Test
+    public void matchesStringEncoding() throws Exception {
+        String text = "<m su=\"café 日本 😀\">plain ascii text</m>";
+        assertArrayEquals(text.getBytes(Charsets.UTF_8), encode(16, text));
+        assertArrayEquals(text.getBytes(Charsets.UTF_8), encode(8192, text));
+    }
+
+    @Test
+    public void surrogatePairAcrossAppends() throws Exception {
+        assertArrayEquals("a😀b".getBytes(Charsets.UTF_8), encode(16, "a\ud83d", "\ude00", "b"));
+    }
+
+    @Test
+    public void unpairedSurrogates() throws Exception {
+        // same replacement as String.getBytes()
+        assertArrayEquals("?x?".getBytes(Charsets.UTF_8), encode(16, "\ud83dx", "\ude00"));
+        assertArrayEquals("ab?".getBytes(Charsets.UTF_8), encode(16, "ab", "\ud83d"));
+    }
+}
@@ -81,6 +81,8 @@ public final class LC {
     @Supported
     public static final KnownKey zimbra_mysql_shutdown_timeout = KnownKey.newKey(60);
 
+    public static final KnownKey zimbra_db_in_clause_batch_size = KnownKey.newKey(400);
+
     @Supported
     public static final KnownKey zimbra_ldap_userdn = KnownKey.newKey("uid=zimbra,cn=admins,cn=zimbra");
 
@@ -146,6 +148,8 @@ public final class LC {
 
     @Supported
     public static final KnownKey zimbra_store_sweeper_max_age = KnownKey.newKey(480); // 480 mins = 8 hours
+    public static final KnownKey zimbra_store_content_addressed = KnownKey.newKey(false);
+    public static final KnownKey zimbra_store_content_addressed_sweep_interval = KnownKey.newKey(1440); // minutes
 
     @Supported
     public static final KnownKey zimbra_store_copy_buffer_size_kb = KnownKey.newKey(16); // KB
@@ -181,6 +185,10 @@ public final class LC {
     @Supported
     public static final KnownKey zimbra_reindex_threads = KnownKey.newKey(10);
 
+    public static final KnownKey zimbra_index_queue_size = KnownKey.newKey(10000);
+    public static final KnownKey zimbra_index_batch_slice_items = KnownKey.newKey(1000);
+    public static final KnownKey zimbra_index_lmtp_defer_threshold = KnownKey.newKey(0); // 0 = never defer
+
     @Supported
     public static final KnownKey zimbra_index_max_readers = KnownKey.newKey(35);
 
@@ -196,6 +204,9 @@ public final class LC {
     @Supported
     public static final KnownKey zimbra_index_reader_cache_ttl = KnownKey.newKey(300);
 
+    public static final KnownKey zimbra_index_nrt_enabled = KnownKey.newKey(false);
+    public static final KnownKey zimbra_index_searcher_refresh_interval = KnownKey.newKey(0); // ms
+
     @Supported
     public static final KnownKey zimbra_index_deferred_items_failure_delay = KnownKey.newKey(300);
 
@@ -243,6 +254,17 @@ public final class LC {
     public static final KnownKey zimbra_index_rfc822address_max_token_length = KnownKey.newKey(256);
     public static final KnownKey zimbra_index_rfc822address_max_token_count = KnownKey.newKey(512);
 
+    // attachment text extraction stage; see com.zimbra.cs.mime.AttachmentExtractor
+    public static final KnownKey zimbra_index_extraction_threads = KnownKey.newKey(4);
+    public static final KnownKey zimbra_index_extraction_queue_size = KnownKey.newKey(100);
+    public static final KnownKey zimbra_index_extraction_async_min_size = KnownKey.newKey(64 * 1024);
+    public static final KnownKey zimbra_index_extraction_timeout = KnownKey.newKey(60000);
+    public static final KnownKey zimbra_index_extraction_timeout_by_type = KnownKey.newKey("");
+    public static final KnownKey zimbra_index_extraction_max_size = KnownKey.newKey(50 * 1024 * 1024);
+    public static final KnownKey zimbra_index_extraction_max_size_by_type = KnownKey.newKey("");
+    public static final KnownKey zimbra_index_extraction_cache_size = KnownKey.newKey(16 * 1024 * 1024);
+    public static final KnownKey zimbra_index_extraction_cache_min_size = KnownKey.newKey(8 * 1024);
+
     public static final KnownKey zimbra_rights_delegated_admin_supported = KnownKey.newKey(true);
 
     @Supported
@@ -428,6 +450,9 @@ public final class LC {
     @Supported
     public static final KnownKey ldap_cache_account_maxage = KnownKey.newKey(15);
 
+    // seconds to remember that an account id or name does not exist; 0 disables negative caching
+    public static final KnownKey ldap_cache_account_nonexisting_maxage_seconds = KnownKey.newKey(0);
+
     @Supported
     public static final KnownKey ldap_cache_cos_maxsize = KnownKey.newKey(100);
 
@@ -661,6 +686,8 @@ public final class LC {
     @Supported
     public static final KnownKey calendar_cache_range_months = KnownKey.newKey(3);
     public static final KnownKey calendar_cache_max_stale_items = KnownKey.newKey(10);
+    public static final KnownKey calendar_cache_expansion_lru_size = KnownKey.newKey(5000);
+    public static final KnownKey calendar_cache_expansion_bucket_days = KnownKey.newKey(7);
     public static final KnownKey calendar_exchange_form_auth_url = KnownKey.newKey("/exchweb/bin/auth/owaauth.dll");
     public static final KnownKey calendar_item_get_max_retries = KnownKey.newKey(100);
 
@@ -1070,6 +1097,7 @@ public final class LC {
 
     public static final KnownKey zimbra_lmtp_validate_messages = KnownKey.newKey(true);
     public static final KnownKey zimbra_lmtp_max_line_length = KnownKey.newKey(10240);
+    public static final KnownKey zimbra_lmtp_delivery_threads = KnownKey.newKey(4);
 
     public static final KnownKey data_source_scheduling_enabled = KnownKey.newKey(true);
     public static final KnownKey data_source_eas_sync_email = KnownKey.newKey(true);
@@ -1239,6 +1267,12 @@ public final class LC {
     @Supported
     public static final KnownKey external_store_local_cache_min_lifetime = KnownKey.newKey(Constants.MILLIS_PER_MINUTE);
 
+    // background download of blobs that are about to be read; 0 threads disables prefetching
+    public static final KnownKey external_store_prefetch_threads = KnownKey.newKey(2);
+    public static final KnownKey external_store_prefetch_queue_size = KnownKey.newKey(100);
+    public static final KnownKey external_store_prefetch_imap_select = KnownKey.newKey(20);
+    public static final KnownKey external_store_prefetch_search_hits = KnownKey.newKey(10);
+
     @Supported
     public static final KnownKey external_store_delete_max_ioexceptions = KnownKey.newKey(25);
 
@@ -16,10 +16,11 @@
  */
 package com.zimbra.common.soap;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -39,6 +40,7 @@ import com.google.common.collect.Lists;
 import com.google.common.io.Files;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.StringUtil;
+import com.zimbra.common.util.Utf8Appendable;
 import com.zimbra.common.util.ZimbraLog;
 
 /**
@@ -472,14 +474,28 @@ public abstract class Element implements Cloneable {
 
     // dumping the element hierarchy
     public byte[] toUTF8() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
         try {
-            return toString().getBytes("utf-8");
-        } catch (UnsupportedEncodingException e) {
-            // should *never* happen since UTF-8 and UTF-16 cover the exact same character space
-            return null;
+            outputUTF8(baos);
+        } catch (IOException e) {
+            // should really not happen with a ByteArrayOutputStream, just log it
+            ZimbraLog.soap.error("Caught IOException: ", e);
         }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Serializes this <tt>Element</tt> as UTF-8 straight to <code>out</code>, without first building the
+     * whole document as a <code>String</code>.  <code>out</code> itself is not flushed.
+     */
+    public void outputUTF8(OutputStream out) throws IOException {
+        Utf8Appendable utf8 = new Utf8Appendable(out, UTF8_BUFFER_SIZE);
+        marshal(utf8);
+        utf8.flush();
     }
 
+    private static final int UTF8_BUFFER_SIZE = 8192;
+
     public void output(Appendable out) throws IOException {
         marshal(out);
     }
@@ -0,0 +1,137 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+package com.zimbra.common.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An <code>Appendable</code> that encodes characters to UTF-8 as they are appended and writes them to an
+ * <code>OutputStream</code> through a fixed-size byte buffer.  Serializing a large <code>Element</code>
+ * through this class never materializes the whole document as a <code>String</code> or <code>byte[]</code>,
+ * and allocates nothing per append.
+ * <p>
+ * Unpaired surrogates are written as <tt>'?'</tt>, just like <code>String.getBytes("utf-8")</code>.
+ * {@link #flush()} writes out buffered bytes but does not flush the underlying stream.
+ */
+public class Utf8Appendable implements Appendable {
+
+    private final OutputStream mOut;
+    private final byte[] mBuffer;
+    private int mCount;
+    private char mHighSurrogate;  // first half of a surrogate pair split across appends, or 0
+
+    public Utf8Appendable(OutputStream out, int bufferSize) {
+        mOut = out;
+        // room for at least one 4-byte sequence
+        mBuffer = new byte[Math.max(bufferSize, 16)];
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        if (csq == null) {
+            csq = "null";
+        }
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        if (csq == null) {
+            csq = "null";
+        }
+        for (int i = start; i < end; i++) {
+            char c = csq.charAt(i);
+            if (c < 0x80 && mHighSurrogate == 0) {
+                if (mCount == mBuffer.length) {
+                    drain();
+                }
+                mBuffer[mCount++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        encode(c);
+        return this;
+    }
+
+    private void encode(char c) throws IOException {
+        if (mHighSurrogate != 0) {
+            char high = mHighSurrogate;
+            mHighSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int cp = Character.toCodePoint(high, c);
+                reserve(4);
+                mBuffer[mCount++] = (byte) (0xf0 | (cp >> 18));
+                mBuffer[mCount++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                mBuffer[mCount++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                mBuffer[mCount++] = (byte) (0x80 | (cp & 0x3f));
+                return;
+            }
+            reserve(1);
+            mBuffer[mCount++] = '?';
+        }
+        if (c < 0x80) {
+            reserve(1);
+            mBuffer[mCount++] = (byte) c;
+        } else if (c < 0x800) {
+            reserve(2);
+            mBuffer[mCount++] = (byte) (0xc0 | (c >> 6));
+            mBuffer[mCount++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c)) {
+            mHighSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            reserve(1);
+            mBuffer[mCount++] = '?';
+        } else {
+            reserve(3);
+            mBuffer[mCount++] = (byte) (0xe0 | (c >> 12));
+            mBuffer[mCount++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            mBuffer[mCount++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    private void reserve(int len) throws IOException {
+        if (mCount + len > mBuffer.length) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (mCount > 0) {
+            mOut.write(mBuffer, 0, mCount);
+            mCount = 0;
+        }
+    }
+
+    /**
+     * Writes out all buffered bytes, including a dangling high surrogate as <tt>'?'</tt>.
+     */
+    public void flush() throws IOException {
+        if (mHighSurrogate != 0) {
+            mHighSurrogate = 0;
+            reserve(1);
+            mBuffer[mCount++] = '?';
+        }
+        drain();
+    }
+}
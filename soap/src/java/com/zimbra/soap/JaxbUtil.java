@@ -21,7 +21,8 @@ import java.io.ByteArrayInputStream;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
@@ -44,7 +45,6 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.zimbra.common.mailbox.BaseItemInfo;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.soap.AccountConstants;
@@ -73,8 +73,13 @@ public final class JaxbUtil {
     private static final String ADMIN_JAXB_PACKAGE = "com.zimbra.soap.admin.message";
     private static final String MAIL_JAXB_PACKAGE = "com.zimbra.soap.mail.message";
     private static final String ADMIN_EXT_JAXB_PACKAGE = "com.zimbra.soap.adminext.message";
-    private static JAXBContext JAXB_CONTEXT;
-    private static Map <Class<?>,JAXBContext> classJaxbContexts;
+    private static final ConcurrentMap<Class<?>, JAXBContext> classJaxbContexts =
+            new ConcurrentHashMap<Class<?>, JAXBContext>();
+
+    // Marshallers and unmarshallers are not thread safe but are cheap to reuse, so each thread keeps one of each
+    // for the shared context.  A slot is emptied while its (un)marshaller is in use, which keeps nested calls safe.
+    private static final ThreadLocal<Marshaller> contextMarshaller = new ThreadLocal<Marshaller>();
+    private static final ThreadLocal<Unmarshaller> contextUnmarshaller = new ThreadLocal<Unmarshaller>();
 
     static {
         MESSAGE_CLASSES = new Class<?>[] {
@@ -1151,11 +1156,21 @@ public final class JaxbUtil {
             com.zimbra.soap.admin.message.GetAddressListInfoRequest.class,
             com.zimbra.soap.admin.message.GetAddressListInfoResponse.class
         };
+    }
 
-        try {
-            JAXB_CONTEXT = JAXBContext.newInstance(MESSAGE_CLASSES);
-        } catch (JAXBException e) {
-            throw new RuntimeException("Unable to initialize JAXB", e);
+    /**
+     * The context over all of {@code MESSAGE_CLASSES} is expensive to build, so it is only built the first time
+     * it is needed rather than whenever this class is loaded.
+     */
+    private static final class ContextHolder {
+        private static final JAXBContext JAXB_CONTEXT;
+
+        static {
+            try {
+                JAXB_CONTEXT = JAXBContext.newInstance(MESSAGE_CLASSES);
+            } catch (JAXBException e) {
+                throw new RuntimeException("Unable to initialize JAXB", e);
+            }
         }
     }
 
@@ -1199,15 +1214,16 @@ public final class JaxbUtil {
             return JacksonUtil.jaxbToJSONElement(o);
         }
         try {
-            Marshaller marshaller;
+            DocumentResult dr = new DocumentResult();
             if (useContextMarshaller) {
-                marshaller = getContext().createMarshaller();
+                Marshaller marshaller = borrowContextMarshaller();
+                marshaller.marshal(o, dr);
+                contextMarshaller.set(marshaller);
             } else {
-                marshaller = createMarshaller(o.getClass());
+                Marshaller marshaller = createMarshaller(o.getClass());
+                // marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+                marshaller.marshal(o, dr);
             }
-            // marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            DocumentResult dr = new DocumentResult();
-            marshaller.marshal(o, dr);
             Document theDoc = dr.getDocument();
             org.dom4j.Element rootElem = theDoc.getRootElement();
             if (removePrefixes) {
@@ -1257,18 +1273,40 @@ public final class JaxbUtil {
 
     private static JAXBContext getJaxbContext(Class<?> klass)
     throws JAXBException {
-        JAXBContext jaxb = null;
-        if (JaxbUtil.classJaxbContexts == null) {
-            JaxbUtil.classJaxbContexts = Maps.newHashMap();
-        }
-        if (JaxbUtil.classJaxbContexts.containsKey(klass)) {
-            jaxb = JaxbUtil.classJaxbContexts.get(klass);
-        } else {
+        JAXBContext jaxb = classJaxbContexts.get(klass);
+        if (jaxb == null) {
+            // building a context is expensive; if two threads race, one of the two contexts is simply dropped
             jaxb = JAXBContext.newInstance(klass);
+            JAXBContext prev = classJaxbContexts.putIfAbsent(klass, jaxb);
+            if (prev != null) {
+                jaxb = prev;
+            }
         }
         return jaxb;
     }
 
+    /**
+     * Takes this thread's marshaller for the shared context, creating one if there is none.  Hand it back with
+     * {@code contextMarshaller.set()} once done; one that failed mid-marshal is simply dropped.
+     */
+    private static Marshaller borrowContextMarshaller() throws JAXBException {
+        Marshaller marshaller = contextMarshaller.get();
+        if (marshaller == null) {
+            return getContext().createMarshaller();
+        }
+        contextMarshaller.set(null);
+        return marshaller;
+    }
+
+    private static Unmarshaller borrowContextUnmarshaller() throws JAXBException {
+        Unmarshaller unmarshaller = contextUnmarshaller.get();
+        if (unmarshaller == null) {
+            return getContext().createUnmarshaller();
+        }
+        contextUnmarshaller.set(null);
+        return unmarshaller;
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public static Element jaxbToNamedElement(String name, String namespace, Object o, Element.ElementFactory factory)
     throws ServiceException {
@@ -1557,8 +1595,10 @@ public final class JaxbUtil {
             // LOG.warn("Dom to Xml:\n" + W3cDomUtil.asXML(document);
             Unmarshaller unmarshaller;
             if (jaxbClassInContext) {
-                unmarshaller = getContext().createUnmarshaller();
-                return (T) unmarshaller.unmarshal(doc);
+                unmarshaller = borrowContextUnmarshaller();
+                T ret = (T) unmarshaller.unmarshal(doc);
+                contextUnmarshaller.set(unmarshaller);
+                return ret;
             } else {
                 org.w3c.dom.Element docElem = doc.getDocumentElement();
                 unmarshaller = createUnmarshaller(klass);
@@ -1642,10 +1682,7 @@ public final class JaxbUtil {
     }
 
     private static JAXBContext getContext() {
-        if (JAXB_CONTEXT == null) {
-            throw new IllegalStateException("JAXB has not been initialized");
-        }
-        return JAXB_CONTEXT;
+        return ContextHolder.JAXB_CONTEXT;
     }
 
     public static CreateItemNotification getCreatedItemSOAP(BaseItemInfo mod) throws ServiceException {
@@ -0,0 +1,83 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+package com.zimbra.cs.account.cache;
+
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zimbra.common.account.Key.AccountBy;
+import com.zimbra.common.localconfig.LC;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.account.MockProvisioning;
+import com.zimbra.cs.account.Provisioning;
+import com.zimbra.cs.mailbox.MailboxTestUtil;
+
+public final class AccountCacheTest {
+
+    @BeforeClass
+    public static void init() throws Exception {
+        MailboxTestUtil.initServer();
+        LC.zimbra_attrs_directory.setDefault(MailboxTestUtil.getZimbraServerDir("") + "conf/attrs");
+        Provisioning.setInstance(new MockProvisioning());
+    }
+
+    @Test
+    public void nonExisting() throws Exception {
+        AccountCache cache = new AccountCache(100, 0, 60000);
+        Assert.assertFalse(cache.isNonExisting(AccountBy.name, "nobody@example.com"));
+        cache.putNonExisting(AccountBy.name, "Nobody@Example.com");
+        Assert.assertTrue(cache.isNonExisting(AccountBy.name, "nobody@example.com"));
+        Assert.assertFalse(cache.isNonExisting(AccountBy.id, "nobody@example.com"));
+
+        cache.removeNonExisting(AccountBy.name, "nobody@example.com");
+        Assert.assertFalse(cache.isNonExisting(AccountBy.name, "nobody@example.com"));
+
+        cache.putNonExisting(AccountBy.id, "1234");
+        cache.clear();
+        Assert.assertFalse(cache.isNonExisting(AccountBy.id, "1234"));
+    }
+
+    @Test
+    public void nonExistingDisabled() throws Exception {
+        AccountCache cache = new AccountCache(100, 0);
+        cache.putNonExisting(AccountBy.name, "nobody@example.com");
+        Assert.assertFalse(cache.isNonExisting(AccountBy.name, "nobody@example.com"));
+    }
+
+    @Test
+    public void hitRateByKeyType() throws Exception {
+        Account account = Provisioning.getInstance().createAccount("test@zimbra.com", "secret",
+                new HashMap<String, Object>());
+        AccountCache cache = new AccountCache(100, 0);
+        cache.put(account);
+        Assert.assertEquals(1, cache.getSize());
+
+        // id: one hit, one miss
+        Assert.assertSame(account, cache.getById(account.getId()));
+        Assert.assertNull(cache.getById("1234"));
+        // name: one hit
+        Assert.assertSame(account, cache.getByName("Test@Zimbra.com"));
+
+        Assert.assertEquals(50, cache.getHitRate(AccountBy.id), 0);
+        Assert.assertEquals(100, cache.getHitRate(AccountBy.name), 0);
+        Assert.assertEquals(0, cache.getHitRate(AccountBy.foreignPrincipal), 0);
+        Assert.assertEquals(200.0 / 3, cache.getHitRate(), 0.001);
+    }
+}
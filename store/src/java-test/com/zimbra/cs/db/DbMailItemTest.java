@@ -16,6 +16,7 @@
  */
 package com.zimbra.cs.db;
 
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -366,4 +367,17 @@ public final class DbMailItemTest {
         tombstones = DbMailItem.readTombstones(mbox, conn, 0, types);
         Assert.assertEquals(tombstones.size(), 12);
     }
+
+    @Test
+    public void readTombstonesWithUuids() throws Exception {
+        int now = (int) (System.currentTimeMillis() / 1000);
+        DbUtil.executeUpdate(conn, "INSERT INTO mboxgroup1.tombstone " +
+                "(mailbox_id, sequence, date, type, ids) " +
+                "VALUES(?, ?, ?, ?, ?)", mbox.getId(), 100, now, MailItem.Type.MESSAGE.toByte(),
+                "41:d4c7a5b6-uuid,bogus,42:,,43");
+        Set<MailItem.Type> types = new HashSet<MailItem.Type>();
+        types.add(MailItem.Type.MESSAGE);
+        List<Integer> tombstones = DbMailItem.readTombstones(mbox, conn, 0, types);
+        Assert.assertEquals(Arrays.asList(41, 42, 43), tombstones);
+    }
 }
\ No newline at end of file
@@ -5,8 +5,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -238,6 +240,25 @@ public class EphemeralStoreTest {
         assertTrue(result.isEmpty());
     }
 
+    @Test
+    public void testBatch() throws Exception {
+        EphemeralKey foo = new EphemeralKey("foo");
+        EphemeralKey bar = new EphemeralKey("bar");
+        EphemeralLocation target = new TestLocation();
+        store.set(new EphemeralInput(bar, "old"), target);
+        store.apply(Arrays.asList(
+                EphemeralChange.update(new EphemeralInput(foo, "1")),
+                EphemeralChange.update(new EphemeralInput(foo, "2")),
+                EphemeralChange.delete(foo, "1"),
+                EphemeralChange.set(new EphemeralInput(bar, "new"))), target);
+
+        List<EphemeralResult> results = store.get(Arrays.asList(foo, bar, new EphemeralKey("baz")), target);
+        assertEquals(3, results.size());
+        assertArrayEquals(new String[] {"2"}, results.get(0).getValues());
+        assertEquals("new", results.get(1).getValue());
+        assertTrue(results.get(2).isEmpty());
+    }
+
     @Test
     public void testGetAttrs() throws Exception {
         MailboxTestUtil.initServer();
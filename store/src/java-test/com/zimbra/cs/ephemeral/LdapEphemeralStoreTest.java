@@ -3,6 +3,7 @@ package com.zimbra.cs.ephemeral;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -96,6 +97,51 @@ public class LdapEphemeralStoreTest {
         verifyAttrMap(expected);
     }
 
+    @Test
+    public void testBatch() throws Exception {
+        EphemeralLocation location = new TestLocation();
+        store.apply(Arrays.asList(
+                EphemeralChange.update(new EphemeralInput(new EphemeralKey("foo"), "bar")),
+                EphemeralChange.update(new EphemeralInput(new EphemeralKey("foo"), "baz")),
+                EphemeralChange.set(new EphemeralInput(new EphemeralKey("qux"), "quux"))), location);
+        assertEquals(1, helper.getNumChanges());
+        verifyAttrMap(makeMap("+foo", "bar", "baz"));
+        verifyAttrMap(makeMap("qux", "quux"));
+    }
+
+    @Test
+    public void testBatchPurgeAndUpdate() throws Exception {
+        EphemeralLocation location = new TestLocation();
+        EphemeralInput input = new EphemeralInput(new EphemeralKey("foo", "1"), "bar");
+        input.setExpiration(new AbsoluteExpiration(1000L));
+        store.update(input, location);
+        long live = System.currentTimeMillis() + 60000;
+        input = new EphemeralInput(new EphemeralKey("foo", "3"), "qux");
+        input.setExpiration(new AbsoluteExpiration(live));
+        store.update(input, location);
+        helper.reset();
+        input = new EphemeralInput(new EphemeralKey("foo", "2"), "baz");
+        input.setExpiration(new AbsoluteExpiration(live));
+        store.apply(Arrays.asList(
+                EphemeralChange.purgeExpired(new EphemeralKey("foo")),
+                EphemeralChange.update(input)), location);
+        // the purge and the update go out in the same modification
+        assertEquals(1, helper.getNumChanges());
+        // only the expired value is purged
+        verifyAttrMap(makeMap("-foo", "bar|1|1000"));
+        verifyAttrMap(makeMap("+foo", "baz|2|" + live));
+    }
+
+    @Test
+    public void testBatchSameKey() throws Exception {
+        EphemeralLocation location = new TestLocation();
+        store.apply(Arrays.asList(
+                EphemeralChange.set(new EphemeralInput(new EphemeralKey("foo"), "bar")),
+                EphemeralChange.set(new EphemeralInput(new EphemeralKey("foo"), "baz"))), location);
+        // the second set replaces the first one, so the first one is written on its own
+        assertEquals(2, helper.getNumChanges());
+    }
+
     @Test
     public void testHasKey() throws Exception {
         EphemeralLocation target = new TestLocation();
@@ -165,6 +211,7 @@ public class LdapEphemeralStoreTest {
         private InMemoryEphemeralStore store;
         private EphemeralLocation location;
         private AttributeEncoder encoder;
+        private int numChanges;
 
         public MockLdapHelper() {
             store = new InMemoryEphemeralStore();
@@ -176,6 +223,16 @@ public class LdapEphemeralStoreTest {
             return attrs;
         }
 
+        public int getNumChanges() {
+            return numChanges;
+        }
+
+        @Override
+        void reset() {
+            super.reset();
+            numChanges = 0;
+        }
+
         @Override
         void setLocation(EphemeralLocation location) throws ServiceException {
             this.location = location;
@@ -205,6 +262,7 @@ public class LdapEphemeralStoreTest {
 
         @Override
         void executeChange() throws ServiceException {
+            numChanges++;
             for (Map.Entry<String, Object> kv: attrs.entrySet()) {
                 String key = kv.getKey();
                 String[] values = objectToStringArray(kv.getValue());
@@ -0,0 +1,61 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+package com.zimbra.cs.fb;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.zimbra.cs.fb.FreeBusy.Interval;
+import com.zimbra.cs.fb.FreeBusy.IntervalList;
+import com.zimbra.cs.mailbox.calendar.IcalXmlStrMap;
+
+public final class FreeBusyTest {
+
+    private static String dump(IntervalList list) {
+        StringBuilder sb = new StringBuilder();
+        for (Interval ival : list) {
+            sb.append(ival.getStart()).append('-').append(ival.getEnd()).append(':').append(ival.getStatus()).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    @Test
+    public void addOutOfOrder() {
+        IntervalList list = new IntervalList(0, 100);
+        list.addInterval(new Interval(50, 60, IcalXmlStrMap.FBTYPE_BUSY));
+        list.addInterval(new Interval(10, 20, IcalXmlStrMap.FBTYPE_BUSY_TENTATIVE));
+        list.addInterval(new Interval(20, 30, IcalXmlStrMap.FBTYPE_BUSY_UNAVAILABLE));
+        list.addInterval(new Interval(15, 35, IcalXmlStrMap.FBTYPE_BUSY));
+        Assert.assertEquals("0-10:FREE 10-15:BUSY-TENTATIVE 15-20:BUSY 20-30:BUSY-UNAVAILABLE 30-35:BUSY " +
+                "35-50:FREE 50-60:BUSY 60-100:FREE", dump(list));
+    }
+
+    @Test
+    public void addInOrder() {
+        IntervalList list = new IntervalList(0, 100);
+        list.addInterval(new Interval(10, 20, IcalXmlStrMap.FBTYPE_BUSY));
+        list.addInterval(new Interval(20, 30, IcalXmlStrMap.FBTYPE_BUSY));
+        list.addInterval(new Interval(25, 40, IcalXmlStrMap.FBTYPE_BUSY_TENTATIVE));
+        list.addInterval(new Interval(60, 120, IcalXmlStrMap.FBTYPE_BUSY));
+        Assert.assertEquals("0-10:FREE 10-30:BUSY 30-40:BUSY-TENTATIVE 40-60:FREE 60-100:BUSY", dump(list));
+
+        // an earlier interval after the scan has moved on still lands in the right place
+        list.addInterval(new Interval(0, 10, IcalXmlStrMap.FBTYPE_BUSY));
+        list.addInterval(new Interval(40, 60, IcalXmlStrMap.FBTYPE_BUSY));
+        Assert.assertEquals("0-30:BUSY 30-40:BUSY-TENTATIVE 40-100:BUSY", dump(list));
+    }
+}
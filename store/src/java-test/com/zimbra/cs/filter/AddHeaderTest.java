@@ -703,6 +703,49 @@ public class AddHeaderTest {
         }
     }
 
+    /*
+     * Header tests after an addheader see the new header, even if the header was looked up before.
+     */
+    @Test
+    public void testHeaderTestAfterAddHeader() {
+        String sampleBaseMsg = "Subject: example\n"
+                + "to: test@zimbra.com\n";
+
+        String filterScriptUser = "require [\"editheader\", \"tag\"];\n"
+                + "if not header :is \"X-New-Header\" \"new\" {\n"
+                + "  addheader \"X-New-Header\" \"new\";\n"
+                + "}\n"
+                + "if header :is \"X-New-Header\" \"new\" {\n"
+                + "  tag \"seen\";\n"
+                + "}\n";
+
+        try {
+            Account acct1 = Provisioning.getInstance().get(Key.AccountBy.name, "test@zimbra.com");
+            Mailbox mbox1 = MailboxManager.getInstance().getMailboxByAccount(acct1);
+
+            RuleManager.clearCachedRules(acct1);
+            acct1.unsetAdminSieveScriptBefore();
+            acct1.unsetMailSieveScript();
+            acct1.unsetAdminSieveScriptAfter();
+            acct1.setSieveEditHeaderEnabled(true);
+            acct1.setAdminSieveScriptBefore(filterScriptUser);
+
+            RuleManager.applyRulesToIncomingMessage(
+                    new OperationContext(mbox1), mbox1, new ParsedMessage(
+                            sampleBaseMsg.getBytes(), false), 0, acct1.getName(),
+                            null, new DeliveryContext(),
+                            Mailbox.ID_FOLDER_INBOX, true);
+            Integer itemId = mbox1.getItemIds(null, Mailbox.ID_FOLDER_INBOX).getIds(MailItem.Type.MESSAGE).get(0);
+            Message message = mbox1.getMessageById(null, itemId);
+            Assert.assertEquals("new", message.getMimeMessage().getHeader("X-New-Header", null));
+            String[] tags = message.getTags();
+            Assert.assertEquals(1, tags.length);
+            Assert.assertEquals("seen", tags[0]);
+        } catch (Exception e) {
+            fail("No exception should be thrown: " + e.getMessage());
+        }
+    }
+
     /*
      * Try adding an immutable header when the ldap value contains whites spaces. Check if spaces are ignored.
      */
@@ -97,6 +97,56 @@ public class BodyTest {
         test(script, new String(message.getBytes("ISO2022JP")));
     }
 
+    @Test
+    public void multipleBodyTests() throws Exception {
+        String script  = "if allof (body :contains \"LINE ONE line two\",\n"
+                + "          body :contains :comparator \"i;octet\" \"HTML text\",\n"
+                + "          not body :contains :comparator \"i;octet\" \"html text\",\n"
+                + "          not body :contains \"attached secret\") {\n"
+                + "  flag \"flagged\";\n"
+                + "}\n";
+
+        String message = "From: test@zimbra.com\n"
+                + "Subject: test\n"
+                + "Content-Type: multipart/mixed; boundary=\"b1\"\n"
+                + "\n"
+                + "--b1\n"
+                + "Content-Type: text/plain\n"
+                + "\n"
+                + "line one\r\n"
+                + "\r\n"
+                + "line two\n"
+                + "--b1\n"
+                + "Content-Type: text/html\n"
+                + "\n"
+                + "<p>HTML text</p>\n"
+                + "--b1\n"
+                + "Content-Type: text/plain\n"
+                + "Content-Disposition: attachment; filename=secret.txt\n"
+                + "\n"
+                + "attached secret\n"
+                + "--b1--\n";
+        test(script, message);
+    }
+
+    @Test
+    public void longTextBody() throws Exception {
+        String script  = "if anyof (body :contains \"END of the body\") {\n"
+                + "  flag \"flagged\";\n"
+                + "}\n";
+
+        StringBuilder message = new StringBuilder("From: test@zimbra.com\n"
+                + "Subject: test\n"
+                + "Content-Type: text/plain\n"
+                + "\n");
+        for (int i = 0; i < 40000; i++) {
+            message.append("padding padding padding padding padding\n");
+        }
+        // past the text kept in memory for body tests
+        message.append("end of\n\nthe body\n");
+        test(script, message.toString());
+    }
+
     private void test(String script, String message) throws Exception {
         Account account = Provisioning.getInstance().getAccount(MockProvisioning.DEFAULT_ACCOUNT_ID);
         RuleManager.clearCachedRules(account);
@@ -1,5 +1,6 @@
 package com.zimbra.cs.filter;
 
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -73,4 +74,18 @@ public class ZimbraMailAdapterTest {
         Assert.assertNotNull(nonSharedDeliveryCtxt.getIncomingBlob());
         Assert.assertEquals(blobFile, nonSharedDeliveryCtxt.getMailBoxSpecificBlob(mboxId));
     }
+
+    @Test
+    public void containsStreamed() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 8190; i++) {
+            text.append('x');
+        }
+        // the match and the collapsed line breaks straddle the 8K reads
+        text.append("Line\r\n\r\nBreak");
+        Assert.assertTrue(ZimbraMailAdapter.contains(new StringReader(text.toString()), "line break", true));
+        Assert.assertFalse(ZimbraMailAdapter.contains(new StringReader(text.toString()), "line break", false));
+        Assert.assertTrue(ZimbraMailAdapter.contains(new StringReader(text.toString()), "Line Break", false));
+        Assert.assertFalse(ZimbraMailAdapter.contains(new StringReader(text.toString()), "line  break", true));
+    }
 }
@@ -1,5 +1,9 @@
 package com.zimbra.cs.imap;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.HashMap;
 import java.util.Set;
 
@@ -61,4 +65,40 @@ public class ImapFolderTest {
         Assert.assertNotNull(i4set);
         Assert.assertEquals(3, i4set.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void serializeCompact() throws Exception {
+        ImapCredentials creds = new ImapCredentials(acct, ImapCredentials.EnabledHack.NONE);
+        ImapPath path = new ImapPath("trash", creds);
+
+        ImapFolder i4folder = new ImapFolder(path, (byte) 0, null);
+        i4folder.cache(new ImapMessage(1, Type.MESSAGE, 11, 0, new String[] { "foo", "bar" }), false);
+        i4folder.cache(new ImapMessage(2, Type.CONTACT, 12, 0, null), true);
+        i4folder.cache(new ImapMessage(3, Type.MESSAGE, 13, 0, new String[] { "foo", "bar" }), false);
+        // equal tag lists are shared between messages
+        Assert.assertSame(i4folder.getBySequence(1).tags, i4folder.getBySequence(3).tags);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(i4folder);
+        out.close();
+        ImapFolder copy = (ImapFolder) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        Assert.assertEquals(3, copy.getSize());
+        for (int seq = 1; seq <= 3; seq++) {
+            ImapMessage expected = i4folder.getBySequence(seq);
+            ImapMessage actual = copy.getBySequence(seq);
+            Assert.assertEquals(expected.msgId, actual.msgId);
+            Assert.assertEquals(expected.imapUid, actual.imapUid);
+            Assert.assertEquals(expected.sflags, actual.sflags);
+            Assert.assertEquals(expected.flags, actual.flags);
+            Assert.assertEquals(seq, actual.sequence);
+        }
+        Assert.assertEquals(Type.CONTACT, copy.getBySequence(2).getType());
+        Assert.assertNull(copy.getBySequence(2).tags);
+        Assert.assertEquals("bar", copy.getBySequence(3).tags[1]);
+        Assert.assertSame(copy.getBySequence(1).tags, copy.getBySequence(3).tags);
+        Assert.assertEquals(3, copy.getByImapId(13).msgId);
+    }
+}
@@ -1,5 +1,6 @@
 package com.zimbra.cs.imap;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -16,6 +17,7 @@ import org.junit.Test;
 import com.zimbra.common.util.Pair;
 import com.zimbra.cs.account.Account;
 import com.zimbra.cs.account.Provisioning;
+import com.zimbra.cs.mailbox.Flag;
 import com.zimbra.cs.mailbox.Folder;
 import com.zimbra.cs.mailbox.MailItem;
 import com.zimbra.cs.mailbox.Mailbox;
@@ -140,4 +142,41 @@ public class LocalImapMailboxStoreTest {
         }
         Assert.assertFalse(paginated.getSecond());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUpdateImapFolder() throws Exception {
+        mbox.beginTrackingSync();
+        Folder folder = mbox.createFolder(null, "TestUpdateImapFolder", new Folder.FolderOptions().setDefaultView(MailItem.Type.MESSAGE));
+        int folderId = folder.getId();
+        List<Integer> ids = new LinkedList<Integer>();
+        for (int i = 1; i <= 5; i++) {
+            ids.add(TestUtil.addMessage(mbox, folderId, String.format("imap message %s", i), System.currentTimeMillis()).getId());
+        }
+        LocalImapMailboxStore localStore = new LocalImapMailboxStore(mbox);
+        List<ImapMessage> snapshot = mbox.openImapFolder(null, folderId);
+        int modseq = mbox.getFolderById(null, folderId).getImapMODSEQ();
+
+        // nothing changed since the snapshot
+        List<ImapMessage> actual = localStore.updateImapFolder(null, folder.getFolderItemIdentifier(), snapshot, modseq, 100);
+        Assert.assertEquals(5, actual.size());
+
+        TestUtil.addMessage(mbox, folderId, "imap message 6", System.currentTimeMillis());
+        mbox.alterTag(null, ids.get(0), MailItem.Type.MESSAGE, Flag.FlagInfo.FLAGGED, true, null);
+        mbox.move(null, ids.get(1), MailItem.Type.MESSAGE, Mailbox.ID_FOLDER_INBOX);
+        mbox.delete(null, ids.get(2), MailItem.Type.MESSAGE);
+
+        actual = localStore.updateImapFolder(null, folder.getFolderItemIdentifier(), snapshot, modseq, 100);
+        List<ImapMessage> expected = mbox.openImapFolder(null, folderId);
+        Collections.sort(actual);
+        Collections.sort(expected);
+        Assert.assertEquals("expected and actual ImapMessage lists have different lengths", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getMsgId(), actual.get(i).getMsgId());
+            Assert.assertEquals(expected.get(i).getImapUid(), actual.get(i).getImapUid());
+            Assert.assertEquals(expected.get(i).getFlags(), actual.get(i).getFlags());
+        }
+
+        // too many changes to be worth applying
+        Assert.assertNull(localStore.updateImapFolder(null, folder.getFolderItemIdentifier(), snapshot, modseq, 2));
+    }
+}
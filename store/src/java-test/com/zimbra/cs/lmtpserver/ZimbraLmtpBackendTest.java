@@ -0,0 +1,91 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+package com.zimbra.cs.lmtpserver;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.account.Provisioning;
+import com.zimbra.cs.mailbox.MailItem;
+import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.MailboxManager;
+import com.zimbra.cs.mailbox.MailboxTestUtil;
+import com.zimbra.cs.mailbox.Message;
+
+public final class ZimbraLmtpBackendTest {
+
+    private static final int RECIPIENTS = 6;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        MailboxTestUtil.initServer();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        MailboxTestUtil.clearData();
+        Provisioning prov = Provisioning.getInstance();
+        for (int i = 0; i < RECIPIENTS; i++) {
+            prov.createAccount("rcpt" + i + "@zimbra.com", "secret", new HashMap<String, Object>());
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        MailboxTestUtil.clearData();
+    }
+
+    @Test
+    public void deliverToManyRecipients() throws Exception {
+        LmtpEnvelope env = new LmtpEnvelope();
+        env.setSender(new LmtpAddress("<sender@zimbra.com>", null, null));
+        for (int i = 0; i < RECIPIENTS; i++) {
+            env.addLocalRecipient(new LmtpAddress("<rcpt" + i + "@zimbra.com>", null, null));
+        }
+        byte[] content = ("From: sender@zimbra.com\r\nTo: list@zimbra.com\r\nSubject: shared delivery\r\n" +
+                "Message-ID: <shared-delivery@zimbra.com>\r\n\r\nhello\r\n").getBytes();
+
+        new ZimbraLmtpBackend(LmtpConfig.getInstance()).deliver(env, new ByteArrayInputStream(content),
+                content.length);
+
+        for (LmtpAddress recipient : env.getLocalRecipients()) {
+            Assert.assertEquals(recipient.toString(), LmtpReply.DELIVERY_OK, recipient.getDeliveryStatus());
+        }
+        String digest = null;
+        for (int i = 0; i < RECIPIENTS; i++) {
+            Account acct = Provisioning.getInstance().getAccountByName("rcpt" + i + "@zimbra.com");
+            Mailbox mbox = MailboxManager.getInstance().getMailboxByAccount(acct);
+            List<MailItem> msgs = mbox.getItemList(null, MailItem.Type.MESSAGE, Mailbox.ID_FOLDER_INBOX);
+            Assert.assertEquals("rcpt" + i, 1, msgs.size());
+            Message msg = (Message) msgs.get(0);
+            Assert.assertEquals("shared delivery", msg.getSubject());
+            if (digest == null) {
+                digest = msg.getDigest();
+            } else {
+                Assert.assertEquals("every mailbox stores the same blob", digest, msg.getDigest());
+            }
+        }
+    }
+}
@@ -37,6 +37,7 @@ import com.zimbra.cs.account.Provisioning;
 import com.zimbra.cs.mailbox.Mailbox.FolderNode;
 import com.zimbra.cs.mailbox.MailboxLock.LockFailedException;
 import com.zimbra.cs.service.util.ItemId;
+import com.zimbra.cs.stats.ZimbraPerf;
 
 public class MailboxLockTest {
     @BeforeClass
@@ -300,6 +301,37 @@ public class MailboxLockTest {
         Assert.assertFalse(thread.isAlive());
     }
 
+    @Test
+    public void contendedWaitRecorded() throws Exception {
+        final Mailbox mbox = MailboxManager.getInstance().getMailboxByAccountId(MockProvisioning.DEFAULT_ACCOUNT_ID);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        long waitCount = ZimbraPerf.STOPWATCH_MBOX_LOCK_WAIT.getCount();
+
+        mbox.lock.lock(true);
+        Thread waitThread = new Thread("MailboxLockTest-Waiter") {
+            @Override
+            public void run() {
+                mbox.lock.lock(true, "contendedWaitRecorded");
+                mbox.lock.release();
+                done.set(true);
+            }
+        };
+        waitThread.setDaemon(true);
+        waitThread.start();
+        while (!mbox.lock.hasQueuedThreads()) {
+            Thread.sleep(10);
+        }
+        mbox.lock.release();
+        joinWithTimeout(waitThread, 50000);
+        Assert.assertTrue(done.get());
+        Assert.assertEquals(waitCount + 1, ZimbraPerf.STOPWATCH_MBOX_LOCK_WAIT.getCount());
+
+        //uncontended acquisition does not record a wait
+        mbox.lock.lock(true, "contendedWaitRecorded");
+        mbox.lock.release();
+        Assert.assertEquals(waitCount + 1, ZimbraPerf.STOPWATCH_MBOX_LOCK_WAIT.getCount());
+    }
+
     @Test
     public void tooManyWaiters() {
         Mailbox mbox = null;
@@ -138,6 +138,29 @@ public final class MailboxTest {
         Assert.assertEquals("recent message count should be 0 after the second reset", 0, mbox.getRecentMessageCount());
     }
 
+    @Test
+    public void getItemsById() throws Exception {
+        Mailbox mbox = MailboxManager.getInstance().getMailboxByAccountId(MockProvisioning.DEFAULT_ACCOUNT_ID);
+        DeliveryOptions dopt = new DeliveryOptions().setFolderId(Mailbox.ID_FOLDER_INBOX);
+        Message msg1 = mbox.addMessage(null, new ParsedMessage("From: test1@zimbra.com".getBytes(), false), dopt, null);
+        Message msg2 = mbox.addMessage(null, new ParsedMessage("From: test2@zimbra.com".getBytes(), false), dopt, null);
+        Message msg3 = mbox.addMessage(null, new ParsedMessage("From: test3@zimbra.com".getBytes(), false), dopt, null);
+        mbox.purge(MailItem.Type.UNKNOWN);
+        mbox.getItemById(null, msg2.getId(), MailItem.Type.MESSAGE); // one cached, the others loaded from the DB
+
+        List<Integer> ids = new ArrayList<Integer>();
+        ids.add(msg3.getId());
+        ids.add(Mailbox.ID_FOLDER_INBOX); // wrong type
+        ids.add(msg1.getId());
+        ids.add(99999); // no such item
+        ids.add(msg2.getId());
+        List<MailItem> items = mbox.getItemsById(null, ids, MailItem.Type.MESSAGE);
+        Assert.assertEquals(3, items.size());
+        Assert.assertEquals(msg3.getId(), items.get(0).getId());
+        Assert.assertEquals(msg1.getId(), items.get(1).getId());
+        Assert.assertEquals(msg2.getId(), items.get(2).getId());
+    }
+
     @Test
     public void threadDraft() throws Exception {
         Account acct = Provisioning.getInstance().getAccount("test@zimbra.com");
@@ -0,0 +1,91 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+package com.zimbra.cs.mailbox.calendar.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Unit test for the in-memory LRU of {@link CalSummaryCache}.
+ */
+public final class CalSummaryCacheTest {
+
+    private static final String ACCOUNT1 = "11111111-1111-1111-1111-111111111111";
+    private static final String ACCOUNT2 = "22222222-2222-2222-2222-222222222222";
+
+    private static CalendarData calData(int folderId, int... itemIds) {
+        CalendarData calData = new CalendarData(folderId, 1, 0, 1000);
+        for (int itemId : itemIds) {
+            CalendarItemData item = Mockito.mock(CalendarItemData.class);
+            Mockito.when(item.getCalItemId()).thenReturn(itemId);
+            calData.addCalendarItem(item);
+        }
+        return calData;
+    }
+
+    @Test
+    public void getFolderForItem() throws Exception {
+        CalSummaryCache.SummaryLRU lru = new CalSummaryCache.SummaryLRU(10);
+        CalendarData folder10 = calData(10, 100, 101);
+        lru.put(new CalSummaryKey(ACCOUNT1, 10), folder10);
+        lru.put(new CalSummaryKey(ACCOUNT1, 11), calData(11, 110));
+        lru.put(new CalSummaryKey(ACCOUNT2, 10), calData(10, 200));
+        Assert.assertEquals(3, lru.size());
+        Assert.assertSame(folder10, lru.get(new CalSummaryKey(ACCOUNT1, 10)));
+
+        Assert.assertEquals(10, lru.getFolderForItem(ACCOUNT1, 101));
+        Assert.assertEquals(11, lru.getFolderForItem(ACCOUNT1, 110));
+        Assert.assertEquals(CalSummaryCache.SummaryLRU.FOLDER_NOT_FOUND, lru.getFolderForItem(ACCOUNT1, 200));
+        Assert.assertEquals(10, lru.getFolderForItem(ACCOUNT2, 200));
+
+        Assert.assertSame(folder10, lru.remove(new CalSummaryKey(ACCOUNT1, 10)));
+        Assert.assertNull(lru.remove(new CalSummaryKey(ACCOUNT1, 10)));
+        Assert.assertEquals(CalSummaryCache.SummaryLRU.FOLDER_NOT_FOUND, lru.getFolderForItem(ACCOUNT1, 101));
+        Assert.assertEquals(11, lru.getFolderForItem(ACCOUNT1, 110));
+    }
+
+    @Test
+    public void eviction() throws Exception {
+        CalSummaryCache.SummaryLRU lru = new CalSummaryCache.SummaryLRU(2);
+        lru.put(new CalSummaryKey(ACCOUNT1, 10), calData(10, 100));
+        lru.put(new CalSummaryKey(ACCOUNT1, 11), calData(11, 110));
+        // the least recently used folder is aged out, and with it the account's index entry
+        lru.get(new CalSummaryKey(ACCOUNT1, 10));
+        lru.put(new CalSummaryKey(ACCOUNT1, 12), calData(12, 120));
+        Assert.assertEquals(2, lru.size());
+        Assert.assertNull(lru.get(new CalSummaryKey(ACCOUNT1, 11)));
+        Assert.assertEquals(CalSummaryCache.SummaryLRU.FOLDER_NOT_FOUND, lru.getFolderForItem(ACCOUNT1, 110));
+        Assert.assertEquals(10, lru.getFolderForItem(ACCOUNT1, 100));
+        Assert.assertEquals(12, lru.getFolderForItem(ACCOUNT1, 120));
+    }
+
+    @Test
+    public void removeAccount() throws Exception {
+        CalSummaryCache.SummaryLRU lru = new CalSummaryCache.SummaryLRU(10);
+        lru.put(new CalSummaryKey(ACCOUNT1, 10), calData(10, 100));
+        lru.put(new CalSummaryKey(ACCOUNT1, 11), calData(11, 110));
+        lru.put(new CalSummaryKey(ACCOUNT2, 10), calData(10, 200));
+
+        lru.removeAccount(ACCOUNT1);
+        Assert.assertEquals(1, lru.size());
+        Assert.assertNull(lru.get(new CalSummaryKey(ACCOUNT1, 10)));
+        Assert.assertNull(lru.get(new CalSummaryKey(ACCOUNT1, 11)));
+        Assert.assertEquals(CalSummaryCache.SummaryLRU.FOLDER_NOT_FOUND, lru.getFolderForItem(ACCOUNT1, 100));
+        Assert.assertEquals(10, lru.getFolderForItem(ACCOUNT2, 200));
+    }
+}
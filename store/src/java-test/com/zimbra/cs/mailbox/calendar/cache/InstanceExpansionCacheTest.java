@@ -0,0 +1,178 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+package com.zimbra.cs.mailbox.calendar.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.zimbra.cs.mailbox.CalendarItem;
+import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.MailboxTestUtil;
+
+public final class InstanceExpansionCacheTest {
+
+    private static final String ACCOUNT_ID = "11111111-1111-1111-1111-111111111111";
+
+    /**
+     * Records the ranges it is asked to expand.
+     */
+    private static final class RecordingExpander implements InstanceExpansionCache.Expander {
+        final List<String> ranges = new ArrayList<String>();
+
+        @Override
+        public CalendarItemData expand(CalendarItem calItem, long rangeStart, long rangeEnd) {
+            ranges.add(rangeStart + "-" + rangeEnd);
+            CalendarItemData data = Mockito.mock(CalendarItemData.class);
+            Mockito.when(data.getSubRange(Mockito.anyLong(), Mockito.anyLong())).thenReturn(data);
+            return data;
+        }
+    }
+
+    private RecordingExpander expander;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        MailboxTestUtil.initServer();
+    }
+
+    @Before
+    public void setUp() {
+        expander = new RecordingExpander();
+    }
+
+    private static CalendarItem calItem(int id, int modMetadata) {
+        Mailbox mbox = Mockito.mock(Mailbox.class);
+        Mockito.when(mbox.getAccountId()).thenReturn(ACCOUNT_ID);
+        CalendarItem calItem = Mockito.mock(CalendarItem.class);
+        Mockito.when(calItem.getMailbox()).thenReturn(mbox);
+        Mockito.when(calItem.getId()).thenReturn(id);
+        Mockito.when(calItem.getModifiedSequence()).thenReturn(modMetadata);
+        Mockito.when(calItem.getSavedSequence()).thenReturn(modMetadata);
+        return calItem;
+    }
+
+    @Test
+    public void bucketWidening() throws Exception {
+        InstanceExpansionCache cache = new InstanceExpansionCache(10, 100, 1000);
+        CalendarItem item = calItem(1, 1);
+        cache.get(item, 150, 250, expander);
+        // any range within the same buckets is cut out of the first expansion
+        cache.get(item, 110, 290, expander);
+        cache.get(item, 100, 300, expander);
+        cache.get(item, 300, 350, expander);
+        Assert.assertEquals(2, expander.ranges.size());
+        Assert.assertEquals("100-300", expander.ranges.get(0));
+        Assert.assertEquals("300-400", expander.ranges.get(1));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void wideRange() throws Exception {
+        InstanceExpansionCache cache = new InstanceExpansionCache(10, 100, 1000);
+        CalendarItem item = calItem(1, 1);
+        cache.get(item, 0, 5000, expander);
+        cache.get(item, 0, 5000, expander);
+        Assert.assertEquals(2, expander.ranges.size());
+        Assert.assertEquals("0-5000", expander.ranges.get(1));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void negativeStart() throws Exception {
+        InstanceExpansionCache cache = new InstanceExpansionCache(10, 100, 1000);
+        CalendarItem item = calItem(1, 1);
+        cache.get(item, -150, -50, expander);
+        cache.get(item, -1, 1, expander);
+        cache.get(item, -199, -1, expander);
+        Assert.assertEquals(2, expander.ranges.size());
+        Assert.assertEquals("-200-0", expander.ranges.get(0));
+        Assert.assertEquals("-100-100", expander.ranges.get(1));
+    }
+
+    @Test
+    public void overflow() throws Exception {
+        InstanceExpansionCache cache = new InstanceExpansionCache(10, 100, 1000);
+        CalendarItem item = calItem(1, 1);
+        // buckets can't be widened past the ends of the time line, so these are expanded as requested
+        cache.get(item, Long.MIN_VALUE + 5, Long.MIN_VALUE + 50, expander);
+        cache.get(item, Long.MAX_VALUE - 50, Long.MAX_VALUE, expander);
+        Assert.assertEquals(2, expander.ranges.size());
+        Assert.assertEquals((Long.MIN_VALUE + 5) + "-" + (Long.MIN_VALUE + 50), expander.ranges.get(0));
+        Assert.assertEquals((Long.MAX_VALUE - 50) + "-" + Long.MAX_VALUE, expander.ranges.get(1));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void rangesPerItem() throws Exception {
+        InstanceExpansionCache cache = new InstanceExpansionCache(10, 100, 1000);
+        CalendarItem item = calItem(1, 1);
+        for (int i = 0; i < 16; i++) {
+            cache.get(item, i * 100, i * 100 + 50, expander);
+        }
+        cache.get(item, 0, 50, expander);
+        Assert.assertEquals(16, expander.ranges.size());
+        // one range too many flushes the item's ranges
+        cache.get(item, 1600, 1650, expander);
+        cache.get(item, 0, 50, expander);
+        Assert.assertEquals(18, expander.ranges.size());
+    }
+
+    @Test
+    public void invalidation() throws Exception {
+        InstanceExpansionCache cache = new InstanceExpansionCache(10, 100, 1000);
+        CalendarItem item = calItem(1, 1);
+        cache.get(item, 0, 50, expander);
+        cache.get(item, 0, 50, expander);
+        Assert.assertEquals(1, expander.ranges.size());
+
+        // a modified item is never served the old expansion
+        Mockito.when(item.getModifiedSequence()).thenReturn(2);
+        cache.get(item, 0, 50, expander);
+        Assert.assertEquals(2, expander.ranges.size());
+        Mockito.when(item.getSavedSequence()).thenReturn(2);
+        cache.get(item, 0, 50, expander);
+        Assert.assertEquals(3, expander.ranges.size());
+        Assert.assertEquals(1, cache.size());
+
+        cache.invalidate(ACCOUNT_ID, 1);
+        Assert.assertEquals(0, cache.size());
+        cache.get(item, 0, 50, expander);
+        Assert.assertEquals(4, expander.ranges.size());
+
+        cache.get(calItem(2, 1), 0, 50, expander);
+        Assert.assertEquals(2, cache.size());
+        cache.purgeAccount(ACCOUNT_ID);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        InstanceExpansionCache cache = new InstanceExpansionCache(0, 100, 1000);
+        CalendarItem item = calItem(1, 1);
+        cache.get(item, 150, 250, expander);
+        cache.get(item, 150, 250, expander);
+        Assert.assertEquals(2, expander.ranges.size());
+        Assert.assertEquals("150-250", expander.ranges.get(0));
+        Assert.assertEquals(0, cache.size());
+    }
+}
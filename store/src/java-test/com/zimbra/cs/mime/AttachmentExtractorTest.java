@@ -0,0 +1,187 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+package com.zimbra.cs.mime;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.util.ByteArrayDataSource;
+
+import org.apache.lucene.document.Document;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.zimbra.cs.convert.AttachmentInfo;
+
+public final class AttachmentExtractorTest {
+
+    @Test
+    public void budgets() {
+        Map<String, Long> budgets = AttachmentExtractor.parseBudgets(" application/PDF:120000, text/*:10000,,bogus");
+        Assert.assertEquals(2, budgets.size());
+        Assert.assertEquals(120000L, AttachmentExtractor.budget(budgets, "application/pdf", 60000L));
+        Assert.assertEquals(10000L, AttachmentExtractor.budget(budgets, "text/html", 60000L));
+        Assert.assertEquals(60000L, AttachmentExtractor.budget(budgets, "application/msword", 60000L));
+        Assert.assertEquals(60000L, AttachmentExtractor.budget(budgets, "", 60000L));
+    }
+
+    /**
+     * Handler whose extraction blocks until released, ignoring interrupts like many converters do.
+     */
+    private static final class TestHandler extends MimeHandler {
+        private final String text;
+        private final boolean external;
+        private final CountDownLatch release;
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile Thread thread;
+
+        TestHandler(String text, boolean external, CountDownLatch release) {
+            this.text = text;
+            this.external = external;
+            this.release = release;
+        }
+
+        @Override
+        protected boolean runsExternally() {
+            return external;
+        }
+
+        @Override
+        protected void addFields(Document doc) {
+        }
+
+        @Override
+        protected String getContentImpl() {
+            calls.incrementAndGet();
+            thread = Thread.currentThread();
+            if (release != null) {
+                boolean interrupted = false;
+                while (release.getCount() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return text;
+        }
+
+        @Override
+        public String convert(AttachmentInfo doc, String urlPart) {
+            return null;
+        }
+
+        @Override
+        public boolean doConversion() {
+            return false;
+        }
+    }
+
+    private static void waitForPoolSize(AttachmentExtractor.Pool pool, int size) throws Exception {
+        for (int i = 0; i < 100 && pool.getPoolSize() != size; i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(size, pool.getPoolSize());
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        AttachmentExtractor.Pool pool = new AttachmentExtractor.Pool(1, 10);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            TestHandler stuck = new TestHandler("stuck", true, release);
+            AttachmentExtractor.Extraction extraction = AttachmentExtractor.submit(stuck, pool);
+            Assert.assertNotNull(extraction);
+            while (stuck.calls.get() == 0) {
+                Thread.sleep(10);
+            }
+            try {
+                extraction.await(100);
+                Assert.fail("extraction should have timed out");
+            } catch (MimeHandlerException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("timed out"));
+            }
+            // the stuck worker is replaced, so the next part still gets a worker
+            Assert.assertEquals(2, pool.getPoolSize());
+            TestHandler next = new TestHandler("next", true, null);
+            Assert.assertEquals("next", AttachmentExtractor.submit(next, pool).await(5000));
+            Assert.assertNotSame(stuck.thread, next.thread);
+
+            // the replacement goes away once the stuck worker comes back
+            release.countDown();
+            waitForPoolSize(pool, 1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void fallback() throws Exception {
+        AttachmentExtractor.Pool pool = new AttachmentExtractor.Pool(1, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            TestHandler stuck = new TestHandler("stuck", true, release);
+            Assert.assertNotNull(AttachmentExtractor.submit(stuck, pool));
+            TestHandler queued = new TestHandler("queued", true, null);
+            AttachmentExtractor.Extraction extraction = AttachmentExtractor.submit(queued, pool);
+            Assert.assertNotNull(extraction);
+            // no worker picks the part up in time, so it is extracted on this thread
+            Assert.assertEquals("queued", extraction.await(100));
+            Assert.assertSame(Thread.currentThread(), queued.thread);
+            Assert.assertEquals(1, queued.calls.get());
+            Assert.assertEquals(1, pool.getPoolSize());
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void cacheHit() throws Exception {
+        char[] chars = new char[16 * 1024];
+        Arrays.fill(chars, 'x');
+        byte[] content = (new String(chars) + System.nanoTime()).getBytes("UTF-8");
+
+        TestHandler first = new TestHandler("text", false, null);
+        first.init(new ByteArrayDataSource(content, "application/octet-stream"));
+        first.setContentType("application/octet-stream");
+        first.setSize(content.length);
+        Assert.assertEquals("text", AttachmentExtractor.extractAndCache(first));
+
+        // the same content is not extracted again
+        TestHandler second = new TestHandler("other", false, null);
+        second.init(new ByteArrayDataSource(content, "application/octet-stream"));
+        second.setContentType("application/octet-stream");
+        second.setSize(content.length);
+        Assert.assertEquals("text", AttachmentExtractor.extractAndCache(second));
+        Assert.assertEquals(0, second.calls.get());
+
+        // but a different content type is
+        TestHandler other = new TestHandler("other", false, null);
+        other.init(new ByteArrayDataSource(content, "application/pdf"));
+        other.setContentType("application/pdf");
+        other.setSize(content.length);
+        Assert.assertEquals("other", AttachmentExtractor.extractAndCache(other));
+        Assert.assertEquals(1, other.calls.get());
+    }
+}
@@ -0,0 +1,92 @@
+package com.zimbra.cs.redolog.logger;
+
+import junit.framework.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.RandomAccessFile;
+
+public class BufferedFileInputTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private RandomAccessFile writeSample() throws Exception {
+        File file = folder.newFile("input");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.writeInt(0x01020304);
+        raf.writeLong(-2L);
+        raf.writeShort(-3);
+        raf.writeBoolean(true);
+        raf.writeDouble(1.5);
+        raf.writeUTF("redo");
+        raf.write(new byte[] { 10, 11, 12, 13, 14, 15, 16, 17, 18, 19 });
+        raf.seek(0);
+        return raf;
+    }
+
+    @Test
+    public void readAcrossBufferBoundaries() throws Exception {
+        RandomAccessFile raf = writeSample();
+        // tiny buffer so that most values straddle a refill
+        BufferedFileInput in = new BufferedFileInput(raf, 3);
+        Assert.assertEquals(0x01020304, in.readInt());
+        Assert.assertEquals(-2L, in.readLong());
+        Assert.assertEquals(-3, in.readShort());
+        Assert.assertTrue(in.readBoolean());
+        Assert.assertEquals(1.5, in.readDouble());
+        Assert.assertEquals("redo", in.readUTF());
+        byte[] buf = new byte[10];
+        in.readFully(buf);
+        Assert.assertEquals(10, buf[0]);
+        Assert.assertEquals(19, buf[9]);
+        Assert.assertEquals(raf.length(), in.getFilePointer());
+        try {
+            in.readByte();
+            Assert.fail("expected EOF");
+        } catch (EOFException expected) {
+        }
+        // positional reads must not move the file pointer of the underlying file
+        Assert.assertEquals(0, raf.getFilePointer());
+        raf.close();
+    }
+
+    @Test
+    public void seekAndSkip() throws Exception {
+        RandomAccessFile raf = writeSample();
+        BufferedFileInput in = new BufferedFileInput(raf);
+        Assert.assertEquals(4, in.skipBytes(4));
+        Assert.assertEquals(-2L, in.readLong());
+        in.seek(0);
+        Assert.assertEquals(0x01020304, in.readInt());
+        long len = raf.length();
+        in.seek(len - 2);
+        Assert.assertEquals("skip is capped at end of file", 2, in.skipBytes(100));
+        Assert.assertEquals(len, in.getFilePointer());
+
+        // data rewritten under the reader is seen after invalidate()
+        in.seek(0);
+        in.readInt();
+        raf.seek(0);
+        raf.writeInt(42);
+        in.seek(0);
+        in.invalidate();
+        Assert.assertEquals(42, in.readInt());
+        raf.close();
+    }
+
+    @Test
+    public void readLine() throws Exception {
+        File file = folder.newFile("lines");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.writeBytes("one\ntwo\r\nthree\rfour");
+        BufferedFileInput in = new BufferedFileInput(raf, 4);
+        Assert.assertEquals("one", in.readLine());
+        Assert.assertEquals("two", in.readLine());
+        Assert.assertEquals("three", in.readLine());
+        Assert.assertEquals("four", in.readLine());
+        Assert.assertNull(in.readLine());
+        raf.close();
+    }
+}
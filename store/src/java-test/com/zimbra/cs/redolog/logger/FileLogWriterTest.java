@@ -4,6 +4,7 @@ import com.zimbra.cs.mailbox.MailboxOperation;
 import com.zimbra.cs.mailbox.MailboxTestUtil;
 import com.zimbra.cs.redolog.RedoLogManager;
 import com.zimbra.cs.redolog.op.RedoableOp;
+import com.zimbra.cs.stats.ZimbraPerf;
 import junit.framework.Assert;
 import org.easymock.EasyMock;
 import org.junit.Before;
@@ -13,7 +14,15 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class  FileLogWriterTest {
     @Rule public TemporaryFolder folder = new TemporaryFolder();
@@ -67,6 +76,66 @@ public class  FileLogWriterTest {
         Assert.assertEquals(sequence, logWriter.getSequence());
     }
 
+    /**
+     * Log writer whose fsync is held up until the test releases it.
+     */
+    private static final class BlockingLogWriter extends FileLogWriter {
+        final CountDownLatch forcing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingLogWriter(RedoLogManager redoLogMgr, File logfile) {
+            super(redoLogMgr, logfile, 10 /* fsync interval in ms */);
+        }
+
+        @Override
+        void force() throws IOException {
+            forcing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            super.force();
+        }
+    }
+
+    @Test
+    public void synchronousLogWaitsForFsync() throws Exception {
+        final BlockingLogWriter writer = new BlockingLogWriter(mockRedoLogManager, folder.newFile("blocking"));
+        writer.open();
+        final RedoableOp op = EasyMock.createMockBuilder(RedoableOp.class)
+                                  .withConstructor(MailboxOperation.Preview)
+                                  .createMock();
+        op.setMailboxId(1);
+        long commits = ZimbraPerf.STOPWATCH_REDO_COMMIT_WAIT.getCount();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> logged = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    writer.log(op, new ByteArrayInputStream("some bytes".getBytes()), true /* synchronous */);
+                    return null;
+                }
+            });
+            Assert.assertTrue("fsync thread never started", writer.forcing.await(5, TimeUnit.SECONDS));
+            try {
+                logged.get(500, TimeUnit.MILLISECONDS);
+                Assert.fail("synchronous log returned before the fsync completed");
+            } catch (TimeoutException expected) {
+            }
+            Assert.assertEquals(commits, ZimbraPerf.STOPWATCH_REDO_COMMIT_WAIT.getCount());
+
+            writer.release.countDown();
+            logged.get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(commits + 1, ZimbraPerf.STOPWATCH_REDO_COMMIT_WAIT.getCount());
+        } finally {
+            writer.release.countDown();
+            executor.shutdownNow();
+        }
+        writer.close();
+    }
+
     @Test(expected = IOException.class)
     public void logBeforeOpen() throws Exception {
         logWriter.log(null, null, false);
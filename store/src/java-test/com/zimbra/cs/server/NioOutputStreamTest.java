@@ -16,13 +16,22 @@
  */
 package com.zimbra.cs.server;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
 import junit.framework.Assert;
 
 import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.file.FileRegion;
+import org.apache.mina.core.filterchain.IoFilterAdapter;
 import org.apache.mina.core.service.IoHandlerAdapter;
 import org.apache.mina.core.session.DummySession;
 import org.apache.mina.core.session.IoSession;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Unit test for {@link NioOutputStream}.
@@ -30,6 +39,15 @@ import org.junit.Test;
  * @author ysasaki
  */
 public final class NioOutputStreamTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileChannel openFile(String content) throws Exception {
+        File file = folder.newFile("content");
+        FileOutputStream fos = new FileOutputStream(file);
+        fos.write(content.getBytes());
+        fos.close();
+        return new RandomAccessFile(file, "r").getChannel();
+    }
 
     @Test
     public void writeByte() throws Exception {
@@ -82,13 +100,51 @@ public final class NioOutputStreamTest {
         out.close();
     }
 
+    @Test
+    public void writeFileThroughFilter() throws Exception {
+        DummySession session = new DummySession();
+        // a filter that might transform the bytes (e.g. TLS) forces the buffered path
+        session.getFilterChain().addLast("test", new IoFilterAdapter());
+        TestIoHandler handler = new TestIoHandler();
+        session.setHandler(handler);
+        NioOutputStream out = new NioOutputStream(session, 10, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        FileChannel channel = openFile("1234567890 12345678901");
+        out.write("ab");
+        out.write(channel, 11, 11);
+        Assert.assertFalse(channel.isOpen());
+        Assert.assertEquals(3, handler.getWriteCount());
+        Assert.assertEquals("ab12345678901", handler.toString());
+        out.close();
+    }
+
+    @Test
+    public void writeFileRegion() throws Exception {
+        DummySession session = new DummySession();
+        TestIoHandler handler = new TestIoHandler();
+        session.setHandler(handler);
+        NioOutputStream out = new NioOutputStream(session, 10, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        FileChannel channel = openFile("1234567890 12345678901");
+        out.write("ab");
+        out.write(channel, 11, 11);
+        Assert.assertEquals(2, handler.getWriteCount());
+        Assert.assertEquals("ab", handler.toString());
+        Assert.assertEquals(1, handler.getFileRegionCount());
+        Assert.assertFalse("channel is closed once the region is written", channel.isOpen());
+        out.close();
+    }
+
     private static final class TestIoHandler extends IoHandlerAdapter {
         private int writes = 0;
+        private int fileRegions = 0;
         private StringBuilder out = new StringBuilder();
 
         @Override
         public void messageSent(IoSession session, Object message) {
             writes++;
+            if (message instanceof FileRegion) {
+                fileRegions++;
+                return;
+            }
             IoBuffer buf = (IoBuffer) message;
             while (buf.hasRemaining()) {
                 out.append((char) buf.get());
@@ -99,6 +155,10 @@ public final class NioOutputStreamTest {
             return writes;
         }
 
+        int getFileRegionCount() {
+            return fileRegions;
+        }
+
         @Override
         public String toString() {
             return out.toString();
@@ -0,0 +1,134 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+package com.zimbra.cs.session;
+
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zimbra.common.soap.Element;
+import com.zimbra.common.soap.HeaderConstants;
+import com.zimbra.common.soap.SoapProtocol;
+import com.zimbra.common.soap.ZimbraNamespace;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.account.Provisioning;
+import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.MailboxTestUtil;
+import com.zimbra.cs.service.AuthProvider;
+import com.zimbra.soap.ZimbraSoapContext;
+
+/**
+ * Unit test for reuse of serialized notification blocks in {@link SoapSession}.
+ */
+public final class SoapSessionTest {
+
+    /**
+     * Session that numbers each serialization of a block instead of rendering the mailbox changes.
+     */
+    private static final class CountingSession extends SoapSession {
+        int renders;
+
+        CountingSession(ZimbraSoapContext zsc) {
+            super(zsc);
+        }
+
+        @Override
+        protected boolean putQueuedNotifications(Mailbox mbox, QueuedNotifications ntfn, Element parent,
+                ZimbraSoapContext zsc) {
+            renders++;
+            parent.addNonUniqueElement(ZimbraNamespace.E_NOTIFY)
+                .addAttribute(HeaderConstants.A_SEQNO, ntfn.getSequence())
+                .addAttribute("render", renders);
+            return true;
+        }
+    }
+
+    private ZimbraSoapContext zsc;
+    private CountingSession session;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        MailboxTestUtil.initServer();
+        Provisioning.getInstance().createAccount("test@zimbra.com", "secret", new HashMap<String, Object>());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        Account acct = Provisioning.getInstance().getAccountByName("test@zimbra.com");
+        zsc = new ZimbraSoapContext(AuthProvider.getAuthToken(acct), acct.getId(),
+                SoapProtocol.Soap12, SoapProtocol.Soap12);
+        session = new CountingSession(zsc);
+    }
+
+    private long render(SoapSession.QueuedNotifications ntfn, String renderKey) throws Exception {
+        Element ctxt = new Element.XMLElement(HeaderConstants.CONTEXT);
+        session.putQueuedNotificationsOnce(null, ntfn, ctxt, zsc, renderKey);
+        Element eNotify = ctxt.getOptionalElement(ZimbraNamespace.E_NOTIFY);
+        Assert.assertNotNull(eNotify);
+        Assert.assertEquals(ntfn.getSequence(), eNotify.getAttributeLong(HeaderConstants.A_SEQNO));
+        return eNotify.getAttributeLong("render");
+    }
+
+    @Test
+    public void cacheHitOnResend() throws Exception {
+        SoapSession.QueuedNotifications ntfn = session.new QueuedNotifications(1);
+        Assert.assertEquals(1, render(ntfn, "key"));
+        // nothing is kept after the first send, which most clients acknowledge
+        Assert.assertNull(ntfn.mRendered);
+        // the resend is serialized again and kept...
+        Assert.assertEquals(2, render(ntfn, "key"));
+        Assert.assertNotNull(ntfn.mRendered);
+        // ...so that further resends are copies of it
+        Assert.assertEquals(2, render(ntfn, "key"));
+        Assert.assertEquals(2, render(ntfn, "key"));
+        Assert.assertEquals(2, session.renders);
+    }
+
+    @Test
+    public void renderKeyMismatch() throws Exception {
+        SoapSession.QueuedNotifications ntfn = session.new QueuedNotifications(1);
+        render(ntfn, "xml");
+        render(ntfn, "xml");
+        Assert.assertEquals(2, session.renders);
+        // a response in another format doesn't get the cached copy
+        Assert.assertEquals(3, render(ntfn, "json"));
+        Assert.assertEquals(2, render(ntfn, "xml"));
+        Assert.assertEquals(3, session.renders);
+    }
+
+    @Test
+    public void clearMailboxChanges() throws Exception {
+        SoapSession.QueuedNotifications ntfn = session.new QueuedNotifications(1);
+        render(ntfn, "key");
+        render(ntfn, "key");
+        Assert.assertNotNull(ntfn.mRendered);
+        int generation = ntfn.mGeneration;
+
+        // a <refresh> drops the cached copy, and the block counts as never sent
+        ntfn.clearMailboxChanges();
+        Assert.assertEquals(generation + 1, ntfn.mGeneration);
+        Assert.assertNull(ntfn.mRendered);
+        Assert.assertEquals(3, render(ntfn, "key"));
+        Assert.assertNull(ntfn.mRendered);
+        Assert.assertEquals(4, render(ntfn, "key"));
+        Assert.assertEquals(4, render(ntfn, "key"));
+        Assert.assertEquals(4, session.renders);
+    }
+}
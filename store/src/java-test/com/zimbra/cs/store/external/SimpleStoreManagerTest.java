@@ -16,6 +16,17 @@
  */
 package com.zimbra.cs.store.external;
 
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.zimbra.cs.account.MockProvisioning;
+import com.zimbra.cs.mailbox.DeliveryOptions;
+import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.MailboxManager;
+import com.zimbra.cs.mailbox.Message;
+import com.zimbra.cs.mime.ParsedMessage;
 import com.zimbra.cs.store.StoreManager;
 
 public class SimpleStoreManagerTest extends AbstractExternalStoreManagerTest {
@@ -24,4 +35,22 @@ public class SimpleStoreManagerTest extends AbstractExternalStoreManagerTest {
     protected StoreManager getStoreManager() {
         return new SimpleStoreManager();
     }
+
+    @Test
+    public void prefetch() throws Exception {
+        Mailbox mbox = MailboxManager.getInstance().getMailboxByAccountId(MockProvisioning.DEFAULT_ACCOUNT_ID);
+        DeliveryOptions dopt = new DeliveryOptions().setFolderId(Mailbox.ID_FOLDER_INBOX);
+        Message msg = mbox.addMessage(null, new ParsedMessage("From: test@zimbra.com\r\nSubject: prefetch".getBytes(),
+                false), dopt, null);
+
+        SimpleStoreManager sm = (SimpleStoreManager) StoreManager.getInstance();
+        sm.clearCache();
+        Assert.assertFalse(sm.localCache.contains(msg.getLocator()));
+
+        sm.prefetch(mbox, Collections.singletonList(msg.getId()));
+        for (int i = 0; i < 100 && !sm.localCache.contains(msg.getLocator()); i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertTrue("blob prefetched into the local cache", sm.localCache.contains(msg.getLocator()));
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+package com.zimbra.cs.store.file;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.zimbra.cs.volume.Volume;
+
+public final class DigestDirectoryTest {
+
+    private static final String DIGEST = "abcdefghijklmnopqrstuvwxyz0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Volume volume;
+
+    @Before
+    public void setUp() throws Exception {
+        volume = Volume.builder().setId((short) 1).setType(Volume.TYPE_MESSAGE).setName("test")
+            .setPath(folder.getRoot().getPath(), false).build();
+    }
+
+    private VolumeBlob newBlob(String name, String content) throws Exception {
+        File file = new File(folder.getRoot(), name);
+        Files.write(content, file, Charsets.UTF_8);
+        VolumeBlob blob = new VolumeBlob(file, volume.getId());
+        blob.setDigest(DIGEST);
+        return blob;
+    }
+
+    private static String read(File file) throws Exception {
+        return Files.toString(file, Charsets.UTF_8);
+    }
+
+    @Test
+    public void storeAndLink() throws Exception {
+        File dest1 = new File(folder.getRoot(), "dest1");
+        Assert.assertFalse(DigestDirectory.link(newBlob("blob1", "content"), volume, dest1));
+        File stored = DigestDirectory.getFile(volume, DIGEST);
+        Assert.assertEquals("content", read(stored));
+        Assert.assertEquals("content", read(dest1));
+
+        File dest2 = new File(folder.getRoot(), "dest2");
+        Assert.assertTrue(DigestDirectory.link(newBlob("blob2", "content"), volume, dest2));
+        Assert.assertEquals("content", read(dest2));
+    }
+
+    @Test
+    public void sweep() throws Exception {
+        VolumeBlob blob = newBlob("blob", "content");
+        File dest = new File(folder.getRoot(), "dest");
+        DigestDirectory.link(blob, volume, dest);
+        // nothing links to the stored copy anymore
+        Assert.assertTrue(blob.getFile().delete());
+        Assert.assertTrue(dest.delete());
+        File stored = DigestDirectory.getFile(volume, DIGEST);
+        Assert.assertTrue(stored.setLastModified(System.currentTimeMillis() - 60000));
+
+        // too young to be swept
+        Assert.assertEquals(0, DigestDirectory.sweep(volume, 3600000));
+        Assert.assertTrue(stored.exists());
+
+        Assert.assertEquals(1, DigestDirectory.sweep(volume, 1000));
+        Assert.assertFalse(stored.exists());
+
+        // the content is stored again on the next delivery
+        Assert.assertFalse(DigestDirectory.link(newBlob("blob2", "content"), volume, dest));
+        Assert.assertEquals("content", read(DigestDirectory.getFile(volume, DIGEST)));
+        Assert.assertEquals("content", read(dest));
+    }
+
+    @Test
+    public void linkFailure() throws Exception {
+        // a stored copy that exists but cannot be linked to, like one swept right after exists()
+        File stored = DigestDirectory.getFile(volume, DIGEST);
+        Assert.assertTrue(stored.mkdirs());
+
+        File dest = new File(folder.getRoot(), "dest");
+        Assert.assertFalse(DigestDirectory.link(newBlob("blob", "content"), volume, dest));
+        Assert.assertEquals("content", read(dest));
+    }
+}
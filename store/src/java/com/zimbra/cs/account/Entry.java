@@ -47,6 +47,7 @@ import com.zimbra.common.util.ByteUtil;
 import com.zimbra.common.util.DateUtil;
 import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.account.AttributeManager.IDNType;
+import com.zimbra.cs.ephemeral.EphemeralChange;
 import com.zimbra.cs.ephemeral.EphemeralInput;
 import com.zimbra.cs.ephemeral.EphemeralInput.Expiration;
 import com.zimbra.cs.ephemeral.EphemeralKey;
@@ -911,10 +912,7 @@ public abstract class Entry implements ToZJSONObject {
     }
 
     private void modifyEphemeralAttrInternal(String key, String dynamicComponent, String value, boolean update, Expiration expiration, EphemeralStore store, EphemeralLocation location) throws ServiceException {
-        EphemeralInput input = new EphemeralInput(new EphemeralKey(key, dynamicComponent), value);
-        if (expiration != null) {
-            input.setExpiration(expiration);
-        }
+        EphemeralInput input = toEphemeralInput(key, dynamicComponent, value, expiration);
         if (update) {
             store.update(input, location);
         } else {
@@ -922,6 +920,14 @@ public abstract class Entry implements ToZJSONObject {
         }
     }
 
+    private static EphemeralInput toEphemeralInput(String key, String dynamicComponent, String value, Expiration expiration) {
+        EphemeralInput input = new EphemeralInput(new EphemeralKey(key, dynamicComponent), value);
+        if (expiration != null) {
+            input.setExpiration(expiration);
+        }
+        return input;
+    }
+
     public void modifyEphemeralAttr(EphemeralInput input, boolean update) throws ServiceException {
         EphemeralLocation location = new LdapEntryLocation(this);
         EphemeralStore store = EphemeralStore.getFactory().getStore();
@@ -940,11 +946,25 @@ public abstract class Entry implements ToZJSONObject {
     }
 
     public void modifyEphemeralAttr(String key, String dynamicComponent, String[] values, boolean update, Expiration expiration) throws ServiceException {
-        EphemeralLocation location = new LdapEntryLocation(this);
-        EphemeralStore store = EphemeralStore.getFactory().getStore();
+        List<EphemeralChange> changes = new ArrayList<EphemeralChange>(values.length);
         for (String value: values) {
-            modifyEphemeralAttrInternal(key, dynamicComponent, value, update, expiration, store, location);
+            EphemeralInput input = toEphemeralInput(key, dynamicComponent, value, expiration);
+            changes.add(update ? EphemeralChange.update(input) : EphemeralChange.set(input));
+        }
+        applyEphemeralChanges(changes);
+    }
+
+    /**
+     * Applies several ephemeral attribute changes in order.  Depending on the backend, this
+     * takes fewer round trips than making the changes one by one.
+     */
+    public void applyEphemeralChanges(List<EphemeralChange> changes) throws ServiceException {
+        if (changes.isEmpty()) {
+            return;
         }
+        EphemeralLocation location = new LdapEntryLocation(this);
+        EphemeralStore store = EphemeralStore.getFactory().getStore();
+        store.apply(changes, location);
     }
 
     protected long getEphemeralTimeInterval(String key, String dynamicComponent, long defaultValue) throws ServiceException {
@@ -18,6 +18,7 @@ package com.zimbra.cs.account;
 
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Random;
 
@@ -47,6 +48,7 @@ import com.zimbra.common.util.MapUtil;
 import com.zimbra.common.util.ZimbraCookie;
 import com.zimbra.common.util.ZimbraHttpConnectionManager;
 import com.zimbra.cs.account.auth.AuthMechanism.AuthMech;
+import com.zimbra.cs.ephemeral.EphemeralChange;
 import com.zimbra.cs.ephemeral.EphemeralInput;
 import com.zimbra.cs.ephemeral.EphemeralInput.AbsoluteExpiration;
 import com.zimbra.cs.ephemeral.EphemeralInput.Expiration;
@@ -285,13 +287,18 @@ public class ZimbraAuthToken extends AuthToken implements Cloneable {
         try {
             Account acct = Provisioning.getInstance().get(AccountBy.id, properties.getAccountId());
             if (Provisioning.getInstance().getLocalServer().getLowestSupportedAuthVersion() > 1) {
+                Expiration expiration = new AbsoluteExpiration(properties.getExpires());
+                EphemeralKey key = new EphemeralKey(Provisioning.A_zimbraAuthTokens, String.valueOf(properties.getTokenID()));
+                EphemeralInput input = new EphemeralInput(key, properties.getServerVersion(), expiration);
                 try {
-                    acct.cleanExpiredTokens(); //house keeping. If we are issuing a new token, clean up old ones.
+                    // house keeping. If we are issuing a new token, clean up old ones in the same write.
+                    acct.applyEphemeralChanges(Arrays.asList(
+                            EphemeralChange.purgeExpired(new EphemeralKey(Provisioning.A_zimbraAuthTokens)),
+                            EphemeralChange.update(input)));
                 } catch (ServiceException e) {
                     LOG.error("unable to de-register auth token", e);
+                    acct.addAuthTokens(key.getDynamicComponent(), properties.getServerVersion(), expiration);
                 }
-                Expiration expiration = new AbsoluteExpiration(properties.getExpires());
-                acct.addAuthTokens(String.valueOf(properties.getTokenID()), properties.getServerVersion(), expiration);
             }
         } catch (ServiceException e) {
             LOG.error("unable to register auth token", e);
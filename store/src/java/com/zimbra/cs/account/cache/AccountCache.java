@@ -24,25 +24,42 @@
 package com.zimbra.cs.account.cache;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
 
-import com.zimbra.common.util.MapUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.zimbra.common.account.Key.AccountBy;
 import com.zimbra.common.stats.Counter;
 import com.zimbra.common.stats.HitRateCounter;
 import com.zimbra.cs.account.Account;
 import com.zimbra.cs.account.Provisioning;
 
+/**
+ * Lookups are lock-free; updates are serialized so that the maps stay consistent with each other.
+ */
 public class AccountCache implements IAccountCache {
 
-    private Map<String, CacheEntry> mNameCache;
-    private Map<String, CacheEntry> mIdCache;
-    private Map<String, CacheEntry> mAliasCache;
-    private Map<String, CacheEntry> mForeignPrincipalCache;
-    private Map<String, CacheEntry> mOldNameCache;
-    private Counter mHitRate = new HitRateCounter();
+    private final ConcurrentMap<String, CacheEntry> mNameCache;
+    private final ConcurrentMap<String, CacheEntry> mIdCache;
+    private final ConcurrentMap<String, CacheEntry> mAliasCache;
+    private final ConcurrentMap<String, CacheEntry> mForeignPrincipalCache;
+    private final ConcurrentMap<String, CacheEntry> mOldNameCache;
+    private final Counter mHitRate = new HitRateCounter();
+    private final Counter mIdHitRate = new HitRateCounter();
+    private final Counter mNameHitRate = new HitRateCounter();
+    private final Counter mForeignPrincipalHitRate = new HitRateCounter();
+
+    /*
+     * for caching ids and names that do not match any account, so that lookups of unknown
+     * recipients or failed logins do not go to LDAP every time.  null if disabled.
+     */
+    private final Cache<String, Boolean> mNonExistingIdCache;
+    private final Cache<String, Boolean> mNonExistingNameCache;
 
-    private long mRefreshTTL;
+    private final long mRefreshTTL;
 
     static class CacheEntry {
         long mLifetime;
@@ -63,12 +80,36 @@ public class AccountCache implements IAccountCache {
      * @param refreshTTL
      */
     public AccountCache(int maxItems, long refreshTTL) {
-        mNameCache = MapUtil.newLruMap(maxItems);
-        mIdCache = MapUtil.newLruMap(maxItems);
-        mAliasCache = MapUtil.newLruMap(maxItems);
-        mForeignPrincipalCache = MapUtil.newLruMap(maxItems);
-        mOldNameCache = MapUtil.newLruMap(maxItems);
+        this(maxItems, refreshTTL, 0);
+    }
+
+    /**
+     * @param maxItems
+     * @param refreshTTL
+     * @param nonExistingTTL how long to remember that an id or name does not exist, 0 to not remember
+     */
+    public AccountCache(int maxItems, long refreshTTL, long nonExistingTTL) {
+        mNameCache = newLruMap(maxItems);
+        mIdCache = newLruMap(maxItems);
+        mAliasCache = newLruMap(maxItems);
+        mForeignPrincipalCache = newLruMap(maxItems);
+        mOldNameCache = newLruMap(maxItems);
         mRefreshTTL = refreshTTL;
+        if (nonExistingTTL > 0) {
+            mNonExistingIdCache = newNonExistingCache(maxItems, nonExistingTTL);
+            mNonExistingNameCache = newNonExistingCache(maxItems, nonExistingTTL);
+        } else {
+            mNonExistingIdCache = null;
+            mNonExistingNameCache = null;
+        }
+    }
+
+    private static ConcurrentMap<String, CacheEntry> newLruMap(int maxItems) {
+        return CacheBuilder.newBuilder().maximumSize(maxItems).<String, CacheEntry>build().asMap();
+    }
+
+    private static Cache<String, Boolean> newNonExistingCache(int maxItems, long ttl) {
+        return CacheBuilder.newBuilder().maximumSize(maxItems).expireAfterWrite(ttl, TimeUnit.MILLISECONDS).build();
     }
 
     @Override
@@ -78,6 +119,10 @@ public class AccountCache implements IAccountCache {
         mAliasCache.clear();
         mForeignPrincipalCache.clear();
         mOldNameCache.clear();
+        if (mNonExistingIdCache != null) {
+            mNonExistingIdCache.invalidateAll();
+            mNonExistingNameCache.invalidateAll();
+        }
     }
 
     @Override
@@ -95,7 +140,27 @@ public class AccountCache implements IAccountCache {
             for (String fp : fps) {
                 mForeignPrincipalCache.remove(fp);
             }
-            mOldNameCache.remove(entry.getOldMailAddress());
+            if (entry.getOldMailAddress() != null) {
+                mOldNameCache.remove(entry.getOldMailAddress());
+            }
+        }
+    }
+
+    /**
+     * Removes the mappings of a stale entry, unless they have been replaced by a newer entry already.
+     */
+    private void removeStale(CacheEntry ce) {
+        Account entry = ce.mEntry;
+        mNameCache.remove(entry.getName(), ce);
+        mIdCache.remove(entry.getId(), ce);
+        for (String alias : entry.getMultiAttr(Provisioning.A_zimbraMailAlias)) {
+            mAliasCache.remove(alias, ce);
+        }
+        for (String fp : entry.getMultiAttr(Provisioning.A_zimbraForeignPrincipal)) {
+            mForeignPrincipalCache.remove(fp, ce);
+        }
+        if (entry.getOldMailAddress() != null) {
+            mOldNameCache.remove(entry.getOldMailAddress(), ce);
         }
     }
 
@@ -105,10 +170,13 @@ public class AccountCache implements IAccountCache {
             CacheEntry cacheEntry = new CacheEntry(entry, mRefreshTTL);
             mNameCache.put(entry.getName(), cacheEntry);
             mIdCache.put(entry.getId(), cacheEntry);
+            removeNonExisting(AccountBy.id, entry.getId());
+            removeNonExisting(AccountBy.name, entry.getName());
 
             String aliases[] = entry.getMultiAttr(Provisioning.A_zimbraMailAlias);
             for (String alias : aliases) {
                 mAliasCache.put(alias, cacheEntry);
+                removeNonExisting(AccountBy.name, alias);
             }
 
             String fps[] = entry.getMultiAttr(Provisioning.A_zimbraForeignPrincipal);
@@ -127,43 +195,83 @@ public class AccountCache implements IAccountCache {
         put(entry);
     }
 
-    private Account get(String key, Map cache) {
-        CacheEntry ce = (CacheEntry) cache.get(key);
-        if (ce != null) {
-            if (mRefreshTTL != 0 && ce.isStale()) {
-                remove(ce.mEntry);
-                mHitRate.increment(0);
-                return null;
-            } else {
-                mHitRate.increment(100);
-                return ce.mEntry;
-            }
-        } else {
-            mHitRate.increment(0);
+    private Account get(String key, Map<String, CacheEntry> cache) {
+        CacheEntry ce = key == null ? null : cache.get(key);
+        if (ce == null) {
             return null;
         }
+        if (mRefreshTTL != 0 && ce.isStale()) {
+            removeStale(ce);
+            return null;
+        }
+        return ce.mEntry;
+    }
+
+    private Account countHit(Account acct, Counter keyTypeHitRate) {
+        int hit = acct != null ? 100 : 0;
+        mHitRate.increment(hit);
+        keyTypeHitRate.increment(hit);
+        return acct;
     }
 
     @Override
-    public synchronized Account getById(String key) {
-        return get(key, mIdCache);
+    public Account getById(String key) {
+        return countHit(get(key, mIdCache), mIdHitRate);
     }
 
     @Override
-    public synchronized Account getByName(String key) {
-        Account acct = get(key.toLowerCase(), mNameCache) != null ? get(key.toLowerCase(), mNameCache)
-                : get(key.toLowerCase(), mAliasCache) != null ? get(key.toLowerCase(), mAliasCache)
-                        : get(key.toLowerCase(), mOldNameCache);
-        return acct;
+    public Account getByName(String key) {
+        key = key.toLowerCase();
+        Account acct = get(key, mNameCache);
+        if (acct == null) {
+            acct = get(key, mAliasCache);
+        }
+        if (acct == null) {
+            acct = get(key, mOldNameCache);
+        }
+        return countHit(acct, mNameHitRate);
     }
 
     @Override
-    public synchronized Account getByForeignPrincipal(String key) {
-        return get(key, mForeignPrincipalCache);
+    public Account getByForeignPrincipal(String key) {
+        return countHit(get(key, mForeignPrincipalCache), mForeignPrincipalHitRate);
+    }
+
+    private Cache<String, Boolean> getNonExistingCache(AccountBy keyType) {
+        switch (keyType) {
+            case id:
+                return mNonExistingIdCache;
+            case name:
+                return mNonExistingNameCache;
+            default:
+                return null;
+        }
     }
 
     @Override
-    public synchronized int getSize() {
+    public void putNonExisting(AccountBy keyType, String key) {
+        Cache<String, Boolean> cache = getNonExistingCache(keyType);
+        if (cache != null && key != null) {
+            cache.put(key.toLowerCase(), Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public boolean isNonExisting(AccountBy keyType, String key) {
+        Cache<String, Boolean> cache = getNonExistingCache(keyType);
+        return cache != null && key != null && cache.getIfPresent(key.toLowerCase()) != null;
+    }
+
+    @Override
+    public void removeNonExisting(AccountBy keyType, String key) {
+        Cache<String, Boolean> cache = getNonExistingCache(keyType);
+        if (cache != null && key != null) {
+            cache.invalidate(key.toLowerCase());
+        }
+    }
+
+    @Override
+    public int getSize() {
         return mIdCache.size();
     }
 
@@ -171,7 +279,21 @@ public class AccountCache implements IAccountCache {
      * Returns the cache hit rate as a value between 0 and 100.
      */
     @Override
-    public synchronized double getHitRate() {
+    public double getHitRate() {
         return mHitRate.getAverage();
     }
+
+    @Override
+    public double getHitRate(AccountBy keyType) {
+        switch (keyType) {
+            case id:
+                return mIdHitRate.getAverage();
+            case name:
+                return mNameHitRate.getAverage();
+            case foreignPrincipal:
+                return mForeignPrincipalHitRate.getAverage();
+            default:
+                return 0;
+        }
+    }
 }
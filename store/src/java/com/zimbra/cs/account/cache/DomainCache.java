@@ -24,8 +24,9 @@
 package com.zimbra.cs.account.cache;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
-import com.zimbra.common.util.MapUtil;
+import com.google.common.cache.CacheBuilder;
 import com.zimbra.common.account.Key.DomainBy;
 import com.zimbra.common.stats.Counter;
 import com.zimbra.common.stats.HitRateCounter;
@@ -33,18 +34,20 @@ import com.zimbra.cs.account.Domain;
 import com.zimbra.cs.account.Provisioning;
 
 /**
+ * Lookups are lock-free; updates are serialized so that the maps stay consistent with each other.
+ *
  * @author schemers
  **/
 public class DomainCache implements IDomainCache {
     
-    private Map mNameCache;
-    private Map mIdCache;
-    private Map mVirtualHostnameCache;
-    private Map mForeignNameCache;
-    private Map mKrb5RealmCache;
+    private final ConcurrentMap<String, CacheEntry> mNameCache;
+    private final ConcurrentMap<String, CacheEntry> mIdCache;
+    private final ConcurrentMap<String, CacheEntry> mVirtualHostnameCache;
+    private final ConcurrentMap<String, CacheEntry> mForeignNameCache;
+    private final ConcurrentMap<String, CacheEntry> mKrb5RealmCache;
     
-    private long mRefreshTTL;
-    private Counter mHitRate = new HitRateCounter();
+    private final long mRefreshTTL;
+    private final Counter mHitRate = new HitRateCounter();
 
     
     public enum GetFromDomainCacheOption {
@@ -82,11 +85,11 @@ public class DomainCache implements IDomainCache {
     
 
     class NegativeCache {
-        private Map mNegativeNameCache;
-        private Map mNegativeIdCache;
-        private Map mNegativeVirtualHostnameCache;
-        private Map mNegativeForeignNameCache;
-        private Map mNegativeKrb5RealmCache;
+        private final ConcurrentMap<String, NonExistingDomain> mNegativeNameCache;
+        private final ConcurrentMap<String, NonExistingDomain> mNegativeIdCache;
+        private final ConcurrentMap<String, NonExistingDomain> mNegativeVirtualHostnameCache;
+        private final ConcurrentMap<String, NonExistingDomain> mNegativeForeignNameCache;
+        private final ConcurrentMap<String, NonExistingDomain> mNegativeKrb5RealmCache;
 
         private long mNERefreshTTL;
         
@@ -97,16 +100,16 @@ public class DomainCache implements IDomainCache {
         private boolean mEnabled = true;
         
         private NegativeCache(int maxItems, long refreshTTL) {
-            mNegativeNameCache = MapUtil.newLruMap(maxItems);
-            mNegativeIdCache = MapUtil.newLruMap(maxItems);
-            mNegativeVirtualHostnameCache = MapUtil.newLruMap(maxItems);  
-            mNegativeForeignNameCache = MapUtil.newLruMap(maxItems);  
-            mNegativeKrb5RealmCache = MapUtil.newLruMap(maxItems);   
+            mNegativeNameCache = newLruMap(maxItems);
+            mNegativeIdCache = newLruMap(maxItems);
+            mNegativeVirtualHostnameCache = newLruMap(maxItems);
+            mNegativeForeignNameCache = newLruMap(maxItems);
+            mNegativeKrb5RealmCache = newLruMap(maxItems);
             mNERefreshTTL = refreshTTL;
         }
         
         private void put(DomainBy domainBy, String key) {
-            if (!mEnabled)
+            if (!mEnabled || key == null)
                 return;
             
             NonExistingDomain nonExistingDomain = new NonExistingDomain();
@@ -136,15 +139,15 @@ public class DomainCache implements IDomainCache {
             
             switch (domainBy) {
             case name:
-                return (NonExistingDomain)mNegativeNameCache.get(key);
+                return mNegativeNameCache.get(key);
             case id:
-                return (NonExistingDomain)mNegativeIdCache.get(key);
+                return mNegativeIdCache.get(key);
             case virtualHostname:
-                return (NonExistingDomain)mNegativeVirtualHostnameCache.get(key);
+                return mNegativeVirtualHostnameCache.get(key);
             case foreignName:
-                return (NonExistingDomain)mNegativeForeignNameCache.get(key);
+                return mNegativeForeignNameCache.get(key);
             case krb5Realm:
-                return (NonExistingDomain)mNegativeKrb5RealmCache.get(key);
+                return mNegativeKrb5RealmCache.get(key);
             }
             return null;
         }
@@ -204,16 +207,20 @@ public class DomainCache implements IDomainCache {
  * @param refreshTTL
  */
     public DomainCache(int maxItems, long refreshTTL, int maxItemsNegative, long refreshTTLNegative) {
-        mNameCache = MapUtil.newLruMap(maxItems);
-        mIdCache = MapUtil.newLruMap(maxItems);
-        mVirtualHostnameCache = MapUtil.newLruMap(maxItems);  
-        mForeignNameCache = MapUtil.newLruMap(maxItems); 
-        mKrb5RealmCache = MapUtil.newLruMap(maxItems);   
+        mNameCache = newLruMap(maxItems);
+        mIdCache = newLruMap(maxItems);
+        mVirtualHostnameCache = newLruMap(maxItems);
+        mForeignNameCache = newLruMap(maxItems);
+        mKrb5RealmCache = newLruMap(maxItems);
         mRefreshTTL = refreshTTL;
         
         mNegativeCache = new NegativeCache(maxItemsNegative, refreshTTLNegative);
     }
 
+    private static <V> ConcurrentMap<String, V> newLruMap(int maxItems) {
+        return CacheBuilder.newBuilder().maximumSize(maxItems).<String, V>build().asMap();
+    }
+
     @Override
     public synchronized void clear() {
         mNameCache.clear();
@@ -245,6 +252,25 @@ public class DomainCache implements IDomainCache {
         }
     }
     
+    /**
+     * Removes the mappings of a stale entry, unless they have been replaced by a newer entry already.
+     */
+    private void removeStale(CacheEntry ce) {
+        Domain entry = ce.mEntry;
+        mNameCache.remove(entry.getName(), ce);
+        mIdCache.remove(entry.getId(), ce);
+
+        for (String vh : entry.getMultiAttr(Provisioning.A_zimbraVirtualHostname))
+            mVirtualHostnameCache.remove(vh.toLowerCase(), ce);
+
+        for (String fn : entry.getMultiAttr(Provisioning.A_zimbraForeignName))
+            mForeignNameCache.remove(fn.toLowerCase(), ce);
+
+        String krb5Realm = entry.getAttr(Provisioning.A_zimbraAuthKerberos5Realm);
+        if (krb5Realm != null)
+            mKrb5RealmCache.remove(krb5Realm, ce);
+    }
+    
     @Override
     public synchronized void replace(Domain entry) {
         remove(entry);
@@ -282,11 +308,11 @@ public class DomainCache implements IDomainCache {
         }
     }
 
-    private Domain get(String key, Map cache) {
-        CacheEntry ce = (CacheEntry) cache.get(key);
+    private Domain get(String key, Map<String, CacheEntry> cache) {
+        CacheEntry ce = key == null ? null : cache.get(key);
         if (ce != null) {
             if (mRefreshTTL != 0 && ce.isStale()) {
-                remove(ce.mEntry);
+                removeStale(ce);
                 mHitRate.increment(0);
                 return null;
             } else {
@@ -300,7 +326,7 @@ public class DomainCache implements IDomainCache {
     }
     
     @Override
-    public synchronized Domain getById(String key, GetFromDomainCacheOption option) {
+    public Domain getById(String key, GetFromDomainCacheOption option) {
         
         switch (option) {
         case POSITIVE:
@@ -318,7 +344,7 @@ public class DomainCache implements IDomainCache {
     }
     
     @Override
-    public synchronized Domain getByName(String key, GetFromDomainCacheOption option) {
+    public Domain getByName(String key, GetFromDomainCacheOption option) {
         
         switch (option) {
         case POSITIVE:
@@ -336,7 +362,7 @@ public class DomainCache implements IDomainCache {
     }
     
     @Override
-    public synchronized Domain getByVirtualHostname(String key, GetFromDomainCacheOption option) {
+    public Domain getByVirtualHostname(String key, GetFromDomainCacheOption option) {
         
         switch (option) {
         case POSITIVE:
@@ -354,7 +380,7 @@ public class DomainCache implements IDomainCache {
     }
     
     @Override
-    public synchronized Domain getByForeignName(String key, GetFromDomainCacheOption option) {
+    public Domain getByForeignName(String key, GetFromDomainCacheOption option) {
         
         switch (option) {
         case POSITIVE:
@@ -372,7 +398,7 @@ public class DomainCache implements IDomainCache {
     }
     
     @Override
-    public synchronized Domain getByKrb5Realm(String key, GetFromDomainCacheOption option) {
+    public Domain getByKrb5Realm(String key, GetFromDomainCacheOption option) {
         
         switch (option) {
         case POSITIVE:
@@ -390,7 +416,7 @@ public class DomainCache implements IDomainCache {
     }
 
     @Override
-    public synchronized int getSize() {
+    public int getSize() {
         return mIdCache.size();
     }
     
@@ -398,7 +424,7 @@ public class DomainCache implements IDomainCache {
      * Returns the cache hit rate as a value between 0 and 100.<br />
      */
     @Override
-    public synchronized double getHitRate() {
+    public double getHitRate() {
     	 return mHitRate.getAverage();
     }
 }
@@ -16,6 +16,7 @@
  */
 package com.zimbra.cs.account.cache;
 
+import com.zimbra.common.account.Key.AccountBy;
 import com.zimbra.cs.account.Account;
 
 public interface IAccountCache extends IEntryCache {
@@ -26,4 +27,17 @@ public interface IAccountCache extends IEntryCache {
     public Account getById(String key);
     public Account getByName(String key);
     public Account getByForeignPrincipal(String key);
+
+    /**
+     * Remembers that no account matches an id or name, if the cache keeps track of non-existing entries.
+     * Putting an account forgets its id, name and aliases.
+     */
+    public void putNonExisting(AccountBy keyType, String key);
+    public boolean isNonExisting(AccountBy keyType, String key);
+    public void removeNonExisting(AccountBy keyType, String key);
+
+    /**
+     * Returns the hit rate of lookups by the given key type as a value between 0 and 100.
+     */
+    public double getHitRate(AccountBy keyType);
 }
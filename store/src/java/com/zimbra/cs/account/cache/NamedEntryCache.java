@@ -25,22 +25,25 @@ package com.zimbra.cs.account.cache;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
-import com.zimbra.common.util.MapUtil;
+import com.google.common.cache.CacheBuilder;
 import com.zimbra.common.stats.Counter;
 import com.zimbra.common.stats.HitRateCounter;
 import com.zimbra.cs.account.NamedEntry;
 
 /**
+ * Lookups are lock-free; updates are serialized so that the maps stay consistent with each other.
+ *
  * @author schemers
  **/
 public class NamedEntryCache<E extends NamedEntry> implements INamedEntryCache<E> {
     
-    private Map mNameCache;
-    private Map mIdCache;
+    private final ConcurrentMap<String, CacheEntry<E>> mNameCache;
+    private final ConcurrentMap<String, CacheEntry<E>> mIdCache;
     
-    private long mRefreshTTL;
-    private Counter mHitRate = new HitRateCounter();
+    private final long mRefreshTTL;
+    private final Counter mHitRate = new HitRateCounter();
    
 
     static class CacheEntry<E extends NamedEntry> {
@@ -61,11 +64,15 @@ public class NamedEntryCache<E extends NamedEntry> implements INamedEntryCache<E
  * @param refreshTTL
  */
     public NamedEntryCache(int maxItems, long refreshTTL) {
-        mNameCache = MapUtil.newLruMap(maxItems);
-        mIdCache = MapUtil.newLruMap(maxItems);
+        mNameCache = newLruMap(maxItems);
+        mIdCache = newLruMap(maxItems);
         mRefreshTTL = refreshTTL;
     }
 
+    private static <E extends NamedEntry> ConcurrentMap<String, CacheEntry<E>> newLruMap(int maxItems) {
+        return CacheBuilder.newBuilder().maximumSize(maxItems).<String, CacheEntry<E>>build().asMap();
+    }
+
     @Override
     public synchronized void clear() {
         mNameCache.clear();
@@ -85,6 +92,14 @@ public class NamedEntryCache<E extends NamedEntry> implements INamedEntryCache<E
             mIdCache.remove(entry.getId());
         }
     }
+
+    /**
+     * Removes the mappings of a stale entry, unless they have been replaced by a newer entry already.
+     */
+    private void removeStale(CacheEntry<E> ce) {
+        mNameCache.remove(ce.mEntry.getName(), ce);
+        mIdCache.remove(ce.mEntry.getId(), ce);
+    }
     
     @Override
     public synchronized void put(E entry) {
@@ -110,12 +125,11 @@ public class NamedEntryCache<E extends NamedEntry> implements INamedEntryCache<E
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private E get(String key, Map cache) {
-        CacheEntry<E> ce = (CacheEntry<E>) cache.get(key);
+    private E get(String key, Map<String, CacheEntry<E>> cache) {
+        CacheEntry<E> ce = key == null ? null : cache.get(key);
         if (ce != null) {
             if (mRefreshTTL != 0 && ce.isStale()) {
-                remove(ce.mEntry);
+                removeStale(ce);
                 mHitRate.increment(0);
                 return null;
             } else {
@@ -129,17 +143,17 @@ public class NamedEntryCache<E extends NamedEntry> implements INamedEntryCache<E
     }
     
     @Override
-    public synchronized E getById(String key) {
+    public E getById(String key) {
         return get(key, mIdCache);
     }
     
     @Override
-    public synchronized E getByName(String key) {
+    public E getByName(String key) {
         return get(key.toLowerCase(), mNameCache);
     }
     
     @Override
-    public synchronized int getSize() {
+    public int getSize() {
         return mIdCache.size();
     }
     
@@ -148,7 +162,7 @@ public class NamedEntryCache<E extends NamedEntry> implements INamedEntryCache<E
      * Returns the cache hit rate as a value between 0 and 100.
      */
     @Override
-    public synchronized double getHitRate() {
+    public double getHitRate() {
         return mHitRate.getAverage();
     }
 }
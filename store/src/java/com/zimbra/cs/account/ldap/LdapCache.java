@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import com.zimbra.common.account.Key.AccountBy;
 import com.zimbra.common.account.Key.DomainBy;
 import com.zimbra.common.localconfig.LC;
 import com.zimbra.common.service.ServiceException;
@@ -72,7 +73,8 @@ abstract class LdapCache {
         private final IAccountCache accountCache =
             new AccountCache(
                     LC.ldap_cache_account_maxsize.intValue(),
-                    LC.ldap_cache_account_maxage.intValue() * Constants.MILLIS_PER_MINUTE);
+                    LC.ldap_cache_account_maxage.intValue() * Constants.MILLIS_PER_MINUTE,
+                    LC.ldap_cache_account_nonexisting_maxage_seconds.intValue() * Constants.MILLIS_PER_SECOND);
 
         private final INamedEntryCache<LdapCos> cosCache =
             new NamedEntryCache<LdapCos>(
@@ -223,11 +225,23 @@ abstract class LdapCache {
             @Override
             public Account getByForeignPrincipal(String key) { return null; }
 
+            @Override
+            public void putNonExisting(AccountBy keyType, String key) {}
+
+            @Override
+            public boolean isNonExisting(AccountBy keyType, String key) { return false; }
+
+            @Override
+            public void removeNonExisting(AccountBy keyType, String key) {}
+
             @Override
             public int getSize() { return 0; }
 
             @Override
             public double getHitRate() { return 0; }
+
+            @Override
+            public double getHitRate(AccountBy keyType) { return 0; }
         }
 
         static class NoopDomainCache implements IDomainCache {
@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.zimbra.common.account.Key.AccountBy;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.cs.account.Account;
 import com.zimbra.cs.account.Domain;
@@ -75,6 +76,7 @@ public abstract class LdapProv extends Provisioning {
 
     public abstract int getAccountCacheSize();
     public abstract double getAccountCacheHitRate();
+    public abstract double getAccountCacheHitRate(AccountBy keyType);
     public abstract int getCosCacheSize();
     public abstract double getCosCacheHitRate();
     public abstract int getDomainCacheSize();
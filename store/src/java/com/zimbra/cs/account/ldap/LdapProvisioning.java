@@ -162,6 +162,7 @@ import com.zimbra.cs.account.ldap.entry.LdapZimlet;
 import com.zimbra.cs.account.names.NameUtil;
 import com.zimbra.cs.account.names.NameUtil.EmailAddress;
 import com.zimbra.cs.datasource.DataSourceManager;
+import com.zimbra.cs.ephemeral.EphemeralChange;
 import com.zimbra.cs.ephemeral.EphemeralInput;
 import com.zimbra.cs.ephemeral.EphemeralKey;
 import com.zimbra.cs.ephemeral.EphemeralLocation;
@@ -345,6 +346,8 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
 
     @Override
     public double getAccountCacheHitRate() { return accountCache.getHitRate(); }
+    @Override
+    public double getAccountCacheHitRate(AccountBy keyType) { return accountCache.getHitRate(keyType); }
 
     @Override
     public int getCosCacheSize() { return cosCache.getSize(); }
@@ -577,6 +580,8 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
     private void modifyEphemeralAttrs(Entry entry, Map<String, Object> attrs, Map<String, AttributeInfo> ephemeralAttrMap) throws ServiceException {
         EphemeralLocation location = new LdapEntryLocation(entry);
         EphemeralStore store = EphemeralStore.getFactory().getStore();
+        // all changes go to the store in one batch, so that a backend like LDAP can write them at once
+        List<EphemeralChange> changes = new ArrayList<EphemeralChange>(attrs.size());
         for (Map.Entry<String, Object> e: attrs.entrySet()) {
             String key = e.getKey();
             Object value = e.getValue();
@@ -606,23 +611,25 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
                     for (Object v : values) {
                         if (v == null) { continue; }
                         String s = v.toString();
-                        handleEphemeralAttrChange(store, key, s, location, ai, converter, doAdd, doRemove);
+                        addEphemeralAttrChange(changes, key, s, ai, converter, doAdd, doRemove);
                     }
                 }
             } else if (value instanceof Map) {
                 throw ServiceException.FAILURE("Map is not a supported value type", null);
             } else if (value != null) {
                 String s = value.toString();
-                handleEphemeralAttrChange(store, key, s, location, ai, converter, doAdd, doRemove);
+                addEphemeralAttrChange(changes, key, s, ai, converter, doAdd, doRemove);
             } else {
                 ZimbraLog.ephemeral.warn("Ephemeral attribute %s doesn't support deletion by key; only deletion by key+value is supported", key);
             }
         }
+        if (!changes.isEmpty()) {
+            store.apply(changes, location);
+        }
     }
 
-    private void handleEphemeralAttrChange(EphemeralStore store, String key, String value, EphemeralLocation location,
-            AttributeInfo ai, AttributeConverter converter, boolean doAdd, boolean doRemove)
-    throws ServiceException {
+    private void addEphemeralAttrChange(List<EphemeralChange> changes, String key, String value,
+            AttributeInfo ai, AttributeConverter converter, boolean doAdd, boolean doRemove) {
         EphemeralInput input;
         if (ai.isDynamic()) {
             input = converter.convert(key, value);
@@ -634,13 +641,13 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
             input = new EphemeralInput(new EphemeralKey(key), value.toString());
         }
         if (doAdd) {
-            store.update(input, location);
+            changes.add(EphemeralChange.update(input));
         }
         else if (doRemove) {
-            store.delete(input.getEphemeralKey(), (String) input.getValue(), location);
+            changes.add(EphemeralChange.delete(input.getEphemeralKey(), (String) input.getValue()));
         }
         else {
-            store.set(input, location);
+            changes.add(EphemeralChange.set(input));
         }
     }
 
@@ -960,6 +967,9 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
             return null;
         Account a = accountCache.getById(zimbraId);
         if (a == null) {
+            if (!loadFromMaster && accountCache.isNonExisting(AccountBy.id, zimbraId)) {
+                return null;
+            }
             ZLdapFilter filter = filterFactory.accountById(zimbraId);
 
             a = getAccountByQuery(mDIT.mailBranchBaseDN(), filter, zlc, loadFromMaster);
@@ -968,7 +978,11 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
             if (a == null && !mDIT.isUnder(mDIT.mailBranchBaseDN(), mDIT.adminBaseDN()))
                 a = getAccountByQuery(mDIT.adminBaseDN(), filter, zlc, loadFromMaster);
 
-            accountCache.put(a);
+            if (a == null) {
+                accountCache.putNonExisting(AccountBy.id, zimbraId);
+            } else {
+                accountCache.put(a);
+            }
         }
         return a;
     }
@@ -1142,11 +1156,18 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
 
         Account account = accountCache.getByName(emailAddress);
         if (account == null) {
+            if (!loadFromMaster && accountCache.isNonExisting(AccountBy.name, emailAddress)) {
+                return null;
+            }
             account = getAccountByQuery(
                     mDIT.mailBranchBaseDN(),
                     filterFactory.accountByName(emailAddress),
                     null, loadFromMaster);
-            accountCache.put(account);
+            if (account == null) {
+                accountCache.putNonExisting(AccountBy.name, emailAddress);
+            } else {
+                accountCache.put(account);
+            }
         }
         return account;
     }
@@ -2337,6 +2358,7 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
     @Override
     public void addAlias(Account acct, String alias) throws ServiceException {
         addAliasInternal(acct, alias);
+        accountCache.removeNonExisting(AccountBy.name, IDNUtil.toAsciiEmail(alias));
     }
 
     @Override
@@ -3352,6 +3374,7 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
 
         // prune cache
         accountCache.remove(acct);
+        accountCache.removeNonExisting(AccountBy.name, newName);
 
         LdapEntry entry = (LdapEntry) acct;
         if (acct == null)
@@ -9026,6 +9049,7 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
             if (entries != null) {
                 for (CacheEntry entry : entries) {
                     AccountBy accountBy = (entry.mEntryBy==Key.CacheEntryBy.id)? AccountBy.id : AccountBy.name;
+                    accountCache.removeNonExisting(accountBy, entry.mEntryIdentity);
                     Account account = getFromCache(accountBy, entry.mEntryIdentity);
                     /*
                      * We now call removeFromCache instead of reload for flushing an account
@@ -223,7 +223,7 @@ public abstract class Db {
         return ";";
     }
 
-    private static final int DEFAULT_IN_CLAUSE_BATCH_SIZE = 400;
+    private static final int DEFAULT_IN_CLAUSE_BATCH_SIZE = LC.zimbra_db_in_clause_batch_size.intValue();
 
     protected int getInClauseBatchSize() { return DEFAULT_IN_CLAUSE_BATCH_SIZE; }
 
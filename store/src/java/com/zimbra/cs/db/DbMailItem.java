@@ -84,6 +84,7 @@ import com.zimbra.cs.mailbox.util.TagUtil;
 import com.zimbra.cs.mailbox.util.TypedIdList;
 import com.zimbra.cs.pop3.Pop3Message;
 import com.zimbra.cs.session.PendingModifications.Change;
+import com.zimbra.cs.stats.ZimbraPerf;
 import com.zimbra.cs.store.MailboxBlob;
 import com.zimbra.cs.store.StoreManager;
 import com.zimbra.cs.util.SpoolingCache;
@@ -1880,21 +1881,7 @@ public class DbMailItem {
                 if (row == null || row.equals("")) {
                     continue;
                 }
-
-                // the list of tombstones is comma-delimited
-                for (String stone : row.split(",")) {
-                    try {
-                        // a tombstone may either be ID or ID:UUID, so parse accordingly
-                        int delimiter = stone.indexOf(':');
-                        if (delimiter == -1) {
-                            tombstones.add(Integer.parseInt(stone));
-                        } else {
-                            tombstones.add(Integer.parseInt(stone.substring(0, delimiter)));
-                        }
-                    } catch (NumberFormatException nfe) {
-                        ZimbraLog.sync.warn("unparseable TOMBSTONE entry: " + stone);
-                    }
-                }
+                visitTombstones(row, false, (id, uuid) -> tombstones.add(id));
             }
             return tombstones;
         } catch (SQLException e) {
@@ -1935,21 +1922,7 @@ public class DbMailItem {
                 if (row == null || row.equals("")) {
                     continue;
                 }
-
-                // the list of tombstones is comma-delimited
-                for (String stone : row.split(",")) {
-                    try {
-                        // a tombstone may either be ID or ID:UUID, so parse accordingly
-                        int delimiter = stone.indexOf(':');
-                        if (delimiter == -1) {
-                            tombstones.add(type, Integer.parseInt(stone), null, modSeq);
-                        } else {
-                            tombstones.add(type, Integer.parseInt(stone.substring(0, delimiter)), Strings.emptyToNull(stone.substring(delimiter + 1)), modSeq);
-                        }
-                    } catch (NumberFormatException nfe) {
-                        ZimbraLog.sync.warn("unparseable TOMBSTONE entry: " + stone);
-                    }
-                }
+                visitTombstones(row, true, (id, uuid) -> tombstones.add(type, id, uuid, modSeq));
             }
             return tombstones;
         } catch (SQLException e) {
@@ -1960,6 +1933,46 @@ public class DbMailItem {
         }
     }
 
+    private interface TombstoneVisitor {
+        void visit(int id, String uuid);
+    }
+
+    /**
+     * Parses a row of the comma-delimited tombstone list in place, rather than splitting it into one string per entry
+     * first; a mailbox with a long change history can have millions of entries.  A tombstone may either be ID or
+     * ID:UUID.
+     *
+     * @param wantUuid false to skip extracting the UUIDs, in which case the visitor gets null
+     */
+    private static void visitTombstones(String row, boolean wantUuid, TombstoneVisitor visitor) {
+        int len = row.length();
+        for (int start = 0, end; start < len; start = end + 1) {
+            end = row.indexOf(',', start);
+            if (end < 0) {
+                end = len;
+            }
+            int id = 0;
+            int pos = start;
+            for (; pos < end && row.charAt(pos) != ':'; pos++) {
+                int digit = row.charAt(pos) - '0';
+                if (digit < 0 || digit > 9 || id > (Integer.MAX_VALUE - digit) / 10) {
+                    id = -1;
+                    break;
+                }
+                id = id * 10 + digit;
+            }
+            if (id < 0 || pos == start) {
+                ZimbraLog.sync.warn("unparseable TOMBSTONE entry: " + row.substring(start, end));
+                continue;
+            }
+            String uuid = null;
+            if (wantUuid && pos < end) {
+                uuid = Strings.emptyToNull(row.substring(pos + 1, end));
+            }
+            visitor.visit(id, uuid);
+        }
+    }
+
     public static TypedIdList readTombstones(Mailbox mbox, long lastSync) throws ServiceException {
             return readTombstones(mbox, lastSync, Boolean.FALSE);
     }
@@ -2522,6 +2535,7 @@ public class DbMailItem {
             pos = setMailboxId(stmt, mbox, pos);
             stmt.setString(pos++, key);
             rs = stmt.executeQuery();
+            ZimbraPerf.COUNTER_DB_ITEM_FETCH.increment(1);
 
             if (!rs.next()) {
                 if (LookupBy.uuid.equals(by)) {
@@ -2615,6 +2629,7 @@ public class DbMailItem {
                 }
 
                 rs = stmt.executeQuery();
+                ZimbraPerf.COUNTER_DB_ITEM_FETCH.increment(count);
                 while (rs.next()) {
                     UnderlyingData data = constructItem(rs);
                     MailItem.Type resultType = MailItem.Type.of(data.type);
@@ -3519,13 +3534,17 @@ public class DbMailItem {
 
     public static Pair<List<ImapMessage>, Boolean> loadImapFolder(Folder folder, Integer limit, Integer cursorId) throws ServiceException {
         Mailbox mbox = folder.getMailbox();
-        List<ImapMessage> result = new ArrayList<ImapMessage>();
+        boolean hasLimit = limit != null && limit > 0;
+        boolean hasCursor = cursorId != null;
+        // size the list up front so that loading a huge folder doesn't keep copying it
+        long expected = hasLimit ? Math.min(limit, folder.getSize()) : folder.getSize();
+        List<ImapMessage> result = new ArrayList<ImapMessage>((int) Math.min(Math.max(expected, 10), 1000000));
+        // most messages share one of a few tag combinations, so decode each distinct one once
+        Map<String, String[]> tagCache = new HashMap<String, String[]>();
 
         DbConnection conn = mbox.getOperationConnection();
         PreparedStatement stmt = null;
         ResultSet rs = null;
-        boolean hasLimit = limit != null && limit > 0;
-        boolean hasCursor = cursorId != null;
 
         try {
             StringBuilder query = new StringBuilder("SELECT " + IMAP_FIELDS +
@@ -3540,7 +3559,7 @@ public class DbMailItem {
                 query.append(" ").append(Db.getInstance().limit(limit+1));
             }
             stmt = conn.prepareStatement(query.toString());
-            if (folder.getSize() > RESULTS_STREAMING_MIN_ROWS && !hasLimit) {
+            if (expected > RESULTS_STREAMING_MIN_ROWS) {
                 Db.getInstance().enableStreaming(stmt);
             }
             int pos = 1;
@@ -3556,7 +3575,7 @@ public class DbMailItem {
             boolean hasMore = false;
             if (!hasLimit) {
                 while (rs.next()) {
-                    addImapResult(result, rs);
+                    addImapResult(result, rs, tagCache);
                 }
             } else if (!Db.supports(Db.Capability.LIMIT_CLAUSE)) {
                 while (rs.next()) {
@@ -3564,13 +3583,13 @@ public class DbMailItem {
                         hasMore = true;
                         break;
                     }
-                    addImapResult(result, rs);
+                    addImapResult(result, rs, tagCache);
                 }
             } else {
                 int n = 0;
                 while (n < limit && rs.next()) {
                     n++;
-                    addImapResult(result, rs);
+                    addImapResult(result, rs, tagCache);
                 }
                 hasMore = rs.next();
             }
@@ -3583,9 +3602,20 @@ public class DbMailItem {
         }
     }
 
-    private static void addImapResult(List<ImapMessage> result, ResultSet rs) throws SQLException {
+    private static void addImapResult(List<ImapMessage> result, ResultSet rs, Map<String, String[]> tagCache)
+            throws SQLException {
         int flags = rs.getBoolean(4) ? Flag.BITMASK_UNREAD | rs.getInt(5) : rs.getInt(5);
-        result.add(new ImapMessage(rs.getInt(1), MailItem.Type.of(rs.getByte(2)), rs.getInt(3), flags, DbTag.deserializeTags(rs.getString(6))));
+        String encodedTags = rs.getString(6);
+        String[] tags = null;
+        if (encodedTags != null && !encodedTags.isEmpty()) {
+            // tag arrays are never modified in place, so messages can share them (see ImapFolder.cache)
+            tags = tagCache.get(encodedTags);
+            if (tags == null) {
+                tags = DbTag.deserializeTags(encodedTags);
+                tagCache.put(encodedTags, tags);
+            }
+        }
+        result.add(new ImapMessage(rs.getInt(1), MailItem.Type.of(rs.getByte(2)), rs.getInt(3), flags, tags));
     }
 
     public static int countImapRecent(Folder folder, int uidCutoff) throws ServiceException {
@@ -3847,6 +3877,8 @@ public class DbMailItem {
             if (volumeId > -1) {
                 stmt.setInt(pos++, volumeId);
             }
+            // volume-wide scans can return millions of rows; stream them rather than buffer the whole result set
+            Db.getInstance().enableStreaming(stmt);
             rs = stmt.executeQuery();
             while (rs.next()) {
                 blobs.add(new MailboxBlob.MailboxBlobInfo(null, rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getString(4), rs.getString(5)));
@@ -3863,6 +3895,7 @@ public class DbMailItem {
         try {
             int pos = 1;
             pos = setMailboxId(stmt, mboxId, pos);
+            Db.getInstance().enableStreaming(stmt);
             rs = stmt.executeQuery();
 
             while (rs.next()) {
@@ -0,0 +1,70 @@
+package com.zimbra.cs.ephemeral;
+
+/**
+ * One modification in a batch passed to EphemeralStore.apply().
+ *
+ * Each change corresponds to a single-key EphemeralStore method: set(), update(),
+ * delete() or purgeExpired().
+ *
+ */
+public class EphemeralChange {
+
+    public static enum Op {
+        set, update, delete, purgeExpired;
+    }
+
+    private Op op;
+    private EphemeralInput input;
+    private EphemeralKey key;
+    private String value;
+
+    private EphemeralChange(Op op, EphemeralInput input, EphemeralKey key, String value) {
+        this.op = op;
+        this.input = input;
+        this.key = key;
+        this.value = value;
+    }
+
+    public static EphemeralChange set(EphemeralInput input) {
+        return new EphemeralChange(Op.set, input, input.getEphemeralKey(), null);
+    }
+
+    public static EphemeralChange update(EphemeralInput input) {
+        return new EphemeralChange(Op.update, input, input.getEphemeralKey(), null);
+    }
+
+    public static EphemeralChange delete(EphemeralKey key, String value) {
+        return new EphemeralChange(Op.delete, null, key, value);
+    }
+
+    public static EphemeralChange purgeExpired(EphemeralKey key) {
+        return new EphemeralChange(Op.purgeExpired, null, key, null);
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    /**
+     * @return the input of a set or update, null otherwise
+     */
+    public EphemeralInput getInput() {
+        return input;
+    }
+
+    public EphemeralKey getEphemeralKey() {
+        return key;
+    }
+
+    /**
+     * @return the value to remove for a delete, null otherwise
+     */
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s", op, key);
+    }
+}
@@ -1,7 +1,9 @@
 package com.zimbra.cs.ephemeral;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.cli.CommandLine;
@@ -127,6 +129,59 @@ public abstract class EphemeralStore {
     public abstract void deleteData(EphemeralLocation location)
             throws ServiceException;
 
+    /**
+     * Get the values for several keys in the same location. The results are
+     * in the order of the keys; a key that does not exist gets an empty
+     * EphemeralResult.
+     *
+     * Backends that can fetch several keys in one round trip should override this;
+     * the default calls get() for each key.
+     *
+     * @param keys
+     * @param location
+     * @return
+     * @throws ServiceException
+     */
+    public List<EphemeralResult> get(List<EphemeralKey> keys, EphemeralLocation location)
+            throws ServiceException {
+        List<EphemeralResult> results = new ArrayList<EphemeralResult>(keys.size());
+        for (EphemeralKey key : keys) {
+            EphemeralResult result = get(key, location);
+            results.add(result == null ? EphemeralResult.emptyResult(key) : result);
+        }
+        return results;
+    }
+
+    /**
+     * Apply several changes to the same location, in order.
+     *
+     * Backends that can write several changes in one round trip should override this;
+     * the default calls the single-key method for each change.
+     *
+     * @param changes
+     * @param location
+     * @throws ServiceException
+     */
+    public void apply(List<EphemeralChange> changes, EphemeralLocation location)
+            throws ServiceException {
+        for (EphemeralChange change : changes) {
+            switch (change.getOp()) {
+            case set:
+                set(change.getInput(), location);
+                break;
+            case update:
+                update(change.getInput(), location);
+                break;
+            case delete:
+                delete(change.getEphemeralKey(), change.getValue(), location);
+                break;
+            case purgeExpired:
+                purgeExpired(change.getEphemeralKey(), location);
+                break;
+            }
+        }
+    }
+
     public static void registerFactory(String prefix, String klass) {
         if (factories.containsKey(prefix)) {
             ZimbraLog.ephemeral.warn("Replacing ephemeral factory class '%s' registered for '%s' with '%s'",
@@ -1,5 +1,7 @@
 package com.zimbra.cs.ephemeral;
 
+import java.util.List;
+
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.ZimbraLog;
 
@@ -81,6 +83,25 @@ public class ForwardingEphemeralStore extends EphemeralStore {
         }
     }
 
+    @Override
+    public List<EphemeralResult> get(List<EphemeralKey> keys, EphemeralLocation location)
+            throws ServiceException {
+        //get from the current store
+        return currentStore.get(keys, location);
+    }
+
+    @Override
+    public void apply(List<EphemeralChange> changes, EphemeralLocation location)
+            throws ServiceException {
+        //apply to both stores
+        currentStore.apply(changes, location);
+        try {
+            futureStore.apply(changes, location);
+        } catch (ServiceException e) {
+            handleError(e);
+        }
+    }
+
     @Override
     public void deleteData(EphemeralLocation location) throws ServiceException {
         //delete from both
@@ -2,8 +2,10 @@ package com.zimbra.cs.ephemeral;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.zimbra.common.service.ServiceException;
@@ -12,6 +14,7 @@ import com.zimbra.cs.account.Entry;
 import com.zimbra.cs.account.Provisioning;
 import com.zimbra.cs.account.ldap.LdapProvisioning;
 import com.zimbra.cs.ephemeral.DynamicResultsHelper.DeletionCallback;
+import com.zimbra.cs.ephemeral.EphemeralChange.Op;
 
 public class LdapEphemeralStore extends EphemeralStore {
 
@@ -89,6 +92,82 @@ public class LdapEphemeralStore extends EphemeralStore {
         return iteratorHelper.has(Arrays.asList(values));
     }
 
+    /**
+     * Writes the changes with as few LDAP modifications as possible, usually one.
+     * Pending changes are written out first when a change could not be combined with them
+     * in the same modification without changing the result, e.g. a delete has to read the
+     * current values of an attribute that already has pending changes.
+     */
+    @Override
+    public void apply(List<EphemeralChange> changes, EphemeralLocation location)
+            throws ServiceException {
+        helper.setLocation(location);
+        Map<String, PendingChanges> pending = new HashMap<String, PendingChanges>();
+        for (EphemeralChange change : changes) {
+            EphemeralKey key = change.getEphemeralKey();
+            String encodedKey = encodeKey(key, location);
+            String value = change.getInput() == null ? null : encodeValue(change.getInput(), location);
+            PendingChanges attrChanges = pending.get(encodedKey);
+            if (attrChanges != null && !attrChanges.canAdd(change.getOp(), value)) {
+                helper.executeChange();
+                pending.clear();
+                attrChanges = null;
+            }
+            if (attrChanges == null) {
+                attrChanges = new PendingChanges();
+                pending.put(encodedKey, attrChanges);
+            }
+            switch (change.getOp()) {
+            case set:
+                helper.addChange(encodedKey, value);
+                attrChanges.replaced = true;
+                break;
+            case update:
+                helper.addChange("+" + encodedKey, value);
+                attrChanges.added.add(value);
+                break;
+            case delete:
+                DynamicResultsHelper deleteHelper = new DynamicResultsHelper(key, location, encoder, callback);
+                List<String> toDelete = deleteHelper.delete(Arrays.asList(helper.getMultiAttr(key.getKey())),
+                        change.getValue());
+                for (String val : toDelete) {
+                    helper.addChange("-" + encodedKey, val);
+                }
+                attrChanges.removed.addAll(toDelete);
+                break;
+            case purgeExpired:
+                DynamicResultsHelper purgeHelper = new DynamicResultsHelper(key, location, encoder, callback, true);
+                List<String> purged = purgeHelper.purge(Arrays.asList(helper.getMultiAttr(key.getKey())));
+                for (String val : purged) {
+                    helper.addChange("-" + encodedKey, val);
+                }
+                attrChanges.removed.addAll(purged);
+                break;
+            }
+        }
+        helper.executeChange();
+    }
+
+    /**
+     * Encoded values of one attribute with changes pending in apply().
+     */
+    private static class PendingChanges {
+        boolean replaced;
+        Set<String> added = new HashSet<String>();
+        Set<String> removed = new HashSet<String>();
+
+        boolean canAdd(Op op, String value) {
+            switch (op) {
+            case update:
+                // adding values combines with other adds and removes, as long as they touch different values
+                return !replaced && !added.contains(value) && !removed.contains(value);
+            default:
+                // set replaces all values, and delete and purge read the current values
+                return false;
+            }
+        }
+    }
+
     private void deleteInternal(AbstractLdapHelper helper, String key, List<String> values) throws ServiceException {
         for (String val: values) {
             helper.addChange("-" + key, val);
@@ -133,6 +133,7 @@ public class FreeBusy implements Iterable<FreeBusy.Interval> {
             if (toAdd.mEnd > mEnd) {
                 toAdd.mEnd = mEnd;
             }
+            long addEnd = toAdd.mEnd;
 
             // step 1: Of the intervals already in the list, find the one that
             //         contains the start of toAdd.
@@ -142,8 +143,14 @@ public class FreeBusy implements Iterable<FreeBusy.Interval> {
             //
             //         Remember this "uber-start" interval, we'll need it below
             //
-            Interval uberStart;
-            for (uberStart = mHead; uberStart.hasNext(); uberStart = uberStart.getNext())
+            //         Intervals are usually added in ascending start order, so begin the scan at the
+            //         interval the previous add ended up touching if that's not past toAdd.
+            //
+            Interval uberStart = mHead;
+            if (mHint != null && mHint.mStart <= toAdd.mStart) {
+                uberStart = mHint;
+            }
+            for (; uberStart.hasNext(); uberStart = uberStart.getNext())
             {
                 if (uberStart.getNext().mStart > toAdd.mStart) {
                     break;
@@ -237,6 +244,7 @@ public class FreeBusy implements Iterable<FreeBusy.Interval> {
             
             
             // FINISH: iterate from uber-start until past toAdd's end, join intervals next to each other
+            //         (everything after that was left alone and is already joined)
             
 //            System.out.print("BEFORE combining: "+toString());
             
@@ -244,8 +252,10 @@ public class FreeBusy implements Iterable<FreeBusy.Interval> {
             if (cur.hasPrev()) {
                 cur = cur.getPrev();
             }
+            // cur is never removed below, so it is safe to start the next scan from it
+            mHint = cur;
             
-            while (cur.getNext() != null) {
+            while (cur.getNext() != null && cur.mStart <= addEnd) {
                 assert(cur.getNext().mStart == cur.mEnd);
                 if (cur.mStatus.equals(cur.getNext().mStatus)) {
                     cur.mEnd = cur.getNext().mEnd;
@@ -275,6 +285,7 @@ public class FreeBusy implements Iterable<FreeBusy.Interval> {
         long mEnd;
         
         Interval mHead;
+        Interval mHint;  // an interval still in the list, where the last addInterval() started joining
     }
     
     public static class Interval {
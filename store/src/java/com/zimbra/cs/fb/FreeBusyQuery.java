@@ -113,6 +113,8 @@ public class FreeBusyQuery {
     }
     
     private void prepareRequests(ArrayList<FreeBusy> local, RemoteFreeBusyProvider remote, ArrayList<String> external) {
+        // same requestor for every target; build the context once rather than once per attendee
+        OperationContext octxt = null;
     	for (String id : mTargets.keySet()) {
     		Account acct = mTargets.get(id);
     		try {
@@ -125,13 +127,14 @@ public class FreeBusyQuery {
     		
         		if (Provisioning.onLocalServer(acct)) {
         		    Mailbox mbox = MailboxManager.getInstance().getMailboxByAccount(acct);
-        		    OperationContext octxt = null;
-        		    if (mCtxt != null && mCtxt.getAuthToken() != null)
-        		        octxt = new OperationContext(mCtxt.getAuthToken());
-        		    else if (mRequestor != null)
-        		        octxt = new OperationContext(mRequestor);
-        		    else
-        		        octxt = new OperationContext(GuestAccount.ANONYMOUS_ACCT);
+        		    if (octxt == null) {
+        		        if (mCtxt != null && mCtxt.getAuthToken() != null)
+        		            octxt = new OperationContext(mCtxt.getAuthToken());
+        		        else if (mRequestor != null)
+        		            octxt = new OperationContext(mRequestor);
+        		        else
+        		            octxt = new OperationContext(GuestAccount.ANONYMOUS_ACCT);
+        		    }
                     Appointment exAppt = null;
                     if (mExApptUid != null) {
                         CalendarItem ci = mbox.getCalendarItemByUid(octxt, mExApptUid);
@@ -17,6 +17,8 @@
 package com.zimbra.cs.fb;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
@@ -44,6 +46,13 @@ import com.zimbra.cs.mailbox.calendar.cache.InstanceData;
 
 public class LocalFreeBusyProvider {
 
+    private static final Comparator<Interval> START_ORDER = new Comparator<Interval>() {
+        @Override
+        public int compare(Interval i1, Interval i2) {
+            return Long.compare(i1.getStart(), i2.getStart());
+        }
+    };
+
     /**
      *
      * @param mbox
@@ -64,7 +73,9 @@ public class LocalFreeBusyProvider {
 
         int exApptId = exAppt == null ? -1 : exAppt.getId();
 
-        IntervalList intervals = new IntervalList(start, end);
+        // Collect the busy intervals of all calendars first and add them in start time order; that lets
+        // IntervalList pick up where the previous add left off instead of walking the list from the head.
+        List<Interval> busy = new ArrayList<Interval>();
 
         List<CalendarDataResult> calDataResultList;
         if (folder == FreeBusyQuery.CALENDAR_FOLDER_ALL) {
@@ -134,12 +145,16 @@ public class LocalFreeBusyProvider {
                         freeBusy = defaultFreeBusy;
                     if (!IcalXmlStrMap.FBTYPE_FREE.equals(freeBusy)) {
                         FBInstance fbInst = new FBInstance(freeBusy, instStart, instEnd, apptId, recurIdDt);
-                        Interval ival = new Interval(instStart, instEnd, freeBusy, fbInst);
-                        intervals.addInterval(ival);
+                        busy.add(new Interval(instStart, instEnd, freeBusy, fbInst));
                     }
                 }
             }
         }
+        Collections.sort(busy, START_ORDER);
+        IntervalList intervals = new IntervalList(start, end);
+        for (Interval ival : busy) {
+            intervals.addInterval(ival);
+        }
         if (!accountAceAllowed && numAllowedFolders == 0 && !LC.freebusy_disable_nodata_status.booleanValue()) {
             Interval nodata = new Interval(start, end, IcalXmlStrMap.FBTYPE_NODATA);
             intervals.addInterval(nodata);
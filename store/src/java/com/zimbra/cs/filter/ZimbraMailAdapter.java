@@ -18,6 +18,9 @@
 package com.zimbra.cs.filter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -34,6 +37,7 @@ import java.util.StringTokenizer;
 
 import javax.mail.Header;
 import javax.mail.MessagingException;
+import javax.mail.Part;
 import javax.mail.internet.AddressException;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimePart;
@@ -53,9 +57,11 @@ import com.google.common.base.CharMatcher;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.zimbra.common.mime.InternetAddress;
+import com.zimbra.common.mime.MimeConstants;
 import com.zimbra.common.mime.shim.JavaMailInternetAddress;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.ByteUtil;
+import com.zimbra.common.util.HtmlTextExtractor;
 import com.zimbra.common.util.Pair;
 import com.zimbra.common.util.StringUtil;
 import com.zimbra.common.util.ZimbraLog;
@@ -93,6 +99,10 @@ import com.zimbra.cs.store.StoreManager;
  * and invokes its {@link #executeActions()} method.
  */
 public class ZimbraMailAdapter implements MailAdapter, EnvelopeAccessors {
+    /** Characters of each body part kept in memory for body tests; the rest of a longer text/plain part is
+     *  scanned from the message by {@link #bodyContains(String, boolean)} when the kept text doesn't match. */
+    private static final int MAX_BODY_TEXT = 1024 * 1024;
+
     private Mailbox mailbox;
     private Account account;
     private FilterHandler handler;
@@ -151,6 +161,18 @@ public class ZimbraMailAdapter implements MailAdapter, EnvelopeAccessors {
     private boolean isReplaceHeaderPresent = false;
     private boolean isUserScriptExecuting = false;
 
+    /**
+     * Header lookups and body text, memoized for the message being filtered.  A rule set tests the same few headers
+     * over and over, so each is decoded once per delivery instead of once per test.  Header lookups are discarded
+     * when an editheader action changes the message.
+     */
+    private final Map<String, List<String>> headerCache = new HashMap<String, List<String>>();
+    private final Map<String, List<String>> matchingHeaderCache = new HashMap<String, List<String>>();
+    private List<String> headerNames;
+    private List<String> bodyText;
+    private List<String> bodyTextLowerCase;
+    private final List<MPartInfo> longBodyParts = new ArrayList<MPartInfo>();
+
     public ZimbraMailAdapter(Mailbox mailbox, FilterHandler handler) {
         this.mailbox = mailbox;
         this.handler = handler;
@@ -674,6 +696,16 @@ public class ZimbraMailAdapter implements MailAdapter, EnvelopeAccessors {
 
     @Override
     public List<String> getHeader(String name) {
+        String key = name.toLowerCase();
+        List<String> values = headerCache.get(key);
+        if (values == null) {
+            values = Collections.unmodifiableList(lookupHeader(name));
+            headerCache.put(key, values);
+        }
+        return values;
+    }
+
+    private List<String> lookupHeader(String name) {
         MimeMessage msg;
         try {
             msg = handler.getMimeMessage();
@@ -695,6 +727,13 @@ public class ZimbraMailAdapter implements MailAdapter, EnvelopeAccessors {
 
     @Override
     public List<String> getHeaderNames() throws SieveMailException {
+        if (headerNames == null) {
+            headerNames = Collections.unmodifiableList(lookupHeaderNames());
+        }
+        return headerNames;
+    }
+
+    private List<String> lookupHeaderNames() throws SieveMailException {
         Set<String> headerNames = new HashSet<String>();
         MimeMessage msg;
         try {
@@ -718,7 +757,228 @@ public class ZimbraMailAdapter implements MailAdapter, EnvelopeAccessors {
 
     @Override
     public List<String> getMatchingHeader(String name) throws SieveMailException {
-        return MailUtils.getMatchingHeader(this, name);
+        String key = name.toLowerCase();
+        List<String> values = matchingHeaderCache.get(key);
+        if (values == null) {
+            values = Collections.unmodifiableList(MailUtils.getMatchingHeader(this, name));
+            matchingHeaderCache.put(key, values);
+        }
+        return values;
+    }
+
+    /**
+     * Discards memoized header lookups after the message headers have been changed.
+     */
+    private void clearHeaderCache() {
+        headerCache.clear();
+        matchingHeaderCache.clear();
+        headerNames = null;
+    }
+
+    /**
+     * Returns the text of the inline <tt>text/plain</tt> and <tt>text/html</tt> parts, one entry per part, with
+     * line breaks collapsed into single spaces.  The text is extracted on first use and shared by all
+     * <tt>body</tt> tests of the message.
+     *
+     * @param lowerCase if true, the text is returned lower-cased char by char for case-insensitive matching
+     */
+    public List<String> getBodyText(boolean lowerCase) {
+        if (bodyText == null) {
+            bodyText = extractBodyText();
+        }
+        if (!lowerCase) {
+            return bodyText;
+        }
+        if (bodyTextLowerCase == null) {
+            List<String> lower = new ArrayList<String>(bodyText.size());
+            for (String text : bodyText) {
+                lower.add(toLowerCase(text));
+            }
+            bodyTextLowerCase = lower;
+        }
+        return bodyTextLowerCase;
+    }
+
+    /**
+     * Returns true if the text of an inline <tt>text/plain</tt> or <tt>text/html</tt> part, with line breaks
+     * collapsed as in {@link #getBodyText(boolean)}, contains the given string.  text/plain parts longer than
+     * the text kept in memory are searched in full by streaming them again.
+     */
+    public boolean bodyContains(String substring, boolean caseSensitive) {
+        if (!caseSensitive) {
+            substring = toLowerCase(substring);
+        }
+        for (String text : getBodyText(!caseSensitive)) {
+            if (text.contains(substring)) {
+                return true;
+            }
+        }
+        String defaultCharset = account == null ? null : account.getPrefMailDefaultCharset();
+        for (MPartInfo mpi : longBodyParts) {
+            InputStream in = null;
+            try {
+                in = mpi.getMimePart().getInputStream();
+                if (contains(getTextReader(mpi, in, defaultCharset), substring, !caseSensitive)) {
+                    return true;
+                }
+            } catch (Exception e) {
+                ZimbraLog.filter.warn("Unable to extract text body of part %s", mpi.getPartName(), e);
+            } finally {
+                ByteUtil.closeStream(in);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Streams the text, collapsing line breaks and optionally lower-casing it the way body text is prepared, and
+     * returns true if it contains the given string.
+     */
+    static boolean contains(Reader reader, String substring, boolean lowerCase) throws IOException {
+        if (substring.isEmpty()) {
+            return true;
+        }
+        int overlap = substring.length() - 1;
+        StringBuilder window = new StringBuilder();
+        char[] buf = new char[8192];
+        boolean lineBreak = false;
+        int read;
+        while ((read = reader.read(buf)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                char c = buf[i];
+                if (c == '\r' || c == '\n') {
+                    if (lineBreak) {
+                        continue;
+                    }
+                    lineBreak = true;
+                    c = ' ';
+                } else {
+                    lineBreak = false;
+                    if (lowerCase) {
+                        c = Character.toLowerCase(c);
+                    }
+                }
+                window.append(c);
+            }
+            if (window.indexOf(substring) >= 0) {
+                return true;
+            }
+            // keep just enough to match across the next read
+            if (window.length() > overlap) {
+                window.delete(0, window.length() - overlap);
+            }
+        }
+        return false;
+    }
+
+    private static Reader getTextReader(MPartInfo mpi, InputStream in, String defaultCharset)
+            throws MessagingException {
+        String cthdr = mpi.getMimePart().getHeader("Content-Type", null);
+        String charset = null;
+        if (cthdr != null) {
+            charset = Mime.getCharset(cthdr);
+        }
+        if (charset == null || !Charset.isSupported(charset)) {
+            charset = defaultCharset;
+        }
+        return charset == null ? new InputStreamReader(in) : new InputStreamReader(in, Charset.forName(charset));
+    }
+
+    private List<String> extractBodyText() {
+        ParsedMessage pm = getParsedMessage();
+        if (pm == null) {
+            return Collections.emptyList();
+        }
+        String defaultCharset = account == null ? null : account.getPrefMailDefaultCharset();
+        List<String> texts = new ArrayList<String>();
+        for (MPartInfo mpi : pm.getMessageParts()) {
+            // Check only parts that are text/plain or text/html and are not attachments.
+            if (Part.ATTACHMENT.equals(mpi.getDisposition())) {
+                continue;
+            }
+            String cType = mpi.getContentType();
+            if (cType.equals(MimeConstants.CT_TEXT_PLAIN)) {
+                InputStream in = null;
+                try {
+                    in = mpi.getMimePart().getInputStream();
+                    Reader reader = getTextReader(mpi, in, defaultCharset);
+                    String text = readText(reader, MAX_BODY_TEXT);
+                    if (text.length() >= MAX_BODY_TEXT && reader.read() >= 0) {
+                        ZimbraLog.filter.debug("text body of part %s is longer than %d characters; body tests " +
+                                "will stream the rest of it", mpi.getPartName(), MAX_BODY_TEXT);
+                        longBodyParts.add(mpi);
+                    }
+                    texts.add(collapseLineBreaks(text));
+                } catch (Exception e) {
+                    ZimbraLog.filter.warn("Unable to extract text body of part %s", mpi.getPartName(), e);
+                } finally {
+                    ByteUtil.closeStream(in);
+                }
+            } else if (cType.equals(MimeConstants.CT_TEXT_HTML)) {
+                InputStream in = null;
+                try {
+                    in = mpi.getMimePart().getInputStream();
+                    String cthdr = mpi.getMimePart().getHeader("Content-Type", null);
+                    Reader reader = Mime.getTextReader(in, cthdr, defaultCharset);
+                    texts.add(collapseLineBreaks(HtmlTextExtractor.extract(reader, MAX_BODY_TEXT)));
+                } catch (Exception e) {
+                    ZimbraLog.filter.warn("Unable to extract HTML body of part %s", mpi.getPartName(), e);
+                } finally {
+                    ByteUtil.closeStream(in);
+                }
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * Reads at most {@code max} characters.
+     */
+    private static String readText(Reader reader, int max) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[8192];
+        int read;
+        while (sb.length() < max && (read = reader.read(buf, 0, Math.min(buf.length, max - sb.length()))) >= 0) {
+            sb.append(buf, 0, read);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Replaces every run of CR and LF characters with a single space.
+     */
+    static String collapseLineBreaks(String text) {
+        StringBuilder sb = null;
+        int len = text.length();
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (c != '\r' && c != '\n') {
+                if (sb != null) {
+                    sb.append(c);
+                }
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(len);
+                sb.append(text, 0, i);
+            }
+            while (i + 1 < len && (text.charAt(i + 1) == '\r' || text.charAt(i + 1) == '\n')) {
+                i++;
+            }
+            sb.append(' ');
+        }
+        return sb == null ? text : sb.toString();
+    }
+
+    /**
+     * Lower-cases char by char, so that indexes and lengths stay those of the original text.
+     */
+    public static String toLowerCase(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
     }
 
     /**
@@ -919,6 +1179,8 @@ public class ZimbraMailAdapter implements MailAdapter, EnvelopeAccessors {
     }
 
     public void updateIncomingBlob() {
+        // only editheader actions update the incoming blob, after they have changed the headers
+        clearHeaderCache();
         DeliveryContext ctxt = handler.getDeliveryContext();
         if (ctxt != null) {
             StoreManager sm = StoreManager.getInstance();
@@ -1066,6 +1328,7 @@ public class ZimbraMailAdapter implements MailAdapter, EnvelopeAccessors {
                 ParsedMessage clonePM = new ParsedMessage(pm.getRawData(), pm.isAttachmentIndexingEnabled());
                 ((IncomingMessageHandler) handler).setParsedMessage(clonePM);
                 parsedMessageCloned = true;
+                clearHeaderCache();
                 ZimbraLog.filter.debug("cloned ParsedMessage");
             } catch (IOException | ServiceException e) {
                 cloneFailure = true;
@@ -57,7 +57,10 @@ final class DiskImapCache implements ImapSessionManager.Cache<String, ImapFolder
         for (File cached : allCached) {
             String split = ImapSessionManager.isActiveKey(cached.getName()) ? "_" : ":";
             String[] parts = cached.getName().split(split);
-            if (previous != null && parts.length >= 4) {
+            if (parts.length < 4) {
+                continue; // per-folder snapshots have no MODSEQ in their name and are kept as they are
+            }
+            if (previous != null) {
                 if (lastOwner.equals(parts[0]) && lastId.equals(parts[1])) {
                     previous.delete();
                 } else {
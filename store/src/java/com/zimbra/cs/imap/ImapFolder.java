@@ -16,6 +16,9 @@
  */
 package com.zimbra.cs.imap;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -59,7 +62,7 @@ import com.zimbra.cs.session.PendingModifications.Change;
  */
 public final class ImapFolder implements ImapListener.ImapFolderData, java.io.Serializable {
     // Update serialVersionUID when changing any instance members. Otherwise serialization won't work correctly.
-    private static final long serialVersionUID = 3845968507901145794L;
+    private static final long serialVersionUID = 5226040319744513762L;
     public static final byte SELECT_READONLY  = 0x01;
     public static final byte SELECT_CONDSTORE = 0x02;
 
@@ -69,13 +72,15 @@ public final class ImapFolder implements ImapListener.ImapFolderData, java.io.Se
     private transient ImapPath path;
     private transient SessionData sessionData;
     private transient Map<Integer, ImapMessage> messageIds;
+    private transient Map<List<String>, String[]> tagSets;
 
     private final ItemIdentifier folderIdentifier;
     private final int uidValidity;
     private String query;
     private Set<MailItem.Type> typeConstraint = ImapHandler.ITEM_TYPES;
-    private final List<ImapMessage> sequence = new ArrayList<ImapMessage>();
+    private transient List<ImapMessage> sequence = new ArrayList<ImapMessage>();  // see writeObject()
     private final ImapFlagCache tags;   // operationally could be "transient", but that makes deserialization replay depend on magic
+    private int snapshotModseq;         // folder MODSEQ the contents reflect, when saved as a reusable snapshot
 
     // below this point are session-specific attributes of the folder SELECT state
     protected static class SessionData {
@@ -123,6 +128,14 @@ public final class ImapFolder implements ImapListener.ImapFolderData, java.io.Se
         this.tags = new ImapFlagCache();
     }
 
+    int getSnapshotModseq() {
+        return snapshotModseq;
+    }
+
+    void setSnapshotModseq(int modseq) {
+        snapshotModseq = modseq;
+    }
+
     protected void setInitialSize() {
         SessionData sdata = sessionData;
         if (sdata != null) {
@@ -450,9 +463,92 @@ public final class ImapFolder implements ImapListener.ImapFolderData, java.io.Se
         }
         // update the tag cache to include only the tags in the folder
         updateTagCache(i4msg);
+        i4msg.tags = internTags(i4msg.tags);
         return true;
     }
 
+    /** Returns a canonical instance of the given tag list, so that the (usually
+     *  few) distinct tag combinations in a large folder are each stored once
+     *  rather than once per message.  Tag arrays are never modified in place,
+     *  only replaced, so sharing them between messages is safe. */
+    private String[] internTags(String[] msgTags) {
+        if (ArrayUtil.isEmpty(msgTags)) {
+            return null;
+        }
+        if (tagSets == null) {
+            tagSets = new HashMap<List<String>, String[]>();
+        }
+        List<String> key = Arrays.asList(msgTags);
+        String[] canonical = tagSets.get(key);
+        if (canonical == null) {
+            tagSets.put(key, msgTags);
+            canonical = msgTags;
+        }
+        return canonical;
+    }
+
+    /** Writes the message list as primitive fields per message rather than as
+     *  serialized {@link ImapMessage} objects, whose per-object overhead
+     *  dominates the size of large cached folders.  Each distinct tag list is
+     *  written once and referenced by index afterwards. */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        Map<List<String>, Integer> tagSetIndex = new HashMap<List<String>, Integer>();
+        out.writeInt(sequence.size());
+        for (ImapMessage i4msg : sequence) {
+            out.writeInt(i4msg.msgId);
+            out.writeInt(i4msg.imapUid);
+            out.writeShort(i4msg.sflags);
+            out.writeInt(i4msg.flags);
+            if (ArrayUtil.isEmpty(i4msg.tags)) {
+                out.writeInt(-1);
+                continue;
+            }
+            List<String> key = Arrays.asList(i4msg.tags);
+            Integer index = tagSetIndex.get(key);
+            if (index != null) {
+                out.writeInt(index);
+            } else {
+                // first occurrence: the next unused index, followed by the tag names
+                index = tagSetIndex.size();
+                tagSetIndex.put(key, index);
+                out.writeInt(index);
+                out.writeInt(i4msg.tags.length);
+                for (String tag : i4msg.tags) {
+                    out.writeUTF(tag);
+                }
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        List<String[]> tagList = new ArrayList<String[]>();
+        int size = in.readInt();
+        sequence = new ArrayList<ImapMessage>(size);
+        for (int i = 0; i < size; i++) {
+            int msgId = in.readInt();
+            int imapUid = in.readInt();
+            short sflags = in.readShort();
+            int flags = in.readInt();
+            int index = in.readInt();
+            String[] msgTags = null;
+            if (index == tagList.size()) {
+                msgTags = new String[in.readInt()];
+                for (int t = 0; t < msgTags.length; t++) {
+                    msgTags[t] = in.readUTF();
+                }
+                tagList.add(msgTags);
+            } else if (index >= 0) {
+                msgTags = tagList.get(index);
+            }
+            ImapMessage i4msg = new ImapMessage(msgId, MailItem.Type.MESSAGE, imapUid, flags, msgTags);
+            i4msg.sflags = sflags;
+            i4msg.sequence = i + 1;
+            sequence.add(i4msg);
+        }
+    }
+
     private boolean insertOutOfOrder(ImapMessage i4msg) {
         LinkedList<ImapMessage> shifted = new LinkedList<ImapMessage>();
         int idx  = sequence.size() - 1;
@@ -121,6 +121,7 @@ import com.zimbra.cs.service.admin.AdminAccessControl;
 import com.zimbra.cs.service.admin.FlushCache;
 import com.zimbra.cs.service.mail.FolderAction;
 import com.zimbra.cs.service.util.ItemId;
+import com.zimbra.cs.store.StoreManager;
 import com.zimbra.cs.util.AccountUtil;
 import com.zimbra.cs.util.BuildInfo;
 import com.zimbra.soap.admin.type.CacheEntrySelector;
@@ -1875,9 +1876,30 @@ public abstract class ImapHandler {
         }
 
         sendOK(tag, (writable ? "[READ-WRITE] " : "[READ-ONLY] ") + command + " completed");
+        prefetchNewestMessages(i4folder);
         return true;
     }
 
+    /**
+     * Clients typically fetch the newest messages right after a SELECT, so give a store with a remote tier a head
+     * start on their blobs.
+     */
+    private void prefetchNewestMessages(ImapFolder i4folder) {
+        int count = Math.min(LC.external_store_prefetch_imap_select.intValue(), i4folder.getSize());
+        if (count <= 0 || !(i4folder.getMailbox() instanceof Mailbox)) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<Integer>(count);
+        for (int seq = i4folder.getSize(); seq > 0 && ids.size() < count; seq--) {
+            ImapMessage i4msg = i4folder.getBySequence(seq);
+            // contacts are served from the database, not the blob store
+            if (i4msg != null && i4msg.getType() == MailItem.Type.MESSAGE) {
+                ids.add(i4msg.getMsgId());
+            }
+        }
+        StoreManager.getInstance().prefetch((Mailbox) i4folder.getMailbox(), ids);
+    }
+
     private boolean doCREATE(String tag, ImapPath path) throws IOException, ImapThrottledException {
         checkCommandThrottle(new CreateCommand(path));
         if (!checkState(tag, State.AUTHENTICATED)) {
@@ -807,6 +807,9 @@ public abstract class ImapListener extends Session {
 
         String cachekey = MANAGER.cacheKey(this, active);
         MANAGER.serialize(cachekey, i4folder);
+        if (!active) {
+            MANAGER.serializeSnapshot(this, i4folder);
+        }
         return cachekey;
     }
 
@@ -107,6 +107,20 @@ public abstract class ImapMailboxStore {
     public abstract int getImapRECENT(OperationContext ctxt, FolderStore folder) throws ServiceException;
     public abstract List<ImapMessage> openImapFolder(OperationContext octxt, ItemIdentifier folderId)
             throws ServiceException;
+
+    /**
+     * Brings a saved copy of a folder's contents up to date by applying the changes made since it was saved.
+     *
+     * @param snapshot    the folder's messages as of {@code sinceModseq}
+     * @param sinceModseq the folder MODSEQ at the time the snapshot was taken
+     * @param maxChanges  the number of changed items beyond which a full reload is cheaper
+     * @return the current contents of the folder (unsorted), or {@code null} if the snapshot can't be updated
+     *         and the folder has to be loaded with {@link #openImapFolder}
+     */
+    public List<ImapMessage> updateImapFolder(OperationContext octxt, ItemIdentifier folderId,
+            List<ImapMessage> snapshot, int sinceModseq, int maxChanges) throws ServiceException {
+        return null;
+    }
     public abstract void registerWithImapServerListener(ImapListener listener);
     public abstract void unregisterWithImapServerListener(ImapListener listener);
     public abstract List<ImapListener> getListeners(ItemIdentifier ident);
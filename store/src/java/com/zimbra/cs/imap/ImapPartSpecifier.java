@@ -18,10 +18,14 @@ package com.zimbra.cs.imap;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.Enumeration;
 import java.util.List;
 
@@ -37,7 +41,12 @@ import com.zimbra.common.util.InputStreamWithSize;
 import com.zimbra.common.util.StartOutOfBoundsException;
 import com.zimbra.common.util.StringUtil;
 import com.zimbra.common.util.ZimbraLog;
+import com.zimbra.cs.mailbox.Message;
 import com.zimbra.cs.mime.Mime;
+import com.zimbra.cs.server.NioOutputStream;
+import com.zimbra.cs.store.Blob;
+import com.zimbra.cs.store.MailboxBlob;
+import com.zimbra.cs.store.file.VolumeMailboxBlob;
 
 class ImapPartSpecifier {
     static class BinaryDecodingException extends Exception {
@@ -182,9 +191,50 @@ class ImapPartSpecifier {
 
     void write(PrintStream ps, OutputStream os, ZimbraMailItem zmi)
     throws IOException, BinaryDecodingException, ServiceException {
+        if (os instanceof NioOutputStream && writeBlobFile(ps, (NioOutputStream) os, zmi)) {
+            return;
+        }
         write(ps, os, new ZimbraMailItemGettableInputStreamWithSize(zmi));
     }
 
+    /**
+     * Sends a whole message straight from its uncompressed blob file, letting the NIO layer use
+     * {@link FileChannel#transferTo} rather than copying the content through an {@link InputStream}.
+     *
+     * @return false if the request or the blob isn't eligible, in which case nothing has been written
+     */
+    private boolean writeBlobFile(PrintStream ps, NioOutputStream os, ZimbraMailItem zmi)
+    throws IOException, ServiceException {
+        if (!(zmi instanceof Message) || !isEntireMessage() || octetStart >= 0 ||
+                !(command.equals("BODY") || command.equals("RFC822"))) {
+            return false;
+        }
+        MailboxBlob mblob = ((Message) zmi).getBlob();
+        if (!(mblob instanceof VolumeMailboxBlob)) {
+            return false;
+        }
+        Blob blob = mblob.getLocalBlob();
+        File file = blob.getFile();
+        long length = zmi.getSize();
+        if (blob.isCompressed() || file.length() != length) {
+            return false;
+        }
+        FileChannel channel;
+        try {
+            channel = new RandomAccessFile(file, "r").getChannel();
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        ps.print(this);
+        ps.print(" {");
+        ps.print(length);
+        ps.write('}');   /* } added to fix vim buggy brace matching code */
+        ps.write(ImapHandler.LINE_SEPARATOR_BYTES);
+        ps.flush();
+        os.write(channel, 0, length);  // closes the channel
+        return true;
+    }
+
     void write(PrintStream ps, OutputStream os, MimeMessage mimeMsg)
     throws IOException, BinaryDecodingException, ServiceException {
         write(ps, os, new MimeMessageGettableInputStreamWithSize(mimeMsg));
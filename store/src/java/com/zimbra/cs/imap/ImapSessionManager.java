@@ -61,6 +61,7 @@ import com.zimbra.cs.mailbox.MailboxManager;
 import com.zimbra.cs.mailbox.OperationContext;
 import com.zimbra.cs.mailbox.util.TagUtil;
 import com.zimbra.cs.memcached.MemcachedConnector;
+import com.zimbra.cs.stats.ZimbraPerf;
 import com.zimbra.cs.util.EhcacheManager;
 import com.zimbra.cs.util.Zimbra;
 
@@ -74,6 +75,8 @@ final class ImapSessionManager {
 
     private static final boolean TERMINATE_ON_CLOSE = DebugConfig.imapTerminateSessionOnClose;
     private static final boolean SERIALIZE_ON_CLOSE = DebugConfig.imapSerializeSessionOnClose;
+    /** Changes to a folder beyond which reloading it from the DB is cheaper than updating a saved snapshot. */
+    private static final int SNAPSHOT_MIN_CHANGES = 100;
 
     /**
      * ConcurrentLinkedHashMap is used because it has good concurrency attributes, offers fast access by key and
@@ -316,6 +319,10 @@ final class ImapSessionManager {
                 // no matching session means we next check for serialized folder data
                 if (i4list == null) {
                     i4list = duplicateSerializedFolder(folder);
+                    // no data for the folder's current MODSEQ means we try to bring an older snapshot up to date
+                    if (i4list == null) {
+                        i4list = updateSnapshotFolder(imapStore, octxt, folder);
+                    }
                 } else if (CONSISTENCY_CHECK) {
                     Collections.sort(i4list);
                     //sort only if using list from duplicated session which may be out of order
@@ -333,7 +340,9 @@ final class ImapSessionManager {
                     } else {
                         ident = folder.getFolderItemIdentifier();
                     }
+                    long start = ZimbraPerf.STOPWATCH_IMAP_LOAD_FULL.start();
                     i4list = imapStore.openImapFolder(octxt, ident);
+                    ZimbraPerf.STOPWATCH_IMAP_LOAD_FULL.stop(start);
                 }
             }
 
@@ -568,6 +577,45 @@ final class ImapSessionManager {
         return i4list;
     }
 
+    /**
+     * Loads the last snapshot saved for the folder via {@link #serializeSnapshot} and applies the changes made to
+     * the folder since then.  Returns {@code null} if there's no usable snapshot or too much has changed.
+     */
+    private List<ImapMessage> updateSnapshotFolder(ImapMailboxStore imapStore, OperationContext octxt,
+            FolderStore folder) throws ServiceException {
+        if (folder instanceof SearchFolderStore || folder instanceof MountpointStore) {
+            return null;
+        }
+        ImapFolder i4folder = inactiveSessionCache.get(snapshotKey(folder));
+        if (i4folder == null) {
+            return null;
+        }
+        int sinceModseq = i4folder.getSnapshotModseq();
+        if (sinceModseq <= 0 || sinceModseq > folder.getImapMODSEQ()) {
+            return null;
+        }
+        long start = ZimbraPerf.STOPWATCH_IMAP_LOAD_DELTA.start();
+        final List<ImapMessage> snapshot = new ArrayList<ImapMessage>(i4folder.getSize());
+        i4folder.traverse(new Function<ImapMessage, Void>() {
+            @Override
+            public Void apply(ImapMessage i4msg) {
+                if (!i4msg.isExpunged()) {
+                    snapshot.add(i4msg.reset());
+                }
+                return null;
+            }
+        });
+        int maxChanges = Math.max(SNAPSHOT_MIN_CHANGES, snapshot.size() / 10);
+        List<ImapMessage> i4list = imapStore.updateImapFolder(octxt, folder.getFolderItemIdentifier(), snapshot,
+                sinceModseq, maxChanges);
+        if (i4list != null) {
+            ZimbraPerf.STOPWATCH_IMAP_LOAD_DELTA.stop(start);
+            ZimbraLog.imap.debug("updated snapshot of %s from modseq %d to %d", folder.getPath(), sinceModseq,
+                    folder.getImapMODSEQ());
+        }
+        return i4list;
+    }
+
     private List<ImapMessage> consistencyCheck(
             List<ImapMessage> i4list, ImapMailboxStore imapStore, OperationContext octxt, FolderStore folder) {
         if (i4list == null) {
@@ -734,6 +782,7 @@ final class ImapSessionManager {
     private void clearCache(FolderStore folder) {
         activeSessionCache.remove(cacheKey(folder, true));
         inactiveSessionCache.remove(cacheKey(folder, false));
+        inactiveSessionCache.remove(snapshotKey(folder));
     }
 
     /**
@@ -744,6 +793,13 @@ final class ImapSessionManager {
      * @return cache key
      */
     protected String cacheKey(ImapListener session, boolean active) throws ServiceException {
+        String cachekey = cacheKey(getFolderStore(session), active);
+        // if there are unnotified expunges, *don't* use the default cache key
+        //   ('+' is a good separator because it alpha-sorts before the '.' of the filename extension)
+        return session.hasExpunges() ? cachekey + "+" + session.getQualifiedSessionId() : cachekey;
+    }
+
+    private FolderStore getFolderStore(ImapListener session) throws ServiceException {
         MailboxStore mbox = session.getMailbox();
         FolderStore fstore;
         if (mbox == null) {
@@ -763,10 +819,7 @@ final class ImapSessionManager {
                 fstore = ((ZMailbox)mbox).getSharedFolderById(session.getFolderItemIdentifier().toString());
             }
         }
-        String cachekey = cacheKey(fstore, active);
-        // if there are unnotified expunges, *don't* use the default cache key
-        //   ('+' is a good separator because it alpha-sorts before the '.' of the filename extension)
-        return session.hasExpunges() ? cachekey + "+" + session.getQualifiedSessionId() : cachekey;
+        return fstore;
     }
 
     private String cacheKey(FolderStore folder, boolean active) {
@@ -786,6 +839,39 @@ final class ImapSessionManager {
         }
     }
 
+    /**
+     * Key for the most recent snapshot of a folder, which unlike {@link #cacheKey} doesn't depend on the folder's
+     * MODSEQ.  The MODSEQ the snapshot reflects is recorded in the snapshot itself.
+     */
+    private String snapshotKey(FolderStore folder) {
+        String acctId = null;
+        try {
+            acctId = folder.getMailboxStore().getAccountId();
+        } catch (ServiceException e) {
+            acctId = "<unknown>";
+        }
+        return String.format("%s:%d:%d", acctId, folder.getFolderIdInOwnerMailbox(), ImapFolder.getUIDValidity(folder));
+    }
+
+    /**
+     * Saves the folder data of a session that's being closed as the folder's latest snapshot, so that a later
+     * SELECT only needs to apply the changes made since then rather than reload the whole folder.
+     */
+    protected void serializeSnapshot(ImapListener session, ImapFolder folder) throws ServiceException {
+        if (session.isVirtual() || session.hasExpunges() || !(session instanceof ImapSession)) {
+            return;
+        }
+        FolderStore fstore = getFolderStore(session);
+        if (fstore == null || fstore instanceof MountpointStore) {
+            return;
+        }
+        folder.setSnapshotModseq(fstore.getImapMODSEQ());
+        // the caches never overwrite an existing key, and the snapshot key stays the same as the folder changes
+        String key = snapshotKey(fstore);
+        inactiveSessionCache.remove(key);
+        inactiveSessionCache.put(key, folder);
+    }
+
     protected void serialize(String key, ImapFolder folder) {
         if (!isActiveKey(key)) {
             inactiveSessionCache.put(key, folder);
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -32,16 +33,20 @@ import com.zimbra.common.mailbox.MailItemType;
 import com.zimbra.common.mailbox.MailboxStore;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.InputStreamWithSize;
+import com.zimbra.common.util.Pair;
 import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.account.Account;
 import com.zimbra.cs.imap.ImapFlagCache.ImapFlag;
 import com.zimbra.cs.mailbox.Folder;
 import com.zimbra.cs.mailbox.MailItem;
+import com.zimbra.cs.mailbox.MailServiceException.NoSuchItemException;
 import com.zimbra.cs.mailbox.Mailbox;
 import com.zimbra.cs.mailbox.Metadata;
 import com.zimbra.cs.mailbox.MetadataList;
 import com.zimbra.cs.mailbox.OperationContext;
+import com.zimbra.cs.mailbox.util.TypedIdList;
 import com.zimbra.cs.session.Session;
+import com.zimbra.cs.stats.ZimbraPerf;
 import com.zimbra.cs.util.AccountUtil;
 
 public class LocalImapMailboxStore extends ImapMailboxStore {
@@ -244,6 +249,70 @@ public class LocalImapMailboxStore extends ImapMailboxStore {
         return mailbox.openImapFolder(octxt, folderId.id);
     }
 
+    @Override
+    public List<ImapMessage> updateImapFolder(OperationContext octxt, ItemIdentifier folderId,
+            List<ImapMessage> snapshot, int sinceModseq, int maxChanges) throws ServiceException {
+        // hard deletes are only visible through tombstones, which are only reliable from the sync cutoff onwards
+        int cutoff = mailbox.getSyncCutoff();
+        if (cutoff <= 0 || sinceModseq < cutoff) {
+            return null;
+        }
+        // items changed in the folder come back first; items deleted or moved elsewhere come back second
+        Pair<List<Integer>, TypedIdList> changes = mailbox.getModifiedItems(octxt, sinceModseq, 0,
+                MailItem.Type.UNKNOWN, Collections.singleton(folderId.id), -1, maxChanges + 1);
+        // the limit applies to the rows read for the whole mailbox, before they are split by folder, so hitting it
+        // means the delta may be incomplete
+        if (changes == null || changes.getFirst().size() + changes.getSecond().size() > maxChanges) {
+            return null;
+        }
+        TypedIdList tombstones = mailbox.getTombstones(sinceModseq);
+        // items moved elsewhere and tombstones cover the whole mailbox; only the ones in the snapshot are changes
+        Set<Integer> snapshotIds = new HashSet<Integer>(snapshot.size() * 2);
+        for (ImapMessage i4msg : snapshot) {
+            snapshotIds.add(i4msg.msgId);
+        }
+        Set<Integer> removed = new HashSet<Integer>();
+        for (Integer id : changes.getSecond().getAllIds()) {
+            if (snapshotIds.contains(id)) {
+                removed.add(id);
+            }
+        }
+        for (Integer id : tombstones.getAllIds()) {
+            if (snapshotIds.contains(id)) {
+                removed.add(id);
+            }
+        }
+        int count = changes.getFirst().size() + removed.size();
+        if (count > maxChanges) {
+            return null;
+        }
+        Set<Integer> stale = new HashSet<Integer>(changes.getFirst());
+        stale.addAll(removed);
+
+        List<ImapMessage> i4list = new ArrayList<ImapMessage>(snapshot.size() + changes.getFirst().size());
+        for (ImapMessage i4msg : snapshot) {
+            if (!stale.contains(i4msg.msgId)) {
+                i4list.add(i4msg);
+            }
+        }
+        if (!changes.getFirst().isEmpty()) {
+            MailItem[] items;
+            try {
+                items = mailbox.getItemById(octxt, changes.getFirst(), MailItem.Type.UNKNOWN);
+            } catch (NoSuchItemException e) {
+                // an item went away since getModifiedItems(); not worth chasing, just load the folder
+                return null;
+            }
+            for (MailItem item : items) {
+                if (item != null && ImapMessage.SUPPORTED_TYPES.contains(item.getType())) {
+                    i4list.add(new ImapMessage(item));
+                }
+            }
+        }
+        ZimbraPerf.COUNTER_IMAP_LOAD_DELTA_SIZE.increment(count);
+        return i4list;
+    }
+
     @Override
     public void registerWithImapServerListener(ImapListener listener) {
         // Do nothing - use mailbox NOT ImapServerListener to monitor changes
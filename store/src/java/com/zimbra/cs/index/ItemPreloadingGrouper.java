@@ -94,13 +94,31 @@ final class ItemPreloadingGrouper extends BufferingResultsGrouper {
             }
         }
 
-        if (numToLoad > 0) {
+        if (numToLoad > 0 && inDumpster) {
             MailItem[] items = mbox.getItemById(opContext, unloadedIds, MailItem.Type.UNKNOWN, inDumpster);
             for (int i = 0; i < hits.size(); ++i) {
                 if (items[i] != null) {
                     hits.get(i).setItem(items[i]);
                 }
             }
+        } else if (numToLoad > 0) {
+            // an item deleted since the search just isn't preloaded, instead of failing the whole chunk
+            List<Integer> ids = new ArrayList<Integer>(numToLoad);
+            for (int id : unloadedIds) {
+                if (id != Mailbox.ID_AUTO_INCREMENT) {
+                    ids.add(id);
+                }
+            }
+            Map<Integer, MailItem> items = new HashMap<Integer, MailItem>();
+            for (MailItem item : mbox.getItemsById(opContext, ids, MailItem.Type.UNKNOWN)) {
+                items.put(item.getId(), item);
+            }
+            for (int i = 0; i < hits.size(); ++i) {
+                MailItem item = items.get(unloadedIds[i]);
+                if (item != null) {
+                    hits.get(i).setItem(item);
+                }
+            }
         }
     }
 }
@@ -43,11 +43,13 @@ import org.apache.lucene.index.SerialMergeScheduler;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.NoSuchDirectoryException;
 import org.apache.lucene.util.Version;
 
@@ -89,6 +91,13 @@ public final class LuceneIndex extends IndexStore {
     private static final Semaphore READER_THROTTLE = new Semaphore(LC.zimbra_index_max_readers.intValue());
     private static final Semaphore WRITER_THROTTLE = new Semaphore(LC.zimbra_index_max_writers.intValue());
 
+    /**
+     * In near-real-time mode, cached searchers are refreshed from the live {@link IndexWriter} rather than by reopening
+     * the index directory, and new segments are warmed for the date sort before searches see them.
+     */
+    private static final boolean NRT = LC.zimbra_index_nrt_enabled.booleanValue();
+    private static final long REFRESH_INTERVAL = LC.zimbra_index_searcher_refresh_interval.longValue();
+
     private static final Cache<Integer, IndexSearcherImpl> SEARCHER_CACHE =
         CacheBuilder.newBuilder()
         .maximumSize(LC.zimbra_index_reader_cache_size.intValue())
@@ -373,16 +382,94 @@ public final class LuceneIndex extends IndexStore {
      * @throws IOException if opening an {@link IndexReader} failed
      */
     @Override
-    public synchronized ZimbraIndexSearcher openSearcher() throws IOException {
-        IndexSearcherImpl searcher = null;
+    public ZimbraIndexSearcher openSearcher() throws IOException {
+        // concurrent searches share the cached searcher without taking the index lock
+        IndexSearcherImpl searcher = getCachedSearcher();
+        if (searcher != null && !searcher.needsRefresh() && searcher.tryInc()) {
+            ZimbraLog.search.debug("CacheHitLuceneSearcher %s", searcher);
+            return searcher;
+        }
+        return openSearcherLocked();
+    }
+
+    private IndexSearcherImpl getCachedSearcher() {
         if (mailbox.isGalSyncMailbox()) {
-            searcher = GAL_SEARCHER_CACHE.get(mailbox.getId());
+            return GAL_SEARCHER_CACHE.get(mailbox.getId());
         } else {
-            searcher = SEARCHER_CACHE.getIfPresent(mailbox.getId());
+            return SEARCHER_CACHE.getIfPresent(mailbox.getId());
         }
-        if (searcher != null) {
+    }
+
+    private void cacheSearcher(IndexSearcherImpl searcher) {
+        if (mailbox.isGalSyncMailbox()) {
+            //make sure that we close the previous value associated with the key
+            IOUtil.closeQuietly(GAL_SEARCHER_CACHE.put(mailbox.getId(), searcher));
+        } else {
+            // Bug: 69870
+            // No need to close the previous value associated with the key here.
+            // CacheBuilder sends a callback using removalListener onRemoval(..)
+            // which eventually closes IndexSearcher
+            SEARCHER_CACHE.asMap().put(mailbox.getId(), searcher);
+        }
+    }
+
+    /**
+     * Reopens the reader if the index has changed since it was opened.
+     *
+     * @return new reader, or null if the reader is current
+     */
+    private IndexReader reopen(IndexReader reader) throws IOException {
+        assert(Thread.holdsLock(this));
+
+        IndexWriterRef ref = NRT ? writerInfo.getWriterRef() : null;
+        if (ref != null) {
+            ref.inc();
+            try {
+                return IndexReader.openIfChanged(reader, ref.get(), true);
+            } finally {
+                ref.dec();
+            }
+        }
+        try {
+            return IndexReader.openIfChanged(reader, true);
+        } catch (AlreadyClosedException e) { // a near-real-time reader whose writer has been closed since
+            return openIndexReader(true);
+        }
+    }
+
+    /**
+     * Loads the date sort of segments the reader hasn't seen before. Segments already warmed are cached by
+     * {@link FieldCache}, so this only costs a lookup for them.
+     */
+    private static void warm(IndexReader reader) throws IOException {
+        IndexReader[] segments = reader.getSequentialSubReaders();
+        if (segments == null) {
+            segments = new IndexReader[] { reader };
+        }
+        for (IndexReader segment : segments) {
+            FieldCache.DEFAULT.getStringIndex(segment, LuceneFields.L_SORT_DATE);
+        }
+    }
+
+    private synchronized ZimbraIndexSearcher openSearcherLocked() throws IOException {
+        IndexSearcherImpl searcher = getCachedSearcher();
+        if (searcher != null && searcher.needsRefresh()) {
+            long start = System.currentTimeMillis();
+            IndexReader newReader = reopen(((ZimbraLuceneIndexReader) searcher.getIndexReader()).getLuceneReader());
+            if (newReader != null) {
+                if (NRT) {
+                    warm(newReader);
+                }
+                searcher = new IndexSearcherImpl(newReader);
+                cacheSearcher(searcher);
+                ZimbraLog.search.debug("RefreshLuceneSearcher %s,elapsed=%d", searcher,
+                        System.currentTimeMillis() - start);
+            } else {
+                searcher.refreshed();
+            }
+        }
+        if (searcher != null && searcher.tryInc()) {
             ZimbraLog.search.debug("CacheHitLuceneSearcher %s", searcher);
-            searcher.inc();
             return searcher;
         }
 
@@ -410,11 +497,7 @@ public final class LuceneIndex extends IndexStore {
 
         ZimbraLog.search.debug("OpenLuceneSearcher %s,elapsed=%d", searcher, System.currentTimeMillis() - start);
         searcher.inc();
-        if (mailbox.isGalSyncMailbox()) {
-            IOUtil.closeQuietly(GAL_SEARCHER_CACHE.put(mailbox.getId(), searcher));
-        } else {
-            SEARCHER_CACHE.asMap().put(mailbox.getId(), searcher);
-        }
+        cacheSearcher(searcher);
         return searcher;
     }
 
@@ -516,7 +599,7 @@ public final class LuceneIndex extends IndexStore {
                 repair(e);
                 throw e; // fail to commit regardless of the repair
             }
-            mailbox.index.submit(task); // merge must run in background
+            mailbox.index.submitIfIdle(task); // merge must run in background, and must not wait in the queue
             success = true;
         } catch (RejectedExecutionException e) {
             ZimbraLog.index.warn("Skipping merge because all index threads are busy");
@@ -677,6 +760,16 @@ public final class LuceneIndex extends IndexStore {
     private IndexWriterConfig getWriterConfig() {
         IndexWriterConfig config = new IndexWriterConfig(VERSION, mailbox.index.getAnalyzer());
         config.setMergeScheduler(new MergeScheduler());
+        if (NRT) {
+            config.setReaderTermsIndexDivisor(LC.zimbra_index_lucene_term_index_divisor.intValue());
+            // merges run on index threads, so big merged segments are warmed there rather than by the next search
+            config.setMergedSegmentWarmer(new IndexWriter.IndexReaderWarmer() {
+                @Override
+                public void warm(IndexReader reader) throws IOException {
+                    LuceneIndex.warm(reader);
+                }
+            });
+        }
         config.setMaxBufferedDocs(LC.zimbra_index_lucene_max_buffered_docs.intValue());
         config.setRAMBufferSizeMB(LC.zimbra_index_lucene_ram_buffer_size_kb.intValue() / 1024.0);
         if (LC.zimbra_index_lucene_merge_policy.booleanValue()) {
@@ -794,31 +887,17 @@ public final class LuceneIndex extends IndexStore {
             this.writer = writer;
         }
 
+        /**
+         * Commits the changes. The cached searcher is only marked stale, and is refreshed by the next search, so that a
+         * run of index batches with no search in between doesn't reopen the reader after every batch.
+         */
         @Override
         public void close() throws IOException {
             writer.index.commitWriter();
-            ZimbraIndexSearcher searcher = null;
-            if (writer.getIndex().mailbox.isGalSyncMailbox()) {
-                searcher = GAL_SEARCHER_CACHE.get(writer.getIndex().mailbox.getId());
-            } else {
-                searcher = SEARCHER_CACHE.getIfPresent(writer.getIndex().mailbox.getId());
-            }
-            if (searcher != null) {
-                ZimbraLuceneIndexReader ndxReader = (ZimbraLuceneIndexReader)searcher.getIndexReader();
-                IndexReader newReader = IndexReader.openIfChanged(ndxReader.getLuceneReader(), true);
-                if (newReader != null) {
-                    if (writer.getIndex().mailbox.isGalSyncMailbox()) {
-                        //make sure that we close the previous value associated with the key
-                        IOUtil.closeQuietly(GAL_SEARCHER_CACHE.put(writer.getIndex().mailbox.getId(),
-                                new IndexSearcherImpl(newReader)));
-                    } else {
-                        // Bug: 69870
-                        // No need to close the previous value associated with the key here.
-                        // CacheBuilder sends a callback using removalListener onRemoval(..)
-                        // which eventually closes IndexSearcher
-                        SEARCHER_CACHE.asMap().put(writer.getIndex().mailbox.getId(),
-                            new IndexSearcherImpl(newReader));
-                    }
+            synchronized (writer.index) { // so that a refresh in progress can't miss it
+                IndexSearcherImpl searcher = writer.index.getCachedSearcher();
+                if (searcher != null) {
+                    searcher.markStale();
                 }
             }
         }
@@ -943,6 +1022,8 @@ public final class LuceneIndex extends IndexStore {
         private final AtomicInteger count = new AtomicInteger(1);
         private final IndexSearcher luceneSearcher;
         private final ZimbraIndexReader luceneReader;
+        private volatile boolean stale = false;
+        private volatile long refreshTime = System.currentTimeMillis();
 
         IndexSearcherImpl(IndexReader reader) {
             luceneSearcher = new IndexSearcher(reader);
@@ -953,6 +1034,43 @@ public final class LuceneIndex extends IndexStore {
             count.incrementAndGet();
         }
 
+        /**
+         * Increments the reference counter unless the searcher has already been closed, e.g. evicted from the cache by
+         * another thread.
+         *
+         * @return false if the searcher is closed
+         */
+        boolean tryInc() {
+            while (true) {
+                int current = count.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (count.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Called when the index has been written to since this searcher was opened.
+         */
+        void markStale() {
+            stale = true;
+        }
+
+        void refreshed() {
+            stale = false;
+            refreshTime = System.currentTimeMillis();
+        }
+
+        /**
+         * A stale searcher is reused until it is {@code zimbra_index_searcher_refresh_interval} ms old.
+         */
+        boolean needsRefresh() {
+            return stale && System.currentTimeMillis() - refreshTime >= REFRESH_INTERVAL;
+        }
+
         @Override
         public void close() throws IOException {
             if (count.decrementAndGet() == 0) {
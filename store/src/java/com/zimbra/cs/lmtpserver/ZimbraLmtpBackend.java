@@ -24,10 +24,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -41,6 +47,8 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.zimbra.common.account.Key.AccountBy;
 import com.zimbra.common.lmtp.LmtpClient;
 import com.zimbra.common.lmtp.LmtpProtocolException;
@@ -68,6 +76,7 @@ import com.zimbra.cs.mailbox.Folder;
 import com.zimbra.cs.mailbox.MailItem;
 import com.zimbra.cs.mailbox.MailServiceException;
 import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.MailboxIndex;
 import com.zimbra.cs.mailbox.MailboxManager;
 import com.zimbra.cs.mailbox.Message;
 import com.zimbra.cs.mailbox.MessageCache;
@@ -76,6 +85,7 @@ import com.zimbra.cs.mailbox.QuotaWarning;
 import com.zimbra.cs.mime.ParsedMessage;
 import com.zimbra.cs.mime.ParsedMessageOptions;
 import com.zimbra.cs.service.util.ItemId;
+import com.zimbra.cs.stats.ZimbraPerf;
 import com.zimbra.cs.store.Blob;
 import com.zimbra.cs.store.BlobInputStream;
 import com.zimbra.cs.store.MailboxBlob;
@@ -87,6 +97,8 @@ public class ZimbraLmtpBackend implements LmtpBackend {
     private static List<LmtpCallback> callbacks = new CopyOnWriteArrayList<LmtpCallback>();
     private static Map<String, Set<Integer>> receivedMessageIDs;
     private static final LoadingCache<Integer, ReentrantLock> mailboxDeliveryLocks = createMailboxDeliveryLocks();
+    private static final int DELIVERY_THREADS = LC.zimbra_lmtp_delivery_threads.intValue();
+    private static ThreadPoolExecutor deliveryExecutor;
 
     private final LmtpConfig config;
 
@@ -95,6 +107,25 @@ public class ZimbraLmtpBackend implements LmtpBackend {
         checkDedupeCacheSize(); // This initializes receivedMessageIDs
     }
 
+    /**
+     * Returns the pool that delivers to the remaining mailboxes of multi-recipient messages.  Every LMTP thread
+     * gets up to {@code zimbra_lmtp_delivery_threads - 1} helpers besides itself.  When the pool and its queue are
+     * full, the LMTP thread delivers the group itself instead of waiting for a helper.
+     */
+    private ExecutorService getDeliveryExecutor() {
+        synchronized (ZimbraLmtpBackend.class) {
+            if (deliveryExecutor == null) {
+                int threads = Math.max(config.getMaxThreads(), 1) * (DELIVERY_THREADS - 1);
+                deliveryExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<Runnable>(threads),
+                        new ThreadFactoryBuilder().setNameFormat("LmtpDelivery-%d").setDaemon(true).build(),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+                deliveryExecutor.allowCoreThreadTimeOut(true);
+            }
+            return deliveryExecutor;
+        }
+    }
+
     /**
      * Adds an instance of an LMTP callback class that will be triggered
      * before and after a message is added to a user mailbox.
@@ -349,11 +380,13 @@ public class ZimbraLmtpBackend implements LmtpBackend {
                 in = validator;
             }
 
+            long start = ZimbraPerf.STOPWATCH_LMTP_STORE.start();
             try {
                 blob = StoreManager.getInstance().storeIncoming(in);
             } catch (IOException ioe) {
                 throw new UnrecoverableLmtpException("Error in storing incoming message", ioe);
             }
+            ZimbraPerf.STOPWATCH_LMTP_STORE.stop(start);
 
             if (validator != null && !validator.isValid()) {
                 try {
@@ -421,7 +454,6 @@ public class ZimbraLmtpBackend implements LmtpBackend {
         throws ServiceException, IOException {
 
         List<LmtpAddress> recipients = env.getLocalRecipients();
-        String envSender = env.getSender().getEmailAddress();
 
         boolean shared = recipients.size() > 1;
         List<Integer> targetMailboxIds = new ArrayList<Integer>(recipients.size());
@@ -441,6 +473,7 @@ public class ZimbraLmtpBackend implements LmtpBackend {
             // message id for logging
             String msgId = null;
 
+            long start = ZimbraPerf.STOPWATCH_LMTP_PREPARE.start();
             for (LmtpAddress recipient : recipients) {
                 String rcptEmail = recipient.getEmailAddress();
 
@@ -470,6 +503,12 @@ public class ZimbraLmtpBackend implements LmtpBackend {
                 }
 
                 if (account != null && mbox != null) {
+                    if (MailboxIndex.isBacklogged(mbox.getId())) {
+                        ZimbraLog.lmtp.info("Deferring delivery to %s because its index backlog is too large", rcptEmail);
+                        rcptMap.put(recipient, new RecipientDetail(account, mbox, null, false, DeliveryAction.defer));
+                        continue;
+                    }
+
                     ParsedMessageOptions pmo;
                     if (mm != null) {
                         pmo = new ParsedMessageOptions().setContent(mm).setDigest(blob.getDigest()).setSize(blob.getRawSize());
@@ -521,6 +560,8 @@ public class ZimbraLmtpBackend implements LmtpBackend {
                 }
             }
 
+            ZimbraPerf.STOPWATCH_LMTP_PREPARE.stop(start);
+
             ZimbraLog.removeAccountFromContext();
             if (ZimbraLog.lmtp.isInfoEnabled()) {
                 ZimbraLog.lmtp.info("Delivering message: size=%s, nrcpts=%d, sender=%s, msgid=%s",
@@ -534,178 +575,27 @@ public class ZimbraLmtpBackend implements LmtpBackend {
             sharedDeliveryCtxt.setIncomingBlob(blob);
 
             // We now know which addresses are valid and which ParsedMessage
-            // version each recipient needs.  Deliver!
+            // version each recipient needs.  Deliver!  Recipients are
+            // delivered to in order until one of them has stored (and redo
+            // logged) the blob; the remaining mailboxes only link to it, so
+            // they are handed to the delivery pool, one task per mailbox to
+            // keep the per-mailbox delivery order.
+            Map<Integer, List<LmtpAddress>> pending = new LinkedHashMap<Integer, List<LmtpAddress>>();
             for (LmtpAddress recipient : recipients) {
-                String rcptEmail = recipient.getEmailAddress();
-                LmtpReply reply = LmtpReply.TEMPORARY_FAILURE;
                 RecipientDetail rd = rcptMap.get(recipient);
-                if (rd == null) {
-                    // Account or mailbox not found.
-                    ZimbraLog.lmtp.info("rejecting message from=%s,to=%s: account or mailbox not found",
-                            envSender, rcptEmail);
-                    recipient.setDeliveryStatus(LmtpReply.PERMANENT_FAILURE);
-                    continue;
-                }
-                if (rd.account != null) {
-                    ZimbraLog.addAccountNameToContext(rd.account.getName());
-                }
-                if (rd.mbox != null) {
-                    ZimbraLog.addMboxToContext(rd.mbox.getId());
-                }
-
-                boolean success = false;
-                try {
-                    switch (rd.action) {
-                    case discard:
-                        ZimbraLog.lmtp.info("accepted and discarded message from=%s,to=%s: local delivery is disabled",
-                                envSender, rcptEmail);
-                        if (rd.account.getPrefMailForwardingAddress() != null) {
-                            // mail forwarding is set up
-                            for (LmtpCallback callback : callbacks) {
-                                ZimbraLog.lmtp.debug("Executing callback %s", callback.getClass().getName());
-                                callback.forwardWithoutDelivery(rd.account, rd.mbox, envSender, rcptEmail, rd.pm);
-                            }
-                        }
-                        reply = LmtpReply.DELIVERY_OK;
-                        break;
-                    case deliver:
-                        Account account = rd.account;
-                        Mailbox mbox = rd.mbox;
-                        ParsedMessage pm = rd.pm;
-                        List<ItemId> addedMessageIds = null;
-                        ReentrantLock lock = mailboxDeliveryLocks.get(mbox.getId());
-                        boolean acquiredLock;
-                        try {
-                            // Wait for the lock, up to the timeout
-                            acquiredLock = lock.tryLock(LC.zimbra_mailbox_lock_timeout.intValue(), TimeUnit.SECONDS);
-                        } catch (InterruptedException e) {
-                            acquiredLock = false;
-                        }
-                        if (!acquiredLock) {
-                            ZimbraLog.lmtp.info("try again for message from=%s,to=%s: another mail delivery in progress.",
-                                    envSender, rcptEmail);
-                            reply = LmtpReply.TEMPORARY_FAILURE;
-                            break;
-                        }
-                        try {
-                            if (dedupe(pm, mbox)) {
-                                // message was already delivered to this mailbox
-                                ZimbraLog.lmtp.info("Not delivering message with duplicate Message-ID %s", pm.getMessageID());
-                            } else if (mbox.dedupeForSelfMsg(pm)) {
-                                ZimbraLog.mailbox.info("not delivering message, because it is a duplicate of sent message %s",
-                                        pm.getMessageID());
-
-                            } else if (recipient.getSkipFilters()) {
-                                msgId = pm.getMessageID();
-                                int folderId = Mailbox.ID_FOLDER_INBOX;
-                                if (recipient.getFolder() != null) {
-                                    try {
-                                        Folder folder = mbox.getFolderByPath(null, recipient.getFolder());
-                                        folderId = folder.getId();
-                                    } catch (ServiceException se) {
-                                        if (se.getCode().equals(MailServiceException.NO_SUCH_FOLDER)) {
-                                            Folder folder = mbox.createFolder(null, recipient.getFolder(),
-                                                    new Folder.FolderOptions().setDefaultView(MailItem.Type.MESSAGE));
-                                            folderId = folder.getId();
-                                        } else {
-                                            throw se;
-                                        }
-                                    }
-                                }
-                                int flags = Flag.BITMASK_UNREAD;
-                                if (recipient.getFlags() != null) {
-                                    flags = Flag.toBitmask(recipient.getFlags());
-                                }
-                                DeliveryOptions dopt = new DeliveryOptions().setFolderId(folderId);
-                                dopt.setFlags(flags).setTags(recipient.getTags()).setRecipientEmail(rcptEmail);
-                                Message msg = mbox.addMessage(null, pm, dopt, sharedDeliveryCtxt);
-                                addedMessageIds = Lists.newArrayList(new ItemId(msg));
-                            } else if (!DebugConfig.disableIncomingFilter) {
-                                // Get msgid first, to avoid having to reopen and reparse the blob
-                                // file if Mailbox.addMessageInternal() closes it.
-                                pm.getMessageID();
-                                addedMessageIds = RuleManager.applyRulesToIncomingMessage(
-                                        null, mbox, pm, (int) blob.getRawSize(), rcptEmail, env, sharedDeliveryCtxt,
-                                        Mailbox.ID_FOLDER_INBOX, false, true);
-                            } else {
-                                pm.getMessageID();
-                                DeliveryOptions dopt = new DeliveryOptions().setFolderId(Mailbox.ID_FOLDER_INBOX);
-                                dopt.setFlags(Flag.BITMASK_UNREAD).setRecipientEmail(rcptEmail);
-                                Message msg = mbox.addMessage(null, pm, dopt, sharedDeliveryCtxt);
-                                addedMessageIds = Lists.newArrayList(new ItemId(msg));
-                            }
-                            success = true;
-                            if (addedMessageIds != null && addedMessageIds.size() > 0) {
-                                addToDedupeCache(pm, mbox);
-                            }
-                        } finally {
-                            lock.unlock();
-                        }
-
-                        if (addedMessageIds != null && addedMessageIds.size() > 0) {
-                            // Execute callbacks
-                            for (LmtpCallback callback : callbacks) {
-                                for (ItemId id : addedMessageIds) {
-                                    if (id.belongsTo(mbox)) {
-                                        // Message was added to the local mailbox, as opposed to a mountpoint.
-                                        ZimbraLog.lmtp.debug("Executing callback %s", callback.getClass().getName());
-                                        try {
-                                            Message msg = mbox.getMessageById(null, id.getId());
-                                            callback.afterDelivery(account, mbox, envSender, rcptEmail, msg);
-                                        } catch (OutOfMemoryError oome) {
-                                            Zimbra.halt("LMTP callback failed", oome);
-                                        } catch (Throwable t) {
-                                            ZimbraLog.lmtp.warn("LMTP callback threw an exception", t);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                        reply = LmtpReply.DELIVERY_OK;
-                        break;
-                    case defer:
-                        // Delivery to mailbox skipped.  Let MTA retry again later.
-                        // This case happens for shared delivery to a mailbox in
-                        // backup mode.
-                        ZimbraLog.lmtp.info("try again for message from=%s,to=%s: mailbox skipped",
-                                envSender, rcptEmail);
-                        reply = LmtpReply.TEMPORARY_FAILURE;
-                        break;
-                    }
-                } catch (DeliveryServiceException e) {
-                    ZimbraLog.lmtp.info("rejecting message from=%s,to=%s: sieve filter rule", envSender, rcptEmail);
-                    reply = LmtpReply.PERMANENT_MESSAGE_REFUSED;
-                } catch (ServiceException e) {
-                    if (e.getCode().equals(MailServiceException.QUOTA_EXCEEDED)) {
-                        ZimbraLog.lmtp.info("rejecting message from=%s,to=%s: overquota", envSender, rcptEmail);
-                        if (config.isPermanentFailureWhenOverQuota()) {
-                            reply = LmtpReply.PERMANENT_FAILURE_OVER_QUOTA;
-                        } else {
-                            reply = LmtpReply.TEMPORARY_FAILURE_OVER_QUOTA;
-                        }
-                    } else if (e.isReceiversFault()) {
-                        ZimbraLog.lmtp.info("try again for message from=%s,to=%s", envSender, rcptEmail, e);
-                        reply = LmtpReply.TEMPORARY_FAILURE;
-                    } else {
-                        ZimbraLog.lmtp.info("rejecting message from=%s,to=%s", envSender, rcptEmail, e);
-                        reply = LmtpReply.PERMANENT_FAILURE;
-                    }
-                } catch (Exception e) {
-                    reply = LmtpReply.TEMPORARY_FAILURE;
-                    ZimbraLog.lmtp.warn("try again for message from=%s,to=%s", envSender, rcptEmail, e);
-                } finally {
-                    if (rd.action == DeliveryAction.deliver && !success) {
-                        // Message was not delivered.  Remove it from the dedupe
-                        // cache so we don't dedupe it on LMTP retry.
-                        removeFromDedupeCache(msgId, rd.mbox);
-                    }
-                    recipient.setDeliveryStatus(reply);
-                    if (shared && rd != null && rd.esd) {
-                        rd.mbox.endSharedDelivery();
-                        rd.esd = false;
+                if (rd != null && rd.action == DeliveryAction.deliver && shared && DELIVERY_THREADS > 1 &&
+                        !sharedDeliveryCtxt.isFirst()) {
+                    List<LmtpAddress> group = pending.get(rd.mbox.getId());
+                    if (group == null) {
+                        group = new ArrayList<LmtpAddress>();
+                        pending.put(rd.mbox.getId(), group);
                     }
+                    group.add(recipient);
+                } else {
+                    deliverToRecipient(recipient, rd, env, blob, sharedDeliveryCtxt, shared, msgId);
                 }
             }
+            deliverToMailboxes(pending, rcptMap, env, blob, sharedDeliveryCtxt, msgId);
 
             // If this message is being streamed from disk, cache it
             ParsedMessage mimeSource = pmAttachIndex != null ? pmAttachIndex : pmNoAttachIndex;
@@ -739,6 +629,234 @@ public class ZimbraLmtpBackend implements LmtpBackend {
         }
     }
 
+    /**
+     * Delivers the message to a single local recipient and sets the recipient's delivery status.
+     */
+    private void deliverToRecipient(LmtpAddress recipient, RecipientDetail rd, LmtpEnvelope env, Blob blob,
+            DeliveryContext sharedDeliveryCtxt, boolean shared, String msgId) {
+        String envSender = env.getSender().getEmailAddress();
+        String rcptEmail = recipient.getEmailAddress();
+        LmtpReply reply = LmtpReply.TEMPORARY_FAILURE;
+        if (rd == null) {
+            // Account or mailbox not found.
+            ZimbraLog.lmtp.info("rejecting message from=%s,to=%s: account or mailbox not found",
+                    envSender, rcptEmail);
+            recipient.setDeliveryStatus(LmtpReply.PERMANENT_FAILURE);
+            return;
+        }
+        if (rd.account != null) {
+            ZimbraLog.addAccountNameToContext(rd.account.getName());
+        }
+        if (rd.mbox != null) {
+            ZimbraLog.addMboxToContext(rd.mbox.getId());
+        }
+
+        boolean success = false;
+        long start = ZimbraPerf.STOPWATCH_LMTP_DELIVER.start();
+        try {
+            switch (rd.action) {
+            case discard:
+                ZimbraLog.lmtp.info("accepted and discarded message from=%s,to=%s: local delivery is disabled",
+                        envSender, rcptEmail);
+                if (rd.account.getPrefMailForwardingAddress() != null) {
+                    // mail forwarding is set up
+                    for (LmtpCallback callback : callbacks) {
+                        ZimbraLog.lmtp.debug("Executing callback %s", callback.getClass().getName());
+                        callback.forwardWithoutDelivery(rd.account, rd.mbox, envSender, rcptEmail, rd.pm);
+                    }
+                }
+                reply = LmtpReply.DELIVERY_OK;
+                break;
+            case deliver:
+                Account account = rd.account;
+                Mailbox mbox = rd.mbox;
+                ParsedMessage pm = rd.pm;
+                List<ItemId> addedMessageIds = null;
+                ReentrantLock lock = mailboxDeliveryLocks.get(mbox.getId());
+                boolean acquiredLock;
+                try {
+                    // Wait for the lock, up to the timeout
+                    acquiredLock = lock.tryLock(LC.zimbra_mailbox_lock_timeout.intValue(), TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    acquiredLock = false;
+                }
+                if (!acquiredLock) {
+                    ZimbraLog.lmtp.info("try again for message from=%s,to=%s: another mail delivery in progress.",
+                            envSender, rcptEmail);
+                    reply = LmtpReply.TEMPORARY_FAILURE;
+                    break;
+                }
+                try {
+                    if (dedupe(pm, mbox)) {
+                        // message was already delivered to this mailbox
+                        ZimbraLog.lmtp.info("Not delivering message with duplicate Message-ID %s", pm.getMessageID());
+                    } else if (mbox.dedupeForSelfMsg(pm)) {
+                        ZimbraLog.mailbox.info("not delivering message, because it is a duplicate of sent message %s",
+                                pm.getMessageID());
+
+                    } else if (recipient.getSkipFilters()) {
+                        msgId = pm.getMessageID();
+                        int folderId = Mailbox.ID_FOLDER_INBOX;
+                        if (recipient.getFolder() != null) {
+                            try {
+                                Folder folder = mbox.getFolderByPath(null, recipient.getFolder());
+                                folderId = folder.getId();
+                            } catch (ServiceException se) {
+                                if (se.getCode().equals(MailServiceException.NO_SUCH_FOLDER)) {
+                                    Folder folder = mbox.createFolder(null, recipient.getFolder(),
+                                            new Folder.FolderOptions().setDefaultView(MailItem.Type.MESSAGE));
+                                    folderId = folder.getId();
+                                } else {
+                                    throw se;
+                                }
+                            }
+                        }
+                        int flags = Flag.BITMASK_UNREAD;
+                        if (recipient.getFlags() != null) {
+                            flags = Flag.toBitmask(recipient.getFlags());
+                        }
+                        DeliveryOptions dopt = new DeliveryOptions().setFolderId(folderId);
+                        dopt.setFlags(flags).setTags(recipient.getTags()).setRecipientEmail(rcptEmail);
+                        Message msg = mbox.addMessage(null, pm, dopt, sharedDeliveryCtxt);
+                        addedMessageIds = Lists.newArrayList(new ItemId(msg));
+                    } else if (!DebugConfig.disableIncomingFilter) {
+                        // Get msgid first, to avoid having to reopen and reparse the blob
+                        // file if Mailbox.addMessageInternal() closes it.
+                        pm.getMessageID();
+                        addedMessageIds = RuleManager.applyRulesToIncomingMessage(
+                                null, mbox, pm, (int) blob.getRawSize(), rcptEmail, env, sharedDeliveryCtxt,
+                                Mailbox.ID_FOLDER_INBOX, false, true);
+                    } else {
+                        pm.getMessageID();
+                        DeliveryOptions dopt = new DeliveryOptions().setFolderId(Mailbox.ID_FOLDER_INBOX);
+                        dopt.setFlags(Flag.BITMASK_UNREAD).setRecipientEmail(rcptEmail);
+                        Message msg = mbox.addMessage(null, pm, dopt, sharedDeliveryCtxt);
+                        addedMessageIds = Lists.newArrayList(new ItemId(msg));
+                    }
+                    success = true;
+                    if (addedMessageIds != null && addedMessageIds.size() > 0) {
+                        addToDedupeCache(pm, mbox);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                if (addedMessageIds != null && addedMessageIds.size() > 0) {
+                    // Execute callbacks
+                    for (LmtpCallback callback : callbacks) {
+                        for (ItemId id : addedMessageIds) {
+                            if (id.belongsTo(mbox)) {
+                                // Message was added to the local mailbox, as opposed to a mountpoint.
+                                ZimbraLog.lmtp.debug("Executing callback %s", callback.getClass().getName());
+                                try {
+                                    Message msg = mbox.getMessageById(null, id.getId());
+                                    callback.afterDelivery(account, mbox, envSender, rcptEmail, msg);
+                                } catch (OutOfMemoryError oome) {
+                                    Zimbra.halt("LMTP callback failed", oome);
+                                } catch (Throwable t) {
+                                    ZimbraLog.lmtp.warn("LMTP callback threw an exception", t);
+                                }
+                            }
+                        }
+                    }
+                }
+                reply = LmtpReply.DELIVERY_OK;
+                break;
+            case defer:
+                // Delivery to mailbox skipped.  Let MTA retry again later.
+                // This case happens for shared delivery to a mailbox in
+                // backup mode, or to a mailbox with a large index backlog.
+                ZimbraLog.lmtp.info("try again for message from=%s,to=%s: mailbox skipped",
+                        envSender, rcptEmail);
+                reply = LmtpReply.TEMPORARY_FAILURE;
+                break;
+            }
+        } catch (DeliveryServiceException e) {
+            ZimbraLog.lmtp.info("rejecting message from=%s,to=%s: sieve filter rule", envSender, rcptEmail);
+            reply = LmtpReply.PERMANENT_MESSAGE_REFUSED;
+        } catch (ServiceException e) {
+            if (e.getCode().equals(MailServiceException.QUOTA_EXCEEDED)) {
+                ZimbraLog.lmtp.info("rejecting message from=%s,to=%s: overquota", envSender, rcptEmail);
+                if (config.isPermanentFailureWhenOverQuota()) {
+                    reply = LmtpReply.PERMANENT_FAILURE_OVER_QUOTA;
+                } else {
+                    reply = LmtpReply.TEMPORARY_FAILURE_OVER_QUOTA;
+                }
+            } else if (e.isReceiversFault()) {
+                ZimbraLog.lmtp.info("try again for message from=%s,to=%s", envSender, rcptEmail, e);
+                reply = LmtpReply.TEMPORARY_FAILURE;
+            } else {
+                ZimbraLog.lmtp.info("rejecting message from=%s,to=%s", envSender, rcptEmail, e);
+                reply = LmtpReply.PERMANENT_FAILURE;
+            }
+        } catch (Exception e) {
+            reply = LmtpReply.TEMPORARY_FAILURE;
+            ZimbraLog.lmtp.warn("try again for message from=%s,to=%s", envSender, rcptEmail, e);
+        } finally {
+            if (rd.action == DeliveryAction.deliver && !success) {
+                // Message was not delivered.  Remove it from the dedupe
+                // cache so we don't dedupe it on LMTP retry.
+                removeFromDedupeCache(msgId, rd.mbox);
+            }
+            recipient.setDeliveryStatus(reply);
+            if (shared && rd != null && rd.esd) {
+                rd.mbox.endSharedDelivery();
+                rd.esd = false;
+            }
+            ZimbraPerf.STOPWATCH_LMTP_DELIVER.stop(start);
+        }
+    }
+
+    /**
+     * Delivers to groups of recipients on the delivery pool, one task per mailbox, and waits for all of them.
+     * The calling thread delivers the first group itself rather than sit idle.
+     */
+    private void deliverToMailboxes(Map<Integer, List<LmtpAddress>> groups,
+            final Map<LmtpAddress, RecipientDetail> rcptMap, final LmtpEnvelope env, final Blob blob,
+            final DeliveryContext sharedDeliveryCtxt, final String msgId) {
+        if (groups.isEmpty()) {
+            return;
+        }
+        ZimbraLog.lmtp.debug("delivering to %d remaining mailboxes in parallel", groups.size());
+        ExecutorService executor = getDeliveryExecutor();
+        final Thread caller = Thread.currentThread();
+        List<Future<?>> futures = new ArrayList<Future<?>>(groups.size() - 1);
+        List<LmtpAddress> ownGroup = null;
+        for (final List<LmtpAddress> group : groups.values()) {
+            if (ownGroup == null) {
+                ownGroup = group;
+                continue;
+            }
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (LmtpAddress recipient : group) {
+                            deliverToRecipient(recipient, rcptMap.get(recipient), env, blob, sharedDeliveryCtxt,
+                                    true, msgId);
+                        }
+                    } finally {
+                        // a task the pool had no room for runs on the caller, whose context must survive
+                        if (Thread.currentThread() != caller) {
+                            ZimbraLog.clearContext();
+                        }
+                    }
+                }
+            }));
+        }
+        for (LmtpAddress recipient : ownGroup) {
+            deliverToRecipient(recipient, rcptMap.get(recipient), env, blob, sharedDeliveryCtxt, true, msgId);
+        }
+        for (Future<?> future : futures) {
+            try {
+                Uninterruptibles.getUninterruptibly(future);
+            } catch (ExecutionException e) {
+                // deliverToRecipient() handles its own failures; recipients without a status are retried by the MTA
+                ZimbraLog.lmtp.warn("unexpected error during parallel delivery", e.getCause());
+            }
+        }
+    }
+
     private void deliverMessageToRemoteMailboxes(Blob blob, byte[] data, LmtpEnvelope env) {
         Multimap<String, LmtpAddress> serverToRecipientsMap = env.getRemoteServerToRecipientsMap();
         for (String server : serverToRecipientsMap.keySet()) {
@@ -1795,7 +1795,7 @@ public class Mailbox implements MailboxStore {
         write = write || requiresWriteLock();
         assert recorder == null || write;
         assert !Thread.holdsLock(this) : "use MailboxLock";
-        lock.lock(write);
+        lock.lock(write, caller);
         if (!write && requiresWriteLock()) {
             //another call must have purged the cache.
             //the lock.lock() call should have resulted in write lock already
@@ -2498,6 +2498,7 @@ public class Mailbox implements MailboxStore {
                     // remove all traces of the mailbox from the Mailbox cache
                     //   (so anyone asking for the Mailbox gets NO_SUCH_MBOX or creates a fresh new empty one with a different id)
                     MailboxManager.getInstance().markMailboxDeleted(this);
+                    index.clearBacklog();
 
                     // attempt to nuke the store and index
                     try {
@@ -3111,6 +3112,66 @@ public class Mailbox implements MailboxStore {
         }
     }
 
+    /**
+     * Returns the items with the given ids, in the order of <tt>ids</tt>.
+     * <p>
+     * Unlike {@link #getItemById(OperationContext, Collection, MailItem.Type)}, items that don't exist, are of another
+     * type or aren't visible to the caller are left out instead of failing the whole call, so this can replace a loop
+     * of single-item lookups.  Cached items are used as is and all the cache misses are loaded together in batched
+     * <tt>IN (...)</tt> queries.
+     */
+    public List<MailItem> getItemsById(OperationContext octxt, Collection<Integer> ids, MailItem.Type type)
+            throws ServiceException {
+        List<MailItem> result = new ArrayList<MailItem>(ids.size());
+        if (ids.isEmpty()) {
+            return result;
+        }
+        boolean success = false;
+        try {
+            // tag/folder caches are populated in beginTransaction...
+            beginReadTransaction("getItemsById", octxt);
+            Map<Integer, MailItem> found = new HashMap<Integer, MailItem>(ids.size() * 2);
+            Set<Integer> uncached = new HashSet<Integer>();
+            for (Integer id : ids) {
+                if (id <= -FIRST_USER_ID) {
+                    // virtual conversations need their message first, so leave them to the single-item lookup
+                    try {
+                        found.put(id, getItemById(id, type));
+                    } catch (NoSuchItemException e) {
+                    }
+                    continue;
+                }
+                MailItem item = getCachedItem(id);
+                if (item != null) {
+                    found.put(id, item);
+                } else if (id > 0) {
+                    uncached.add(id); // the folder and tag caches are complete, so this isn't one of those
+                }
+            }
+            for (MailItem item : MailItem.getById(this, uncached, MailItem.Type.UNKNOWN)) {
+                found.put(item.getId(), item);
+            }
+
+            for (Integer id : ids) {
+                MailItem item = found.get(id);
+                if (item == null || !MailItem.isAcceptableType(type, item.getType())) {
+                    continue;
+                }
+                try {
+                    result.add(checkAccess(item));
+                } catch (ServiceException e) {
+                    if (!ServiceException.PERM_DENIED.equals(e.getCode())) {
+                        throw e;
+                    }
+                }
+            }
+            success = true;
+            return result;
+        } finally {
+            endTransaction(success);
+        }
+    }
+
     MailItem[] getItemById(Collection<Integer> ids, MailItem.Type type) throws ServiceException {
         return getItemById(ArrayUtil.toIntArray(ids), type);
     }
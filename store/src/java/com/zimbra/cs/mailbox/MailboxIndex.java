@@ -18,28 +18,40 @@ package com.zimbra.cs.mailbox;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
+import javax.management.ObjectName;
+
 import org.apache.lucene.analysis.Analyzer;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -87,16 +99,28 @@ public final class MailboxIndex {
     private static final int MAX_TX_ITEMS = LC.zimbra_index_max_transaction_items.intValue();
     private static final long FAILURE_DELAY = LC.zimbra_index_deferred_items_failure_delay.intValue() * 1000;
 
+    private static final int QUEUE_SIZE = LC.zimbra_index_queue_size.intValue();
+    private static final int BATCH_SLICE = LC.zimbra_index_batch_slice_items.intValue();
+    private static final int LMTP_DEFER_THRESHOLD = LC.zimbra_index_lmtp_defer_threshold.intValue();
+
+    // Index tasks wait in a priority queue (see IndexTask.Priority); tasks must be execute()d, not submit()ted,
+    // since the queue compares the IndexTasks themselves.
     private static final ThreadPoolExecutor INDEX_EXECUTOR = new ThreadPoolExecutor(
             LC.zimbra_index_threads.intValue(), LC.zimbra_index_threads.intValue(),
-            Long.MAX_VALUE, TimeUnit.NANOSECONDS, new SynchronousQueue<Runnable>(),
+            Long.MAX_VALUE, TimeUnit.NANOSECONDS, new PriorityBlockingQueue<Runnable>(),
             new ThreadFactoryBuilder().setNameFormat("Index-%d").setDaemon(true).build());
     // Re-index threads are created on demand basis. The number of threads are capped.
     private static final ExecutorService REINDEX_EXECUTOR = new ThreadPoolExecutor(
             0, LC.zimbra_reindex_threads.intValue(), 0L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
             new ThreadFactoryBuilder().setNameFormat("ReIndex-%d").setDaemon(true).build());
 
+    // deferred item count and the time the backlog started, by mailbox ID; only mailboxes with a backlog are listed
+    private static final ConcurrentMap<Integer, Integer> BACKLOG = new ConcurrentHashMap<Integer, Integer>();
+    private static final ConcurrentMap<Integer, Long> BACKLOG_SINCE = new ConcurrentHashMap<Integer, Long>();
+
     private volatile long lastFailedTime = -1;
+    // at most one batch task per mailbox waits in the queue, so that busy mailboxes can't starve the others
+    private final AtomicBoolean batchQueued = new AtomicBoolean();
     // Only one thread may run index at a time.
     private final Semaphore indexLock = new Semaphore(1);
     private final Mailbox mailbox;
@@ -126,6 +150,12 @@ public final class MailboxIndex {
      */
     public static void startup() {
         INDEX_EXECUTOR.prestartAllCoreThreads();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new IndexSchedulerStats(),
+                    new ObjectName("ZimbraCollaborationSuite:type=IndexScheduler"));
+        } catch (Exception e) {
+            ZimbraLog.index.warn("Unable to register IndexScheduler mbean", e);
+        }
     }
 
     public static void shutdown() {
@@ -325,13 +355,83 @@ public final class MailboxIndex {
     }
 
     /**
-     * Submits a task to {@link #INDEX_EXECUTOR}.
+     * Queues a task on {@link #INDEX_EXECUTOR}.
      *
      * @param task index task
-     * @throws RejectedExecutionException if all index threads are busy
+     * @throws RejectedExecutionException if the index queue is full
      */
     public void submit(IndexTask task) {
-        INDEX_EXECUTOR.submit(task);
+        if (INDEX_EXECUTOR.getQueue().size() >= QUEUE_SIZE) {
+            throw new RejectedExecutionException("index queue is full");
+        }
+        task.queuedAt = System.currentTimeMillis();
+        INDEX_EXECUTOR.execute(task);
+    }
+
+    /**
+     * Queues a task on {@link #INDEX_EXECUTOR} only if an index thread is free to run it right away. Merges hold an
+     * index writer, and with it one of the {@code zimbra_index_max_writers} permits, until they run; if they waited
+     * in the queue, the index threads could all block waiting for a permit that only a queued merge would release.
+     *
+     * @param task index task
+     * @throws RejectedExecutionException if all index threads are busy
+     */
+    public void submitIfIdle(IndexTask task) {
+        if (!INDEX_EXECUTOR.getQueue().isEmpty() ||
+                INDEX_EXECUTOR.getActiveCount() >= INDEX_EXECUTOR.getMaximumPoolSize()) {
+            throw new RejectedExecutionException("all index threads are busy");
+        }
+        submit(task);
+    }
+
+    /**
+     * Returns true if the mailbox has more unindexed items than {@code zimbra_index_lmtp_defer_threshold}, in which
+     * case LMTP asks the MTA to retry later rather than make the backlog worse.
+     */
+    public static boolean isBacklogged(int mailboxId) {
+        if (LMTP_DEFER_THRESHOLD <= 0) {
+            return false;
+        }
+        Integer count = BACKLOG.get(mailboxId);
+        return count != null && count >= LMTP_DEFER_THRESHOLD;
+    }
+
+    /**
+     * Drops the backlog of a mailbox that is being deleted.
+     */
+    void clearBacklog() {
+        updateBacklog(0);
+    }
+
+    private void updateBacklog(int count) {
+        int id = mailbox.getId();
+        if (count > 0) {
+            BACKLOG.put(id, count);
+            if (!BACKLOG_SINCE.containsKey(id)) {
+                BACKLOG_SINCE.putIfAbsent(id, System.currentTimeMillis());
+            }
+        } else {
+            BACKLOG.remove(id);
+            BACKLOG_SINCE.remove(id);
+        }
+    }
+
+    /**
+     * Queues a batch index task for this mailbox unless one is already waiting.  A backlog small enough to be
+     * indexed in one pass (typically mail that was just delivered) goes in the interactive lane; a larger one is
+     * indexed {@code zimbra_index_batch_slice_items} at a time in the backlog lane, requeueing after each pass.
+     */
+    private void queueBatch(int count) {
+        if (!batchQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            submit(new BatchIndexTask(count <= BATCH_SLICE ? IndexTask.Priority.INTERACTIVE :
+                IndexTask.Priority.BACKLOG));
+        } catch (RejectedExecutionException e) {
+            batchQueued.set(false);
+            ZimbraLog.index.warn("Skipping batch index because the index queue is full");
+        }
     }
 
     void setIndexingSuspended( boolean suspended) {
@@ -362,13 +462,11 @@ public final class MailboxIndex {
         }
 
         // If there was a failure, we trigger indexing even if the deferred count is still low.
+        int count = getDeferredCount(EnumSet.noneOf(MailItem.Type.class));
+        updateBacklog(count);
         if ((lastFailedTime >= 0 && System.currentTimeMillis() - lastFailedTime > FAILURE_DELAY) ||
-                getDeferredCount(EnumSet.noneOf(MailItem.Type.class)) >= getBatchThreshold()) {
-            try {
-                INDEX_EXECUTOR.submit(new BatchIndexTask());
-            } catch (RejectedExecutionException e) {
-                ZimbraLog.index.warn("Skipping batch index because all index threads are busy");
-            }
+                count >= getBatchThreshold()) {
+            queueBatch(count);
         }
     }
 
@@ -392,22 +490,33 @@ public final class MailboxIndex {
      */
     private void indexDeferredItems(Set<MailItem.Type> types, BatchStatus status, boolean wait)
             throws ServiceException {
+        indexDeferredItems(types, status, wait, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Index deferred items, at most {@code limit} of them.
+     *
+     * @return false if indexing was skipped, because the index is being deleted or, unless {@code wait}, another
+     * thread is indexing
+     */
+    private boolean indexDeferredItems(Set<MailItem.Type> types, BatchStatus status, boolean wait, int limit)
+            throws ServiceException {
         assert(mailbox.lock.isUnlocked());
         if ((indexStore != null) && indexStore.isPendingDelete()) {
             ZimbraLog.index.debug("index delete is in progress by other thread, skipping");
-            return;  // No point in indexing if we are going to delete the index
+            return false;  // No point in indexing if we are going to delete the index
         }
 
         if (wait) {
             indexLock.acquireUninterruptibly();
         } else if (!indexLock.tryAcquire()) {
             ZimbraLog.index.debug("index is in progress by other thread, skipping");
-            return;
+            return false;
         }
         lastFailedTime = -1; // reset
         try {
             long start = System.currentTimeMillis();
-            Collection<Integer> ids = getDeferredIds(types);
+            Collection<Integer> ids = getDeferredIds(types, limit);
             indexItemList(ids, status);
 
             long elapsed = System.currentTimeMillis() - start;
@@ -417,6 +526,7 @@ public final class MailboxIndex {
         } finally {
             indexLock.release();
         }
+        return true;
     }
 
     @VisibleForTesting
@@ -1228,21 +1338,30 @@ public final class MailboxIndex {
         return deferredIds;
     }
 
-    private synchronized Collection<Integer> getDeferredIds(Set<MailItem.Type> types) throws ServiceException {
+    /**
+     * Copies at most {@code limit} deferred IDs, so that a slice of a large backlog costs no more than the slice.
+     */
+    private synchronized Collection<Integer> getDeferredIds(Set<MailItem.Type> types, int limit)
+            throws ServiceException {
         SetMultimap<MailItem.Type, Integer> ids = getDeferredIds();
         if (ids == null || ids.isEmpty()) {
             return Collections.emptyList();
         } else if (types.isEmpty()) {
-            return ImmutableSet.copyOf(ids.values());
+            return ImmutableSet.copyOf(Iterables.limit(ids.values(), limit));
         } else {
-            ImmutableSet.Builder<Integer> builder = ImmutableSet.builder();
+            Set<Integer> result = new LinkedHashSet<Integer>();
             for (MailItem.Type type : types) {
                 Set<Integer> set = ids.get(type);
                 if (set != null) {
-                    builder.addAll(set);
+                    for (Integer id : set) {
+                        if (result.size() >= limit) {
+                            return result;
+                        }
+                        result.add(id);
+                    }
                 }
             }
-            return builder.build();
+            return result;
         }
     }
 
@@ -1403,11 +1522,33 @@ public final class MailboxIndex {
         }
     }
 
-    public static abstract class IndexTask implements Runnable {
+    public static abstract class IndexTask implements Runnable, Comparable<IndexTask> {
+        /** Scheduling lanes, in order of precedence. */
+        public enum Priority {
+            INTERACTIVE, // recently delivered or changed items
+            BACKLOG      // bulk imports and other large backlogs, and index maintenance
+        }
+
+        private static final AtomicLong SEQUENCE = new AtomicLong();
+
         private final Mailbox mailbox;
+        private final Priority priority;
+        private final long sequence = SEQUENCE.incrementAndGet(); // FIFO within a lane
+        volatile long queuedAt;
 
         public IndexTask(Mailbox mbox) {
+            this(mbox, Priority.BACKLOG);
+        }
+
+        public IndexTask(Mailbox mbox, Priority priority) {
             mailbox = mbox;
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(IndexTask other) {
+            int diff = priority.compareTo(other.priority);
+            return diff != 0 ? diff : Long.compare(sequence, other.sequence);
         }
 
         @Override
@@ -1430,15 +1571,87 @@ public final class MailboxIndex {
 
     private final class BatchIndexTask extends IndexTask {
 
-        BatchIndexTask() {
-            super(mailbox);
+        BatchIndexTask(Priority priority) {
+            super(mailbox, priority);
         }
 
         @Override
         protected void exec() throws Exception {
-            indexDeferredItems(EnumSet.noneOf(MailItem.Type.class), new BatchStatus(), false);
+            // from here on, new changes may queue another batch
+            batchQueued.set(false);
+            boolean indexed =
+                indexDeferredItems(EnumSet.noneOf(MailItem.Type.class), new BatchStatus(), false, BATCH_SLICE);
+
+            int remaining = getDeferredCount(EnumSet.noneOf(MailItem.Type.class));
+            updateBacklog(remaining);
+            // go to the back of the queue for the rest, unless that is only items that just failed.  If another
+            // thread holds the index, requeueing would only spin; that thread indexes the backlog, and new changes
+            // queue another batch anyway.
+            if (indexed && remaining > 0 && lastFailedTime < 0 && !indexingSuspended) {
+                queueBatch(remaining);
+            }
+        }
+
+    }
+
+    /**
+     * JMX view of the index queue and of the per-mailbox indexing backlog.
+     */
+    public interface IndexSchedulerStatsMBean {
+        int getQueueDepth();
+        int getActiveThreads();
+        long getCompletedTasks();
+        int getBackloggedMailboxes();
+        long getOldestQueuedTaskAgeMillis();
+        Map<Integer, Integer> getMailboxBacklog();
+        Map<Integer, Long> getMailboxIndexLagMillis();
+    }
+
+    public static final class IndexSchedulerStats implements IndexSchedulerStatsMBean {
+        @Override
+        public int getQueueDepth() {
+            return INDEX_EXECUTOR.getQueue().size();
+        }
+
+        @Override
+        public int getActiveThreads() {
+            return INDEX_EXECUTOR.getActiveCount();
+        }
+
+        @Override
+        public long getCompletedTasks() {
+            return INDEX_EXECUTOR.getCompletedTaskCount();
         }
 
+        @Override
+        public int getBackloggedMailboxes() {
+            return BACKLOG.size();
+        }
+
+        @Override
+        public long getOldestQueuedTaskAgeMillis() {
+            long now = System.currentTimeMillis();
+            long oldest = now;
+            for (Runnable r : INDEX_EXECUTOR.getQueue()) {
+                oldest = Math.min(oldest, ((IndexTask) r).queuedAt);
+            }
+            return now - oldest;
+        }
+
+        @Override
+        public Map<Integer, Integer> getMailboxBacklog() {
+            return new HashMap<Integer, Integer>(BACKLOG);
+        }
+
+        @Override
+        public Map<Integer, Long> getMailboxIndexLagMillis() {
+            long now = System.currentTimeMillis();
+            Map<Integer, Long> lag = new HashMap<Integer, Long>();
+            for (Map.Entry<Integer, Long> entry : BACKLOG_SINCE.entrySet()) {
+                lag.put(entry.getKey(), now - entry.getValue());
+            }
+            return lag;
+        }
     }
 
     private static final class ItemSearchResult extends DbSearch.Result {
@@ -29,6 +29,7 @@ import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.mailbox.lock.DebugZLock;
 import com.zimbra.cs.mailbox.lock.ZLock;
+import com.zimbra.cs.stats.ZimbraPerf;
 import com.zimbra.cs.util.Zimbra;
 import com.zimbra.cs.zookeeper.CuratorManager;
 
@@ -158,6 +159,18 @@ public final class MailboxLock {
     }
 
     public void lock(boolean write) {
+        lock(write, null);
+    }
+
+    /**
+     * Acquires the lock on behalf of the named operation. If the lock is contended, the time spent waiting is recorded
+     * in {@link ZimbraPerf#STOPWATCH_MBOX_LOCK_WAIT} and, per operation, in {@link ZimbraPerf#MBOX_LOCK_TRACKER}.
+     *
+     * @param write true to acquire the write lock, false for the read lock
+     * @param caller name of the operation acquiring the lock, or null if unknown
+     * @throws LockFailedException failed to lock
+     */
+    public void lock(boolean write, String caller) {
         write = write || mbox.requiresWriteLock();
         ZimbraLog.mailbox.trace("LOCK %s", (write ? "WRITE" : "READ"));
         assert(neverReadBeforeWrite(write));
@@ -191,7 +204,10 @@ public final class MailboxLock {
                 throw e;
             }
             // Wait for the lock up to the timeout.
-            if (tryLockWithTimeout(write)) {
+            long start = ZimbraPerf.STOPWATCH_MBOX_LOCK_WAIT.start();
+            boolean locked = tryLockWithTimeout(write);
+            recordWait(caller, write, start);
+            if (locked) {
                 if (mbox.requiresWriteLock() && !isWriteLockedByCurrentThread()) {
                     //writer finished a purge while we waited
                     promote();
@@ -218,6 +234,11 @@ public final class MailboxLock {
         }
     }
 
+    private void recordWait(String caller, boolean write, long start) {
+        ZimbraPerf.STOPWATCH_MBOX_LOCK_WAIT.stop(start);
+        ZimbraPerf.MBOX_LOCK_TRACKER.addStat((caller == null ? "unknown" : caller) + (write ? ":write" : ":read"), start);
+    }
+
     public void release() {
         Boolean write = false;
         try {
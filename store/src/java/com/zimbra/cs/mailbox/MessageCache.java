@@ -18,14 +18,16 @@ package com.zimbra.cs.mailbox;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
 import com.zimbra.common.mime.MimeConstants;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.ByteUtil;
@@ -46,21 +48,62 @@ public class MessageCache {
 
     private static final Log sLog = LogFactory.getLog(MessageCache.class);
 
+    /** A cache entry.  Loading and expanding the message is done while holding the node's
+     *  monitor, so that concurrent readers of the same message wait for one parse instead
+     *  of each parsing it. */
     private static final class CacheNode {
         CacheNode()  { }
         MimeMessage message;
         MimeMessage expanded;
-        Map<Integer, String> smimeAccessInfo = new HashMap<Integer, String>();
-        long size = 0;
+        Map<Integer, String> smimeAccessInfo = Collections.synchronizedMap(new HashMap<Integer, String>());
+        /** Bytes this node adds to {@link #sDataSize}, or -1 once it has been uncached. */
+        private final AtomicLong size = new AtomicLong();
+
+        /** Adds to the node's size and to the cache's data size, unless the node has been uncached
+         *  in the meantime, e.g. purged or evicted while the message was loading. */
+        void grow(long delta) {
+            long cur;
+            do {
+                cur = size.get();
+                if (cur < 0) {
+                    return;
+                }
+            } while (!size.compareAndSet(cur, cur + delta));
+            sDataSize.addAndGet(delta);
+        }
+
+        /** Called when the node is uncached: takes its size out of the cache's data size. */
+        void release() {
+            long cur = size.getAndSet(-1);
+            if (cur > 0) {
+                sDataSize.addAndGet(-cur);
+            }
+        }
+
+        long getSize() {
+            return Math.max(size.get(), 0);
+        }
     }
 
-    /** Cache mapping message digest to the corresponding message structure. */
-    private static Map<String, CacheNode> sCache = new LinkedHashMap<String, CacheNode>(150, (float) 0.75, true);
-    /** Maximum number of items in {@link #sCache}. */
-    private static int sMaxCacheSize;
     /** Number of bytes of message data stored in the cache.  This value includes only
      * messages that are read into memory, not streamed from disk. */
-    private volatile static long sDataSize = 0;
+    private static final AtomicLong sDataSize = new AtomicLong();
+
+    /** Cache mapping message digest to the corresponding message structure.  Lookups
+     *  don't lock the whole cache; the least recently used entries are evicted once the
+     *  cache holds more than <tt>zimbraMessageCacheSize</tt> messages. */
+    private static final ConcurrentLinkedHashMap<String, CacheNode> sCache =
+        new ConcurrentLinkedHashMap.Builder<String, CacheNode>()
+        .maximumWeightedCapacity(Integer.MAX_VALUE) // set by loadSettings()
+        .listener(new EvictionListener<String, CacheNode>() {
+            @Override
+            public void onEviction(String digest, CacheNode node) {
+                sLog.debug("Pruning digest %s from the cache.", digest);
+                node.release();
+                ZimbraPerf.COUNTER_MBOX_MSG_CACHE_EVICT.increment();
+            }
+        })
+        .build();
 
     static {
         try {
@@ -71,25 +114,22 @@ public class MessageCache {
     }
 
     public static void loadSettings() throws ServiceException {
-        sMaxCacheSize = Provisioning.getInstance().getLocalServer().getMessageCacheSize();
-        ZimbraLog.cache.info("setting message cache size to " + sMaxCacheSize);
+        int maxCacheSize = Provisioning.getInstance().getLocalServer().getMessageCacheSize();
+        ZimbraLog.cache.info("setting message cache size to " + maxCacheSize);
+        sCache.setCapacity(maxCacheSize);
     }
 
     /** Returns the number of messages in the cache. */
     public static int getSize() {
-        synchronized (sCache) {
-            return sCache.size();
-        }
+        return sCache.size();
     }
 
     public static boolean contains(String digest) {
-        synchronized (sCache) {
-            return sCache.containsKey(digest);
-        }
+        return sCache.containsKey(digest);
     }
 
     public static long getDataSize() {
-        return sDataSize;
+        return sDataSize.get();
     }
 
     /** Uncaches any data associated with the given item.  This must be done
@@ -124,12 +164,10 @@ public class MessageCache {
      *  stale data. */
     public static void purge(String digest) {
         if (digest != null) {
-            synchronized (sCache) {
-                CacheNode node = sCache.remove(digest);
-                if (node != null) {
-                    sLog.debug("Purged digest %s from the message cache.", digest);
-                    sDataSize -= node.size;
-                }
+            CacheNode node = sCache.remove(digest);
+            if (node != null) {
+                sLog.debug("Purged digest %s from the message cache.", digest);
+                node.release();
             }
         }
     }
@@ -157,76 +195,83 @@ public class MessageCache {
         int mboxId = item.getMailboxId();
         boolean isEncrypted = false;
 
-        synchronized (sCache) {
-            cnode = sCache.get(digest);
+        cnode = sCache.get(digest);
+        if (cnode == null) {
+            // publish the empty node right away so that other readers of the message wait for this load
+            CacheNode fresh = new CacheNode();
+            cnode = sCache.putIfAbsent(digest, fresh);
             if (cnode == null) {
+                sLog.debug("Caching MimeMessage for digest %s.", digest);
                 newNode = true;
-                cnode = new CacheNode();
+                cnode = fresh;
             }
         }
 
-        try {
-            if (cnode.message == null) {
-                sLog.debug("Loading MimeMessage for item %d.", item.getId());
-                cacheHit = false;
-                try {
-                    in = fetchFromStore(item);
-                    cnode.message = new Mime.FixedMimeMessage(JMSession.getSession(), in);
-                    if (item.getSize() < MESSAGE_CACHE_DISK_STREAMING_THRESHOLD) {
-                        cnode.size = item.getSize();
-                        // Not the best place to increment the data size, but cacheItem()
-                        // won't get called if we're expanding a message for an existing
-                        // node.
-                        sDataSize += cnode.size;
+        boolean success = false;
+        synchronized (cnode) {
+            try {
+                if (cnode.message == null) {
+                    sLog.debug("Loading MimeMessage for item %d.", item.getId());
+                    cacheHit = false;
+                    try {
+                        in = fetchFromStore(item);
+                        cnode.message = new Mime.FixedMimeMessage(JMSession.getSession(), in);
+                        if (item.getSize() < MESSAGE_CACHE_DISK_STREAMING_THRESHOLD) {
+                            cnode.grow(item.getSize());
+                        }
+                    } finally {
+                        ByteUtil.closeStream(in);
                     }
-                } finally {
-                    ByteUtil.closeStream(in);
                 }
-            }
 
-            if (expand) {
-                sLog.debug("Expanding MimeMessage for item %d.", item.getId());
-                try {
-                    MimeMessage decryptedMimeMessage = null;
-                    if (item instanceof Message) {
-                        // if the mime is encrypted; decrypt it first
-                        if (cnode.message != null) {
-                            isEncrypted = Mime.isEncrypted(cnode.message.getContentType());
-                        }
-                        if (isEncrypted) {
-                            if (isSmimeFeatureToggled(item.getMailbox(), cnode)) {
-                                sLog.debug(
-                                    "Smime feature is toggled. So remove old entry from smimeAccessInfo for mailboxId=%d and itemDigest=%s",
-                                    mboxId, item.getDigest());
-                                cnode.smimeAccessInfo.remove(mboxId);
+                if (expand) {
+                    sLog.debug("Expanding MimeMessage for item %d.", item.getId());
+                    try {
+                        MimeMessage decryptedMimeMessage = null;
+                        if (item instanceof Message) {
+                            // if the mime is encrypted; decrypt it first
+                            if (cnode.message != null) {
+                                isEncrypted = Mime.isEncrypted(cnode.message.getContentType());
                             }
-                            if (cnode.expanded == null || !cnode.smimeAccessInfo.containsKey(mboxId)) {
-                                cacheHit = false;
-                                decryptedMimeMessage = doDecryption(item, cnode, mboxId);
+                            if (isEncrypted) {
+                                if (isSmimeFeatureToggled(item.getMailbox(), cnode)) {
+                                    sLog.debug(
+                                        "Smime feature is toggled. So remove old entry from smimeAccessInfo for mailboxId=%d and itemDigest=%s",
+                                        mboxId, item.getDigest());
+                                    cnode.smimeAccessInfo.remove(mboxId);
+                                }
+                                if (cnode.expanded == null || !cnode.smimeAccessInfo.containsKey(mboxId)) {
+                                    cacheHit = false;
+                                    decryptedMimeMessage = doDecryption(item, cnode, mboxId);
+                                }
                             }
                         }
+                        //expand if the message has not yet been expanded or if the message is decrypted successfully
+                        if (cnode.expanded == null || (decryptedMimeMessage != null && cnode.expanded != decryptedMimeMessage)) {
+                            cacheHit = false;
+                            expandMessage(item, cnode, decryptedMimeMessage);
+                        }
+                    } catch (Exception e) {
+                        // if the conversion bombs for any reason, revert to the original
+                        sLog.warn("MIME converter failed for message %d.  Reverting to original.", item.getId(), e);
+                        cnode.expanded = cnode.message;
                     }
-                    //expand if the message has not yet been expanded or if the message is decrypted successfully
-                    if (cnode.expanded == null || (decryptedMimeMessage != null && cnode.expanded != decryptedMimeMessage)) {
-                        cacheHit = false;
-                        expandMessage(item, cnode, decryptedMimeMessage);
-                    }
-                } catch (Exception e) {
-                    // if the conversion bombs for any reason, revert to the original
-                    sLog.warn("MIME converter failed for message %d.  Reverting to original.", item.getId(), e);
-                    cnode.expanded = cnode.message;
                 }
-            }
 
-            if (newNode) {
-                cacheItem(digest, cnode);
+                success = true;
+            } catch (IOException e) {
+                throw ServiceException.FAILURE("IOException while retrieving content for item " + item.getId(), e);
+            } catch (MessagingException e) {
+                throw ServiceException.FAILURE("MessagingException while creating MimeMessage for item " + item.getId(), e);
+            } finally {
+                ByteUtil.closeStream(in);
+                if (!success && newNode && cnode.message == null) {
+                    // don't leave an empty node behind for contains() to report
+                    if (sCache.remove(digest, cnode)) {
+                        cnode.release();
+                    }
+                }
             }
-        } catch (IOException e) {
-            throw ServiceException.FAILURE("IOException while retrieving content for item " + item.getId(), e);
-        } catch (MessagingException e) {
-            throw ServiceException.FAILURE("MessagingException while creating MimeMessage for item " + item.getId(), e);
-        } finally {
-            ByteUtil.closeStream(in);
         }
 
         if (cacheHit) {
@@ -286,8 +331,7 @@ public class MessageCache {
         expander.expand();
         cnode.expanded = expander.getExpanded();
         if (cnode.expanded != cnode.message) {
-            sDataSize += cnode.size;
-            cnode.size *= 2;
+            cnode.grow(cnode.getSize());
         }
     }
 
@@ -357,37 +401,19 @@ public class MessageCache {
         CacheNode cnode = new CacheNode();
         cnode.message = original;
         cnode.expanded = expanded;
-        cacheItem(digest, cnode);
-    }
-
-    private static void cacheItem(String digest, CacheNode cnode) {
-        sLog.debug("Caching MimeMessage for digest %s.", digest);
-        synchronized (sCache) {
-            sCache.put(digest, cnode);
-            // Cache data size was incremented in getMimeMessage().
-
-            // trim the cache if needed
-            if (sCache.size() > sMaxCacheSize) {
-                Iterator<Map.Entry<String, CacheNode>> it = sCache.entrySet().iterator();
-                while (sCache.size() > sMaxCacheSize && it.hasNext()) {
-                    Map.Entry<String, CacheNode> entry = it.next();
-                    sLog.debug("Pruning digest %s from the cache.", entry.getKey());
-                    it.remove();
-                    sDataSize -= entry.getValue().size;
-                }
-            }
+        CacheNode old = sCache.put(digest, cnode);
+        if (old != null) {
+            old.release();
         }
     }
 
     public static void removeDecryptedMessages(int mboxId) {
         sLog.debug("Start removing decrypted messages for mboxId=%d", mboxId);
-        synchronized (sCache) {
-            Iterator<Map.Entry<String, CacheNode>> it = sCache.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<String, CacheNode> entry = it.next();
-                CacheNode cacheNode = entry.getValue();
+        for (Map.Entry<String, CacheNode> entry : sCache.entrySet()) {
+            CacheNode cacheNode = entry.getValue();
+            synchronized (cacheNode) {
                 try {
-                    if (Mime.isEncrypted(cacheNode.message.getContentType())
+                    if (cacheNode.message != null && Mime.isEncrypted(cacheNode.message.getContentType())
                         && cacheNode.smimeAccessInfo.containsKey(mboxId)) {
                         cacheNode.smimeAccessInfo.remove(mboxId);
                     }
@@ -402,11 +428,9 @@ public class MessageCache {
 
     public static String getDecryptionError(int id, String digest) {
         if (digest != null) {
-            synchronized (sCache) {
-                CacheNode node = sCache.get(digest);
-                if (node != null) {
-                    return node.smimeAccessInfo.get(id);
-                }
+            CacheNode node = sCache.get(digest);
+            if (node != null) {
+                return node.smimeAccessInfo.get(id);
             }
         }
         return null;
@@ -18,13 +18,15 @@
 package com.zimbra.cs.mailbox.calendar.cache;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
 import com.zimbra.common.account.Key.AccountBy;
 import com.zimbra.common.calendar.ParsedDateTime;
 import com.zimbra.common.localconfig.LC;
@@ -93,6 +95,11 @@ public class CalSummaryCache {
     //   ]
 
     public static CalendarItemData reloadCalendarItemOverRange(CalendarItem calItem, long rangeStart, long rangeEnd)
+    throws ServiceException {
+        return sExpansionCache.get(calItem, rangeStart, rangeEnd, CalSummaryCache::expandCalendarItemOverRange);
+    }
+
+    private static CalendarItemData expandCalendarItemOverRange(CalendarItem calItem, long rangeStart, long rangeEnd)
     throws ServiceException {
         CalendarItemData calItemData = null;
         try {
@@ -354,125 +361,106 @@ public class CalSummaryCache {
 
     private static final long MSEC_PER_DAY = 1000 * 60 * 60 * 24;
 
+    // expanded instances by calendar item, shared by all calendars and callers
+    private static final InstanceExpansionCache sExpansionCache;
+
     static {
         sRangeMonthFrom = LC.calendar_cache_range_month_from.intValue();
         sRangeNumMonths = LC.calendar_cache_range_months.intValue();
         sMaxStaleItems = LC.calendar_cache_max_stale_items.intValue();
         sMaxStaleItemsBeforeInvalidatingCalendar = 100;
         sMaxSearchDays = LC.calendar_search_max_days.intValueWithinRange(0, 3660);
+        sExpansionCache = new InstanceExpansionCache(LC.calendar_cache_expansion_lru_size.intValue(),
+                LC.calendar_cache_expansion_bucket_days.intValueWithinRange(0, 366) * MSEC_PER_DAY,
+                (sMaxSearchDays + 1) * MSEC_PER_DAY);
     }
 
-    @SuppressWarnings("serial")
-    private static class SummaryLRU extends LinkedHashMap<CalSummaryKey, CalendarData> {
-        private final int mMaxAllowed;
+    // Concurrent LRU of calendar summaries, plus an index of the calendar folders cached for each account.
+    static class SummaryLRU {
+        private final ConcurrentLinkedHashMap<CalSummaryKey, CalendarData> mMap;
 
         // map that keeps track of which calendar folders are cached for each account
         // This map is updated every time a calendar folder is added, removed, or aged out
-        // of the LRU.
-        private final Map<String /* account id */, Set<Integer> /* folder ids */> mAccountFolders;
-
-        private SummaryLRU(int capacity) {
-            super(capacity + 1, 1.0f, true);
-            mMaxAllowed = Math.max(capacity, 1);
-            mAccountFolders = new HashMap<String, Set<Integer>>();
+        // of the LRU.  A folder is registered before its data is put in the LRU, so the index may briefly
+        // name a folder that isn't cached, but never misses one that is.
+        private final ConcurrentMap<String /* account id */, Set<Integer> /* folder ids */> mAccountFolders =
+            new ConcurrentHashMap<String, Set<Integer>>();
+
+        SummaryLRU(int capacity) {
+            mMap = new ConcurrentLinkedHashMap.Builder<CalSummaryKey, CalendarData>()
+                .maximumWeightedCapacity(Math.max(capacity, 1))
+                .listener(new EvictionListener<CalSummaryKey, CalendarData>() {
+                    @Override
+                    public void onEviction(CalSummaryKey key, CalendarData value) {
+                        deregisterFromAccount(key);
+                    }
+                })
+                .build();
         }
 
-        @Override
-        public void clear() {
-            super.clear();
-            mAccountFolders.clear();
+        public CalendarData get(CalSummaryKey key) {
+            return mMap.get(key);
         }
 
-        @Override
-        public CalendarData put(CalSummaryKey key, CalendarData value) {
-            CalendarData prevVal = super.put(key, value);
-            if (prevVal == null)
-                registerWithAccount(key);
-            return prevVal;
+        public int size() {
+            return mMap.size();
         }
 
-        @Override
-        public void putAll(Map<? extends CalSummaryKey, ? extends CalendarData> t) {
-            super.putAll(t);
-            for (CalSummaryKey key : t.keySet()) {
-                registerWithAccount(key);
-            }
+        public CalendarData put(CalSummaryKey key, CalendarData value) {
+            registerWithAccount(key);
+            return mMap.put(key, value);
         }
 
-        @Override
-        public CalendarData remove(Object key) {
-            CalendarData prevVal = super.remove(key);
-            if (prevVal != null && key instanceof CalSummaryKey) {
-                CalSummaryKey k = (CalSummaryKey) key;
-                deregisterFromAccount(k);
-            }
+        public CalendarData remove(CalSummaryKey key) {
+            CalendarData prevVal = mMap.remove(key);
+            if (prevVal != null)
+                deregisterFromAccount(key);
             return prevVal;
         }
 
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<CalSummaryKey, CalendarData> eldest) {
-            boolean remove = size() > mMaxAllowed;
-            if (remove)
-                deregisterFromAccount(eldest.getKey());
-            return remove;
+        private void registerWithAccount(final CalSummaryKey key) {
+            mAccountFolders.compute(key.getAccountId(), (accountId, folders) -> {
+                if (folders == null)
+                    folders = ConcurrentHashMap.newKeySet();
+                folders.add(key.getFolderId());
+                return folders;
+            });
         }
 
-        private void registerWithAccount(CalSummaryKey key) {
-            String accountId = key.getAccountId();
-            int folderId = key.getFolderId();
-            Set<Integer> folders = mAccountFolders.get(accountId);
-            if (folders == null) {
-                folders = new HashSet<Integer>();
-                mAccountFolders.put(accountId, folders);
-            }
-            folders.add(folderId);
-        }
-
-        private void deregisterFromAccount(CalSummaryKey key) {
-            String accountId = key.getAccountId();
-            int folderId = key.getFolderId();
-            Set<Integer> folders = mAccountFolders.get(accountId);
-            if (folders != null) {
-                folders.remove(folderId);
-                // If no folders are cached for the account, drop the account entry from the map to save memory.
-                if (folders.isEmpty())
-                    mAccountFolders.remove(accountId);
-            }
+        private void deregisterFromAccount(final CalSummaryKey key) {
+            // If no folders are cached for the account, drop the account entry from the map to save memory.
+            mAccountFolders.computeIfPresent(key.getAccountId(), (accountId, folders) -> {
+                folders.remove(key.getFolderId());
+                return folders.isEmpty() ? null : folders;
+            });
+            // The same folder may have been put back by another thread in the meantime.
+            if (mMap.containsKey(key))
+                registerWithAccount(key);
         }
 
         public static final int FOLDER_NOT_FOUND = -1;
 
         public int getFolderForItem(String accountId, int itemId) {
-            int retval = FOLDER_NOT_FOUND;
             Set<Integer> folders = mAccountFolders.get(accountId);
             if (folders != null) {
                 for (int folderId : folders) {
-                    CalSummaryKey key = new CalSummaryKey(accountId, folderId);
-                    CalendarData calData = get(key);
-                    if (calData != null) {
-                        CalendarItemData ci = calData.getCalendarItemData(itemId);
-                        if (ci != null) {
-                            retval = folderId;
-                            break;
-                        }
-                    }
+                    CalendarData calData = mMap.get(new CalSummaryKey(accountId, folderId));
+                    if (calData != null && calData.getCalendarItemData(itemId) != null)
+                        return folderId;
                 }
             }
-            return retval;
+            return FOLDER_NOT_FOUND;
         }
 
         /**
          * Toss all folders of the account from the LRU.
-         * @param mboxId
+         * @param accountId
          */
         public void removeAccount(String accountId) {
             Set<Integer> folders = mAccountFolders.get(accountId);
             if (folders != null) {
-                // Get a copy of the folder list to avoid ConcurrentModificationException on mMboxFolders.
-                Integer[] fids = folders.toArray(new Integer[0]);
-                for (int folderId : fids) {
-                    CalSummaryKey key = new CalSummaryKey(accountId, folderId);
-                    remove(key);
+                for (int folderId : folders) {
+                    remove(new CalSummaryKey(accountId, folderId));
                 }
             }
         }
@@ -576,11 +564,9 @@ public class CalSummaryCache {
         int currentModSeq = folder.getImapMODSEQ();
 
         // Lookup from heap LRU.
-            synchronized (mSummaryCache) {
-                if (mLRUCapacity > 0) {
-                    calData = mSummaryCache.get(key);
-                    lruSize = mSummaryCache.size();
-                }
+            if (mLRUCapacity > 0) {
+                calData = mSummaryCache.get(key);
+                lruSize = mSummaryCache.size();
             }
             if (calData != null) {
                 // Sanity check: Cached data can't be newer than the backend data.
@@ -601,10 +587,8 @@ public class CalSummaryCache {
                     // If data is up to date, add to LRU.
                     if (calData.getModSeq() == currentModSeq) {
                         if (mLRUCapacity > 0) {
-                            synchronized (mSummaryCache) {
-                                mSummaryCache.put(key, calData);
-                                lruSize = mSummaryCache.size();
-                            }
+                            mSummaryCache.put(key, calData);
+                            lruSize = mSummaryCache.size();
                         }
                     } else {
                         // Data loaded from file doesn't have stale items list.  It can't be refreshed incrementally.
@@ -648,11 +632,9 @@ public class CalSummaryCache {
                                                    sRangeMonthFrom, sRangeNumMonths);
             calData = reloadCalendarOverRange(ownerOctxt, mbox, folderId, type,
                     defaultRange.getFirst(), defaultRange.getSecond(), reusableCalData, incrementalUpdate);
-            synchronized (mSummaryCache) {
-                if (mLRUCapacity > 0) {
-                    mSummaryCache.put(key, calData);
-                    lruSize = mSummaryCache.size();
-                }
+            if (mLRUCapacity > 0) {
+                mSummaryCache.put(key, calData);
+                lruSize = mSummaryCache.size();
             }
             dataFrom = CacheLevel.Miss;
 
@@ -717,9 +699,7 @@ public class CalSummaryCache {
             return;
         int mboxId = mbox.getId();
         CalSummaryKey key = new CalSummaryKey(mbox.getAccountId(), folderId);
-        synchronized (mSummaryCache) {
-            mSummaryCache.remove(key);
-        }
+        mSummaryCache.remove(key);
         try {
             FileStore.deleteCalendarData(mboxId, folderId);
         } catch (ServiceException e) {
@@ -732,10 +712,8 @@ public class CalSummaryCache {
             return;
         CalSummaryKey key = new CalSummaryKey(mbox.getAccountId(), folderId);
         CalendarData calData = null;
-        synchronized (mSummaryCache) {
-            if (mLRUCapacity > 0) {
-                calData = mSummaryCache.get(key);
-            }
+        if (mLRUCapacity > 0) {
+            calData = mSummaryCache.get(key);
         }
         // Invalidate the item from the calendar.
         if (calData != null) {
@@ -767,15 +745,13 @@ public class CalSummaryCache {
                     Mailbox mbox = item.getMailbox();
                     int folderId = item.getFolderId();
                     int itemId = item.getId();
+                    sExpansionCache.invalidate(mbox.getAccountId(), itemId);
                     invalidateItem(mbox, folderId, itemId);
 
                     // If this is a folder move, invalidate the item from the old folder too.
                     if ((change.why & Change.FOLDER) != 0) {
                         String accountId = mbox.getAccountId();
-                        int prevFolderId;
-                        synchronized (mSummaryCache) {
-                            prevFolderId = mSummaryCache.getFolderForItem(accountId, itemId);
-                        }
+                        int prevFolderId = mSummaryCache.getFolderForItem(accountId, itemId);
                         if (prevFolderId != folderId && prevFolderId != SummaryLRU.FOLDER_NOT_FOUND) {
                             invalidateItem(mbox, prevFolderId, itemId);
                         }
@@ -793,6 +769,7 @@ public class CalSummaryCache {
                     Mailbox mbox = null;
                     String acctId = entry.getKey().getAccountId();
                     if (acctId == null) continue;  // just to be safe
+                    sExpansionCache.invalidate(acctId, entry.getKey().getItemId());
                     if (acctId.equals(lastAcctId)) {
                         // Deletion by id list usually happens because of a folder getting emptied.
                         // It's highly likely the items all belong to the same mailbox, let alone folder.
@@ -810,10 +787,7 @@ public class CalSummaryCache {
                         lastMbox = mbox;
                         int itemId = entry.getKey().getItemId();
                         String accountId = mbox.getAccountId();
-                        int folderId;
-                        synchronized (mSummaryCache) {
-                            folderId = mSummaryCache.getFolderForItem(accountId, itemId);
-                        }
+                        int folderId = mSummaryCache.getFolderForItem(accountId, itemId);
                         if (folderId != SummaryLRU.FOLDER_NOT_FOUND) {
                             invalidateItem(mbox, folderId, itemId);
                         }
@@ -828,9 +802,8 @@ public class CalSummaryCache {
     }
 
     void purgeMailbox(Mailbox mbox) throws ServiceException {
-        synchronized (mSummaryCache) {
-            mSummaryCache.removeAccount(mbox.getAccountId());
-        }
+        mSummaryCache.removeAccount(mbox.getAccountId());
+        sExpansionCache.purgeAccount(mbox.getAccountId());
         if (MemcachedConnector.isConnected()) {
             mMemcachedCache.purgeMailbox(mbox);
         }
@@ -0,0 +1,148 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+
+package com.zimbra.cs.mailbox.calendar.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.zimbra.common.service.ServiceException;
+import com.zimbra.common.util.Pair;
+import com.zimbra.cs.mailbox.CalendarItem;
+import com.zimbra.cs.stats.ZimbraPerf;
+
+/**
+ * Memoizes the expanded instances of calendar items.  A requested range is widened to whole buckets of a
+ * fixed width, so every client viewing the same week of a shared calendar hits the same entry, and the
+ * requested range is then cut out of the cached expansion with {@link CalendarItemData#getSubRange}.
+ * <p>
+ * Entries are only served for the mod_metadata/mod_content/next alarm the item was expanded at, so an entry
+ * can never be stale; {@link #invalidate(String, int)} merely frees the memory as soon as the item changes.
+ */
+final class InstanceExpansionCache {
+
+    interface Expander {
+        CalendarItemData expand(CalendarItem calItem, long rangeStart, long rangeEnd) throws ServiceException;
+    }
+
+    // Number of distinct bucket ranges remembered for a single item before its ranges are flushed.
+    private static final int MAX_RANGES_PER_ITEM = 16;
+
+    private final long mBucketSize;
+    private final long mMaxRange;
+    private final ConcurrentLinkedHashMap<Pair<String, Integer>, ItemExpansions> mCache;
+
+    /**
+     * @param capacity maximum number of calendar items to keep expansions for; 0 disables the cache
+     * @param bucketSize bucket width in milliseconds; 0 disables the cache
+     * @param maxRange ranges wider than this are always expanded directly
+     */
+    InstanceExpansionCache(int capacity, long bucketSize, long maxRange) {
+        mBucketSize = capacity > 0 ? bucketSize : 0;
+        mMaxRange = maxRange;
+        mCache = new ConcurrentLinkedHashMap.Builder<Pair<String, Integer>, ItemExpansions>()
+            .maximumWeightedCapacity(Math.max(capacity, 1))
+            .build();
+    }
+
+    CalendarItemData get(CalendarItem calItem, long rangeStart, long rangeEnd, Expander expander)
+    throws ServiceException {
+        if (mBucketSize <= 0 || rangeStart >= rangeEnd || rangeEnd - rangeStart > mMaxRange) {
+            return expander.expand(calItem, rangeStart, rangeEnd);
+        }
+        long bucketStart = floor(rangeStart);
+        long bucketEnd = floor(rangeEnd - 1) + mBucketSize;
+        if (bucketStart > rangeStart || bucketEnd < rangeEnd) {  // overflow at the ends of the time line
+            return expander.expand(calItem, rangeStart, rangeEnd);
+        }
+
+        Pair<String, Integer> key = new Pair<String, Integer>(calItem.getMailbox().getAccountId(), calItem.getId());
+        ItemExpansions item = mCache.get(key);
+        if (item == null || !item.isCurrent(calItem)) {
+            item = new ItemExpansions(calItem);
+            mCache.put(key, item);
+        }
+        Pair<Long, Long> range = new Pair<Long, Long>(bucketStart, bucketEnd);
+        Expansion expansion = item.mRanges.get(range);
+        if (expansion != null) {
+            ZimbraPerf.COUNTER_CALENDAR_EXPANSION_CACHE_HIT.increment(1);
+        } else {
+            ZimbraPerf.COUNTER_CALENDAR_EXPANSION_CACHE_HIT.increment(0);
+            expansion = new Expansion(expander.expand(calItem, bucketStart, bucketEnd));
+            if (item.mRanges.size() >= MAX_RANGES_PER_ITEM) {
+                item.mRanges.clear();
+            }
+            item.mRanges.put(range, expansion);
+        }
+        return expansion.mData != null ? expansion.mData.getSubRange(rangeStart, rangeEnd) : null;
+    }
+
+    void invalidate(String accountId, int calItemId) {
+        mCache.remove(new Pair<String, Integer>(accountId, calItemId));
+    }
+
+    void purgeAccount(String accountId) {
+        for (Pair<String, Integer> key : mCache.keySet()) {
+            if (accountId.equals(key.getFirst())) {
+                mCache.remove(key);
+            }
+        }
+    }
+
+    int size() {
+        return mCache.size();
+    }
+
+    private long floor(long time) {
+        long rem = time % mBucketSize;
+        return rem < 0 ? time - rem - mBucketSize : time - rem;
+    }
+
+    private static final class ItemExpansions {
+        private final int mModMetadata;
+        private final int mModContent;
+        private final long mNextAlarm;
+        private final ConcurrentMap<Pair<Long, Long>, Expansion> mRanges =
+            new ConcurrentHashMap<Pair<Long, Long>, Expansion>();
+
+        ItemExpansions(CalendarItem calItem) {
+            mModMetadata = calItem.getModifiedSequence();
+            mModContent = calItem.getSavedSequence();
+            mNextAlarm = nextAlarm(calItem);
+        }
+
+        boolean isCurrent(CalendarItem calItem) {
+            return mModMetadata == calItem.getModifiedSequence() && mModContent == calItem.getSavedSequence() &&
+                    mNextAlarm == nextAlarm(calItem);
+        }
+
+        private static long nextAlarm(CalendarItem calItem) {
+            CalendarItem.AlarmData alarm = calItem.getAlarmData();
+            return alarm != null ? alarm.getNextAt() : 0;
+        }
+    }
+
+    // wraps the result so that "no instances in range" can be cached too
+    private static final class Expansion {
+        final CalendarItemData mData;
+
+        Expansion(CalendarItemData data) {
+            mData = data;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+
+package com.zimbra.cs.mime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.activation.DataSource;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.zimbra.common.localconfig.LC;
+import com.zimbra.common.util.ByteUtil;
+import com.zimbra.common.util.ZimbraLog;
+import com.zimbra.cs.convert.ConversionException;
+import com.zimbra.cs.stats.ZimbraPerf;
+
+/**
+ * Text extraction stage for {@link MimeHandler}s.
+ * <ul>
+ *  <li>Extraction of large or externally converted parts runs on a bounded pool, so that a pathological
+ *  attachment costs the indexing thread at most its time budget instead of stalling the whole mailbox.  A worker
+ *  still stuck on a part past its budget is replaced, and a part no worker picks up within its budget is extracted
+ *  on the indexing thread.</li>
+ *  <li>Every MIME type has a time budget and a size budget; <tt>zimbra_index_extraction_timeout_by_type</tt> and
+ *  <tt>zimbra_index_extraction_max_size_by_type</tt> override the defaults with lists like
+ *  <tt>application/pdf:120000,text/*:10000</tt>.</li>
+ *  <li>Extracted text is cached by content digest, so an attachment delivered to many recipients is
+ *  converted once.</li>
+ *  <li>Extraction time is tracked by content type in <tt>extract.csv</tt>.</li>
+ * </ul>
+ */
+final class AttachmentExtractor {
+
+    private static final int THREADS = LC.zimbra_index_extraction_threads.intValue();
+    private static final Pool POOL = THREADS > 0 ?
+            new Pool(THREADS, LC.zimbra_index_extraction_queue_size.intValue()) : null;
+    private static final long ASYNC_MIN_SIZE = LC.zimbra_index_extraction_async_min_size.longValue();
+
+    private static final long DEFAULT_TIMEOUT = LC.zimbra_index_extraction_timeout.longValue();
+    private static final Map<String, Long> TIMEOUTS = parseBudgets(LC.zimbra_index_extraction_timeout_by_type.value());
+    private static final long DEFAULT_MAX_SIZE = LC.zimbra_index_extraction_max_size.longValue();
+    private static final Map<String, Long> MAX_SIZES =
+            parseBudgets(LC.zimbra_index_extraction_max_size_by_type.value());
+
+    private static final long CACHE_SIZE = LC.zimbra_index_extraction_cache_size.longValue();
+    private static final long CACHE_MIN_SIZE = LC.zimbra_index_extraction_cache_min_size.longValue();
+    private static final Cache<String, String> CACHE = CacheBuilder.newBuilder()
+        .maximumWeight(Math.max(CACHE_SIZE, 0))
+        .weigher((Weigher<String, String>) (key, text) -> key.length() + text.length())
+        .build();
+
+    private AttachmentExtractor() {
+    }
+
+    static boolean isParallel() {
+        return POOL != null;
+    }
+
+    /**
+     * Extracts the text of the handler's part, on the extraction pool if the part qualifies for it.
+     */
+    static String extract(MimeHandler handler) throws MimeHandlerException {
+        Extraction extraction = submit(handler);
+        return extraction != null ? extraction.await() : extractAndCache(handler);
+    }
+
+    /**
+     * Queues extraction of the handler's part on the extraction pool.
+     *
+     * @return the pending extraction, or null if the part should be extracted inline: the pool is disabled or
+     *         saturated, or the part is small and handled in-process
+     */
+    static Extraction submit(MimeHandler handler) {
+        return submit(handler, POOL);
+    }
+
+    static Extraction submit(MimeHandler handler, Pool pool) {
+        if (pool == null || (!handler.runsExternally() && handler.getSize() < ASYNC_MIN_SIZE)) {
+            return null;
+        }
+        Extraction extraction = new Extraction(handler, pool);
+        try {
+            pool.mExecutor.execute(extraction.mFuture);
+            return extraction;
+        } catch (RejectedExecutionException e) {
+            // the queue is full; extracting on the caller's thread throttles indexing instead of piling up work
+            return null;
+        }
+    }
+
+    static String extractAndCache(MimeHandler handler) throws MimeHandlerException {
+        String ctype = handler.getContentType();
+        long maxSize = budget(MAX_SIZES, ctype, DEFAULT_MAX_SIZE);
+        if (maxSize > 0 && handler.getSize() > maxSize) {
+            throw new MimeHandlerException("part too large for text extraction (" + handler.getSize() +
+                    " > " + maxSize + " bytes)");
+        }
+
+        String key = cacheKey(handler);
+        if (key != null) {
+            String text = CACHE.getIfPresent(key);
+            ZimbraPerf.COUNTER_EXTRACTION_CACHE_HIT.increment(text != null ? 1 : 0);
+            if (text != null) {
+                return text;
+            }
+        }
+        long start = System.currentTimeMillis();
+        String text = Strings.nullToEmpty(handler.getContentImpl());
+        ZimbraPerf.EXTRACTION_TRACKER.addStat(ctype, start);
+        if (key != null) {
+            CACHE.put(key, text);
+        }
+        return text;
+    }
+
+    private static String cacheKey(MimeHandler handler) {
+        DataSource ds = handler.getDataSource();
+        if (CACHE_SIZE <= 0 || ds == null || handler.getSize() < CACHE_MIN_SIZE) {
+            return null;
+        }
+        InputStream in = null;
+        try {
+            in = ds.getInputStream();
+            // the charset is part of the key because text handlers fall back on it to decode the part
+            return handler.getClass().getName() + ':' + handler.getContentType() + ':' +
+                    Strings.nullToEmpty(handler.getDefaultCharset()) + ':' + ByteUtil.getSHA256Digest(in, true);
+        } catch (IOException e) {
+            ZimbraLog.index.debug("unable to digest part %s; not caching its text", handler.getPartName(), e);
+            return null;
+        } finally {
+            ByteUtil.closeStream(in);
+        }
+    }
+
+    /**
+     * Looks up the budget for a content type: an exact match, then the <tt>type/*</tt> wildcard, then the default.
+     */
+    static long budget(Map<String, Long> budgets, String ctype, long defaultValue) {
+        Long value = budgets.get(ctype);
+        if (value == null) {
+            int slash = ctype.indexOf('/');
+            if (slash > 0) {
+                value = budgets.get(ctype.substring(0, slash) + "/*");
+            }
+        }
+        return value != null ? value : defaultValue;
+    }
+
+    static Map<String, Long> parseBudgets(String spec) {
+        if (Strings.isNullOrEmpty(spec)) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> budgets = new HashMap<String, Long>();
+        for (String entry : Splitter.on(',').trimResults().omitEmptyStrings().split(spec)) {
+            int colon = entry.lastIndexOf(':');
+            try {
+                budgets.put(entry.substring(0, colon).trim().toLowerCase(),
+                        Long.parseLong(entry.substring(colon + 1).trim()));
+            } catch (RuntimeException e) {
+                ZimbraLog.index.warn("ignoring malformed extraction budget '%s'", entry);
+            }
+        }
+        return budgets;
+    }
+
+    /**
+     * The extraction threads.  Converters often ignore interrupts, so a worker that overran its budget may stay busy
+     * long after the part was given up on; up to as many extra threads as the pool has are started to stand in for
+     * such workers until they come back.
+     */
+    static final class Pool {
+        private final ThreadPoolExecutor mExecutor;
+        private final int mMaxThreads;
+
+        Pool(int threads, int queueSize) {
+            mExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(Math.max(queueSize, 1)),
+                    new ThreadFactoryBuilder().setNameFormat("AttachmentExtractor-%d").setDaemon(true).build());
+            mMaxThreads = threads * 2;
+        }
+
+        int getPoolSize() {
+            return mExecutor.getCorePoolSize();
+        }
+
+        /**
+         * Adds a thread in place of a worker stuck on an abandoned part.
+         *
+         * @return false if the pool already has all the extra threads it may have
+         */
+        synchronized boolean replaceWorker() {
+            int size = mExecutor.getCorePoolSize();
+            if (size >= mMaxThreads) {
+                return false;
+            }
+            mExecutor.setMaximumPoolSize(size + 1);
+            mExecutor.setCorePoolSize(size + 1);
+            return true;
+        }
+
+        /**
+         * Drops the thread added by {@link #replaceWorker()} once the stuck worker is done.
+         */
+        synchronized void retireWorker() {
+            int size = mExecutor.getCorePoolSize();
+            mExecutor.setCorePoolSize(size - 1);
+            mExecutor.setMaximumPoolSize(size - 1);
+        }
+
+        void shutdown() {
+            mExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Text extraction of one part, queued on the extraction pool.
+     */
+    static final class Extraction implements Callable<String> {
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+        private static final int REPLACED = 3; // abandoned, and a thread was added to the pool in its place
+
+        private final MimeHandler mHandler;
+        private final Pool mPool;
+        private final FutureTask<String> mFuture = new FutureTask<String>(this);
+        private final AtomicInteger mState = new AtomicInteger(QUEUED);
+        private volatile long mStarted;
+
+        Extraction(MimeHandler handler, Pool pool) {
+            mHandler = handler;
+            mPool = pool;
+        }
+
+        @Override
+        public String call() throws MimeHandlerException {
+            mStarted = System.currentTimeMillis();
+            mState.set(RUNNING);
+            try {
+                return extractAndCache(mHandler);
+            } finally {
+                if (mState.getAndSet(DONE) == REPLACED) {
+                    mPool.retireWorker();
+                }
+            }
+        }
+
+        String await() throws MimeHandlerException {
+            return await(budget(TIMEOUTS, mHandler.getContentType(), DEFAULT_TIMEOUT));
+        }
+
+        /**
+         * Waits for the extracted text.  The time budget starts counting when a worker picks the part up.  A part
+         * that no worker picked up within its budget is extracted on the calling thread instead, since the workers
+         * are likely all stuck on parts that ignore their budget.
+         */
+        String await(long timeout) throws MimeHandlerException {
+            try {
+                if (timeout <= 0) {
+                    return mFuture.get();
+                }
+                try {
+                    return mFuture.get(timeout, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (mFuture.cancel(false)) {
+                        ZimbraLog.index.info("text extraction of part %s did not start within %dms; extracting inline",
+                                mHandler.getPartName(), timeout);
+                        return extractAndCache(mHandler);
+                    }
+                    long started = mStarted;
+                    long remaining = started == 0 ? timeout : started + timeout - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw e;
+                    }
+                    return mFuture.get(remaining, TimeUnit.MILLISECONDS);
+                }
+            } catch (TimeoutException e) {
+                mFuture.cancel(true);
+                abandon();
+                throw new MimeHandlerException("text extraction timed out after " + timeout + "ms");
+            } catch (InterruptedException e) {
+                mFuture.cancel(true);
+                abandon();
+                Thread.currentThread().interrupt();
+                throw new MimeHandlerException(new ConversionException("text extraction interrupted", e, true));
+            } catch (CancellationException e) {
+                throw new MimeHandlerException(new ConversionException("text extraction cancelled", e, true));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof MimeHandlerException) {
+                    throw (MimeHandlerException) cause;
+                }
+                throw new MimeHandlerException("text extraction failed", cause);
+            }
+        }
+
+        /**
+         * Stands a new thread in for the worker still running this part, if the part ignored being cancelled.
+         */
+        private void abandon() {
+            if (mState.get() == RUNNING && mPool.replaceWorker() && !mState.compareAndSet(RUNNING, REPLACED)) {
+                mPool.retireWorker(); // the worker came back in the meantime
+            }
+        }
+    }
+}
@@ -41,6 +41,7 @@ public class MPartInfo {
     int mSize;
     boolean mIsFilterableAttachment;
     boolean mIsToplevelAttachment;
+    private ContentType mParsedContentType;  // full Content-Type header, parsed on first use
 
     @Override public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -123,11 +124,14 @@ public class MPartInfo {
     }
 
     public String getContentTypeParameter(String name) {
-        try {
-            return new ContentType(mPart.getContentType()).getParameter(name);
-        } catch (MessagingException e) {
-            return null;
+        if (mParsedContentType == null) {
+            try {
+                mParsedContentType = new ContentType(mPart.getContentType());
+            } catch (MessagingException e) {
+                return null;
+            }
         }
+        return mParsedContentType.getParameter(name);
     }
 
     public String getContentID() {
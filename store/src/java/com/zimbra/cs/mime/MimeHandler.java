@@ -177,11 +177,13 @@ public abstract class MimeHandler {
      */
     public final String getContent() throws MimeHandlerException {
         if (!DebugConfig.disableMimePartExtraction) {
-            String toRet = getContentImpl();
-            if (toRet == null)
-                return "";
-            else
-                return toRet;
+            // extracted once per handler: getDocument() and the toplevel body text both need it
+            if (content == null) {
+                AttachmentExtractor.Extraction pending = pendingExtraction;
+                pendingExtraction = null;
+                content = pending != null ? pending.await() : AttachmentExtractor.extract(this);
+            }
+            return content;
         } else {
             if (dataSource != null && !mDrainedContent) {
                 InputStream is = null;
@@ -207,6 +209,18 @@ public abstract class MimeHandler {
     }
     private boolean mDrainedContent = false;
     private static byte[] sDrainBuffer = new byte[4096];
+    private String content;
+    private AttachmentExtractor.Extraction pendingExtraction;
+
+    /**
+     * Starts extracting the text on the extraction pool, if the part qualifies for it, so that it overlaps with
+     * the analysis of other parts.  {@link #getContent()} picks up the result.
+     */
+    void prefetchContent() {
+        if (!DebugConfig.disableMimePartExtraction && content == null && pendingExtraction == null) {
+            pendingExtraction = AttachmentExtractor.submit(this);
+        }
+    }
 
     /**
      * Returns the content for this MIME part.  Length of content returned
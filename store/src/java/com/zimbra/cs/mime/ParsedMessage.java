@@ -58,7 +58,6 @@ import com.zimbra.common.calendar.ZCalendar.ZCalendarBuilder;
 import com.zimbra.common.calendar.ZCalendar.ZVCalendar;
 import com.zimbra.common.localconfig.DebugConfig;
 import com.zimbra.common.localconfig.LC;
-import com.zimbra.common.mime.ContentType;
 import com.zimbra.common.mime.MimeConstants;
 import com.zimbra.common.mime.shim.JavaMailInternetAddress;
 import com.zimbra.common.service.ServiceException;
@@ -114,6 +113,7 @@ public final class ParsedMessage {
     private boolean analyzedBodyParts = false;
     private boolean analyzedNonBodyParts = false;
     private String bodyContent = "";
+    private Set<MPartInfo> bodyParts;  // "body" (non-attachment) parts, found by analyzeBodyParts()
     private final List<String> filenames = new ArrayList<String>();
     private boolean indexAttachments;
     private int numParseErrors = 0;
@@ -327,7 +327,7 @@ public final class ParsedMessage {
      * @return the ParsedMessage itself
      * @throws ServiceException
      * @see #runMimeConverters() */
-    private ParsedMessage parse() {
+    private synchronized ParsedMessage parse() {
         if (parsed) {
             return this;
         }
@@ -376,7 +376,7 @@ public final class ParsedMessage {
      * Analyze and extract text from all the "body" (non-attachment) parts of the message.
      * This step is required to properly generate the message fragment.
      */
-    private void analyzeBodyParts() throws ServiceException {
+    private synchronized void analyzeBodyParts() throws ServiceException {
         if (analyzedBodyParts) {
             return;
         }
@@ -389,13 +389,13 @@ public final class ParsedMessage {
         parse();
 
         try {
-            Set<MPartInfo> mpiBodies = Mime.getBody(messageParts, false);
+            bodyParts = Mime.getBody(messageParts, false);
 
             // extract text from the "body" parts
             StringBuilder body = new StringBuilder();
             for (MPartInfo mpi : messageParts) {
-                if (mpiBodies.contains(mpi)) {
-                    String toplevelText = analyzePart(true, mpi);
+                if (bodyParts.contains(mpi)) {
+                    String toplevelText = analyzePart(true, mpi, null);
                     if (toplevelText.length() > 0) {
                         appendToContent(body, toplevelText);
                     }
@@ -418,7 +418,7 @@ public final class ParsedMessage {
     /**
      * Analyze and extract text from all attachments parts of the message
      */
-    private void analyzeNonBodyParts() throws ServiceException {
+    private synchronized void analyzeNonBodyParts() throws ServiceException {
         if (analyzedNonBodyParts) {
             return;
         }
@@ -431,15 +431,16 @@ public final class ParsedMessage {
         analyzeBodyParts();
 
         try {
-            Set<MPartInfo> mpiBodies = Mime.getBody(messageParts, false);
+            Set<MPartInfo> mpiBodies = bodyParts != null ? bodyParts : Mime.getBody(messageParts, false);
 
             // extract text from the "non-body" parts
+            Map<MPartInfo, MimeHandler> prefetched = prefetchAttachments(mpiBodies);
             StringBuilder fullContent = new StringBuilder(bodyContent);
             {
                 for (MPartInfo mpi : messageParts) {
                     boolean isMainBody = mpiBodies.contains(mpi);
                     if (!isMainBody) {
-                        String toplevelText = analyzePart(isMainBody, mpi);
+                        String toplevelText = analyzePart(isMainBody, mpi, prefetched.get(mpi));
                         if (toplevelText.length() > 0) {
                             appendToContent(fullContent, toplevelText);
                         }
@@ -1013,7 +1014,8 @@ public final class ParsedMessage {
         doc.addSubject(subject);
 
         // add subject and from to main content for better searching
-        StringBuilder contentPrepend = new StringBuilder(subject);
+        StringBuilder contentPrepend = new StringBuilder(subject.length() + fullContent.length() + 256);
+        contentPrepend.append(subject);
 
         // Bug 583: add all of the TOKENIZED versions of the email addresses to our CONTENT field...
         appendToContent(contentPrepend, StringUtil.join(" ", getFromTokenStream().getAllTokens()));
@@ -1026,7 +1028,8 @@ public final class ParsedMessage {
             appendToContent(contentPrepend, fn); // also add the non-tokenized form, so full-filename searches match
         }
 
-        String text = contentPrepend.toString() + " " + fullContent.toString();
+        // build the combined text in place; the full content can be large
+        String text = contentPrepend.append(' ').append(fullContent).toString();
         doc.addContent(text);
 
         try {
@@ -1094,39 +1097,74 @@ public final class ParsedMessage {
     }
 
     /**
-     * @return Extracted toplevel text (any text that should go into the toplevel indexed document)
+     * Starts text extraction of all indexable attachments on the extraction pool, so that a message with several
+     * attachments is converted in parallel.  {@link #analyzePart} then collects the results in part order.
+     *
+     * @return the initialized handlers by part
      */
-    private String analyzePart(boolean isMainBody, MPartInfo mpi) throws MessagingException, ServiceException {
+    private Map<MPartInfo, MimeHandler> prefetchAttachments(Set<MPartInfo> mpiBodies) {
+        if (!indexAttachments || !AttachmentExtractor.isParallel()) {
+            return Collections.emptyMap();
+        }
+        Map<MPartInfo, MimeHandler> handlers = new HashMap<MPartInfo, MimeHandler>();
+        for (MPartInfo mpi : messageParts) {
+            // calendar parts are parsed on this thread by analyzePart()
+            if (mpiBodies.contains(mpi) || mpi.isMultipart() ||
+                    MimeConstants.CT_TEXT_CALENDAR.equals(mpi.getContentType())) {
+                continue;
+            }
+            try {
+                MimeHandler handler = prepareHandler(mpi);
+                if (handler.isIndexingEnabled()) {
+                    handler.prefetchContent();
+                }
+                handlers.put(mpi, handler);
+            } catch (MimeHandlerException | MessagingException e) {
+                // analyzePart() runs into the same error and reports it
+            }
+        }
+        return handlers;
+    }
 
-        boolean ignoreCalendar;
-        if (calendarPartInfo == null) {
-            ignoreCalendar = isBouncedCalendar(mpi);
-        } else {
-            ignoreCalendar = true;
+    private MimeHandler prepareHandler(MPartInfo mpi) throws MimeHandlerException, MessagingException {
+        MimeHandler handler = MimeHandlerManager.getMimeHandler(mpi.getContentType(), mpi.getFilename());
+        assert(handler != null);
+        handler.setDefaultCharset(defaultCharset);
+
+        Mime.repairTransferEncoding(mpi.getMimePart());
+
+        if (handler.isIndexingEnabled()) {
+            handler.init(mpi.getMimePart().getDataHandler().getDataSource());
+            handler.setPartName(mpi.getPartName());
+            handler.setFilename(mpi.getFilename());
+            handler.setSize(mpi.getSize());
         }
-        String methodParam = (new ContentType(mpi.getMimePart().getContentType())).getParameter("method");
-        if (methodParam == null && !LC.calendar_allow_invite_without_method.booleanValue()) {
+        return handler;
+    }
+
+    /**
+     * @param prepared handler from {@link #prefetchAttachments}, or null
+     * @return Extracted toplevel text (any text that should go into the toplevel indexed document)
+     */
+    private String analyzePart(boolean isMainBody, MPartInfo mpi, MimeHandler prepared)
+    throws MessagingException, ServiceException {
+        String toRet = "";
+        // ignore multipart "container" parts
+        if (mpi.isMultipart()) {
+            return toRet;
+        }
+
+        // only look at the "method" parameter while we're still looking for a calendar
+        boolean ignoreCalendar = calendarPartInfo != null || isBouncedCalendar(mpi);
+        if (!ignoreCalendar && !LC.calendar_allow_invite_without_method.booleanValue() &&
+                mpi.getContentTypeParameter("method") == null) {
             ignoreCalendar = true;
         }
-        String toRet = "";
         try {
-            // ignore multipart "container" parts
-            if (mpi.isMultipart()) {
-                return toRet;
-            }
             String ctype = mpi.getContentType();
-            MimeHandler handler = MimeHandlerManager.getMimeHandler(ctype, mpi.getFilename());
-            assert(handler != null);
-            handler.setDefaultCharset(defaultCharset);
-
-            Mime.repairTransferEncoding(mpi.getMimePart());
+            MimeHandler handler = prepared != null ? prepared : prepareHandler(mpi);
 
             if (handler.isIndexingEnabled()) {
-                handler.init(mpi.getMimePart().getDataHandler().getDataSource());
-                handler.setPartName(mpi.getPartName());
-                handler.setFilename(mpi.getFilename());
-                handler.setSize(mpi.getSize());
-
                 // remember the first iCalendar attachment
                 if (!ignoreCalendar && calendarPartInfo == null) {
                     ZVCalendar cal = handler.getICalendar();
@@ -1375,7 +1413,7 @@ public final class ParsedMessage {
      * {@link Threader} is cached per mailbox as {@link ParsedMessage} is shared by multiple mailboxes in shared
      * delivery.
      */
-    public Threader getThreader(Mailbox mbox) throws ServiceException {
+    public synchronized Threader getThreader(Mailbox mbox) throws ServiceException {
         Threader threader = threaders.get(mbox);
         if (threader == null) {
             threader = new Threader(mbox, this);
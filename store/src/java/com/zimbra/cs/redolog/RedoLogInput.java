@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.io.RandomAccessFile;
 
 import com.zimbra.common.util.ByteUtil;
+import com.zimbra.cs.redolog.logger.BufferedFileInput;
 
 /**
  * This class is equivalent to java.io.DataInputStream except that readUTF()
@@ -46,6 +47,11 @@ public class RedoLogInput {
         mIN = raf;
     }
 
+    public RedoLogInput(BufferedFileInput in, String path) {
+        mPath = path;
+        mIN = in;
+    }
+
     /**
      * Returns the path to the redo log file, or <tt>null</tt> if this object
      * reads from an <tt>InputStream</tt>. 
@@ -63,6 +69,8 @@ public class RedoLogInput {
         if (mIN instanceof RandomAccessFile) {
             RandomAccessFile file = (RandomAccessFile) mIN;
             return file.getFilePointer();
+        } else if (mIN instanceof BufferedFileInput) {
+            return ((BufferedFileInput) mIN).getFilePointer();
         }
         return -1;
     }
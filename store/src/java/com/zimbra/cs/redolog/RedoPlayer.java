@@ -48,6 +48,9 @@ public class RedoPlayer {
 
     private static final int INITIAL_MAP_SIZE = 1000;
 
+    // don't report scan progress more often than this, so small logs stay quiet
+    private static final long PROGRESS_MIN_BYTES = 64 * 1024 * 1024;
+
     // Use a separate guard object to synchronize access to mOpsMap.
     // Don't synchronize on mOpsMap itself because it can get reassigned.
     private final Object mOpsMapGuard = new Object();
@@ -117,12 +120,22 @@ public class RedoPlayer {
         FileLogReader logReader = new FileLogReader(logfile, mWritable);
         logReader.open();
         long lastPosition = 0;
+        long fileSize = logReader.getSize();
+        long progressStep = Math.max(fileSize / 10, PROGRESS_MIN_BYTES);
+        long nextProgress = progressStep;
+        int numOps = 0;
 
         // Read all ops in redo log, discarding those with commit/abort entries.
         try {
             RedoableOp op = null;
             while ((op = logReader.getNextOp()) != null) {
                 lastPosition = logReader.position();
+                numOps++;
+                if (lastPosition >= nextProgress) {
+                    ZimbraLog.redolog.info("Scanned %d%% of %s (%d ops)",
+                            lastPosition * 100 / fileSize, logfile.getName(), numOps);
+                    nextProgress += progressStep;
+                }
 
                 // We can't break from the loop when op.getTimestamp() > endTime.  We could if ops in the file
                 // were sorted by timestamp, but they are not.  Ops are executed and get their timestamps in
@@ -0,0 +1,217 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+package com.zimbra.cs.redolog.logger;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-ahead {@link DataInput} over a {@link RandomAccessFile}.  Reading redo ops straight from a
+ * <tt>RandomAccessFile</tt> costs a system call for every <tt>readInt()</tt>/<tt>readByte()</tt>, which
+ * dominates the time to scan a large log.  This class reads the file in large chunks using positional
+ * reads on the file's channel, so it never moves the file pointer of the underlying
+ * <tt>RandomAccessFile</tt>; the logical position is tracked here and exposed through
+ * {@link #getFilePointer()} and {@link #seek(long)}.
+ */
+public class BufferedFileInput implements DataInput {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long bufferStart;   // file offset of buffer[0]
+    private long pos;           // logical file pointer
+
+    public BufferedFileInput(RandomAccessFile raf) {
+        this(raf, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BufferedFileInput(RandomAccessFile raf, int bufferSize) {
+        channel = raf.getChannel();
+        buffer = ByteBuffer.allocate(bufferSize);
+        buffer.limit(0);
+    }
+
+    public long getFilePointer() {
+        return pos;
+    }
+
+    /**
+     * Moves the logical file pointer.  Buffered data is kept if it still covers the new position.
+     */
+    public void seek(long newPos) {
+        pos = newPos;
+    }
+
+    /**
+     * Discards buffered data, e.g. after the file has been truncated or rewritten.
+     */
+    public void invalidate() {
+        buffer.limit(0);
+        bufferStart = pos;
+    }
+
+    /**
+     * Makes at least one byte at the current position available in the buffer.
+     *
+     * @return false if the position is at or past end of file
+     */
+    private boolean fill() throws IOException {
+        if (pos >= bufferStart && pos < bufferStart + buffer.limit()) {
+            buffer.position((int) (pos - bufferStart));
+            return true;
+        }
+        buffer.clear();
+        bufferStart = pos;
+        int read = 0;
+        while (read == 0) {
+            read = channel.read(buffer, bufferStart + buffer.position());
+        }
+        buffer.flip();
+        return read > 0;
+    }
+
+    private byte nextByte() throws IOException {
+        if (!fill()) {
+            throw new EOFException();
+        }
+        byte b = buffer.get();
+        pos++;
+        return b;
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!fill()) {
+                throw new EOFException();
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long skip = Math.min(n, Math.max(channel.size() - pos, 0));
+        pos += skip;
+        return (int) skip;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return nextByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        return nextByte();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return nextByte() & 0xff;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        return (short) readUnsignedShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        int ch1 = readUnsignedByte();
+        int ch2 = readUnsignedByte();
+        return (ch1 << 8) + ch2;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return (char) readUnsignedShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        int ch1 = readUnsignedByte();
+        int ch2 = readUnsignedByte();
+        int ch3 = readUnsignedByte();
+        int ch4 = readUnsignedByte();
+        return (ch1 << 24) + (ch2 << 16) + (ch3 << 8) + ch4;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        return ((long) readInt() << 32) + (readInt() & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Reads a line the way <tt>RandomAccessFile.readLine()</tt> does: bytes are taken as Latin-1 characters up to
+     * <tt>'\n'</tt>, <tt>'\r'</tt> or <tt>"\r\n"</tt>, which is not part of the line.
+     *
+     * @return the line, or null at end of file
+     */
+    @Override
+    public String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        boolean eol = false;
+        while (!eol && fill()) {
+            int c = nextByte() & 0xff;
+            if (c == '\n') {
+                eol = true;
+            } else if (c == '\r') {
+                eol = true;
+                if (fill() && buffer.get(buffer.position()) == '\n') {
+                    nextByte();
+                }
+            } else {
+                sb.append((char) c);
+            }
+        }
+        return eol || sb.length() > 0 ? sb.toString() : null;
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+}
@@ -45,6 +45,7 @@ public class FileLogReader {
 
     private File mFile;
     private RandomAccessFile mRAF;
+    private BufferedFileInput mBufIn;
     private RedoLogInput mIN;
     private boolean mReadOnly;
     private long mFileSizeAtOpen;
@@ -65,10 +66,13 @@ public class FileLogReader {
     public synchronized void open() throws IOException {
         try {
             mRAF = new RandomAccessFile(mFile, mReadOnly ? "r" : "rw");
-            mIN = new RedoLogInput(mRAF, mFile.getPath());
             mHeader.read(mRAF);
             mHeaderRead = true;
             mFileSizeAtOpen = mRAF.length();
+            // Ops are read through a read-ahead buffer; mRAF's own file pointer is only used for header I/O.
+            mBufIn = new BufferedFileInput(mRAF);
+            mBufIn.seek(mRAF.getFilePointer());
+            mIN = new RedoLogInput(mBufIn, mFile.getPath());
         } catch (IOException e) {
             throw new IOException("Error opening " + mFile.getAbsolutePath(), e);
         }
@@ -95,7 +99,7 @@ public class FileLogReader {
         if (mRAF == null) {
           throw new IOException(mFile.getAbsolutePath() + " not open.");
         }
-        long pos = mRAF.getFilePointer();
+        long pos = mBufIn.getFilePointer();
         if (pos == mFileSizeAtOpen) {
             // EOF reached.
             return null;
@@ -129,7 +133,9 @@ public class FileLogReader {
             mRAF.seek(currPos + 1);
             if (searchInRAF(RedoableOp.REDO_MAGIC.getBytes()))  {
                 currPos = mRAF.getFilePointer();
+                mBufIn.seek(currPos);
             } else {
+                mBufIn.seek(mRAF.getFilePointer());
                 String msg = String.format(
                         "Found %d junk bytes from offset 0x%08x to end of file, in redolog %s",
                         mFileSizeAtOpen - pos, pos, mFile.getAbsolutePath());
@@ -143,7 +149,7 @@ public class FileLogReader {
     }
 
     public synchronized long position() throws IOException {
-        return mRAF.getFilePointer();
+        return mBufIn.getFilePointer();
     }
 
     public synchronized long getLastOpStartOffset() throws IOException {
@@ -163,6 +169,8 @@ public class FileLogReader {
             hdr.setFileSize(size);
             hdr.write(mRAF);
             mRAF.seek(size);
+            mBufIn.seek(size);
+            mBufIn.invalidate();
         }
     }
 
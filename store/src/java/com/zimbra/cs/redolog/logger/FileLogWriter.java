@@ -35,6 +35,7 @@ import com.zimbra.cs.redolog.RedoLogManager;
 import com.zimbra.cs.redolog.RolloverManager;
 import com.zimbra.cs.redolog.op.CommitTxn;
 import com.zimbra.cs.redolog.op.RedoableOp;
+import com.zimbra.cs.stats.ZimbraPerf;
 import com.zimbra.cs.util.Zimbra;
 
 import java.io.File;
@@ -91,9 +92,17 @@ public class FileLogWriter implements LogWriter {
     private int mFsyncSeq;          // last item fsynced
 
     // for gathering some stats; nonessential for functionality
-    private int mLogCount;          // how many times log was called
+    private long mLogCount;         // how many times log was called; long, since it also orders fsyncs
     private int mFsyncCount;        // how many times fsync was called
 
+    // Value of mLogCount as of the last completed fsync.  Unlike mFsyncSeq it is not reset by open(),
+    // so a committer waiting across a rollover is not confused by the sequence restarting at 0.
+    // Written with mLock held; read without it by threads waiting on mFsyncCond.
+    private volatile long mSyncedCount;
+
+    // Reused by log() with mLock held, to avoid allocating a buffer per op.
+    private final byte[] mWriteBuf = new byte[8192];
+
     private CommitNotifyQueue mCommitNotifyQueue;
 
     public FileLogWriter(RedoLogManager redoLogMgr,
@@ -109,7 +118,8 @@ public class FileLogWriter implements LogWriter {
         mFsyncIntervalMS = fsyncIntervalMS;
         mFsyncDisabled = DebugConfig.disableRedoLogFsync;
 
-        mFsyncCount = mLogCount = 0;
+        mFsyncCount = 0;
+        mLogCount = 0;
 
         mCommitNotifyQueue = new CommitNotifyQueue(100);
     }
@@ -237,9 +247,14 @@ public class FileLogWriter implements LogWriter {
                 mRAF.getChannel().force(true);
                 mRAF.close();
                 mRAF = null;
+                mSyncedCount = mLogCount;
             } else
                 return;
         }
+        // Everything logged so far is on disk; release any committers still waiting for the fsync thread.
+        synchronized (mFsyncCond) {
+            mFsyncCond.notifyAll();
+        }
 
         // Write some stats, so we can see how many times we were able to avoid calling fsync.
         if (!mNoStat && mLogCount > 0 && ZimbraLog.redolog.isDebugEnabled())
@@ -270,7 +285,7 @@ public class FileLogWriter implements LogWriter {
      * thread.
      */
     @Override public void log(RedoableOp op, InputStream data, boolean synchronous) throws IOException {
-        int seq;
+        long logCount;
         boolean sameMboxAsLastOp = false;
 
         synchronized (mLock) {
@@ -291,11 +306,10 @@ public class FileLogWriter implements LogWriter {
 
             mLogSeq++;
             mLogCount++;
-            seq = mLogSeq;
+            logCount = mLogCount;
             int numRead;
-            byte[] buf = new byte[1024];
-            while ((numRead = data.read(buf)) >= 0) {
-                mRAF.write(buf, 0, numRead);
+            while ((numRead = data.read(mWriteBuf)) >= 0) {
+                mRAF.write(mWriteBuf, 0, numRead);
                 mFileSize += numRead;
             }
             data.close();
@@ -325,21 +339,13 @@ public class FileLogWriter implements LogWriter {
         if (!synchronous)
             return;
 
+        long start = ZimbraPerf.STOPWATCH_REDO_COMMIT_WAIT.start();
         if (mFsyncIntervalMS > 0) {
             if (!sameMboxAsLastOp) {
                 // case 2
-                try {
-                    // wait for fsync thread to write this entry to disk
-                    synchronized (mFsyncCond) {
-                        mFsyncCond.wait(10000);
-                    }
-                } catch (InterruptedException e) {
-                    ZimbraLog.redolog.info("Thread interrupted during fsync");
-                }
-                synchronized (mLock) {
+                if (!waitForFsync(logCount, 10000)) {
                     // timed out, so fsync in this thread
-                    if (seq > mFsyncSeq)
-                        fsync();
+                    fsync();
                 }
             } else {
                 // If this op is on same mailbox as last op, let's assume there's a thread issuing
@@ -352,6 +358,33 @@ public class FileLogWriter implements LogWriter {
             // case 3
             fsync();
         }
+        ZimbraPerf.STOPWATCH_REDO_COMMIT_WAIT.stop(start);
+    }
+
+    /**
+     * Waits until the fsync thread has synced at least {@code logCount} items.  Waiting on the condition alone
+     * is not enough: the fsync thread may have already synced our item (and notified) before we got here, in
+     * which case the next notification could be a long time coming.
+     *
+     * @return true if the item is on disk, false if we timed out or were interrupted
+     */
+    private boolean waitForFsync(long logCount, long timeoutMS) {
+        long deadline = System.currentTimeMillis() + timeoutMS;
+        synchronized (mFsyncCond) {
+            while (mSyncedCount < logCount) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    mFsyncCond.wait(remaining);
+                } catch (InterruptedException e) {
+                    ZimbraLog.redolog.info("Thread interrupted during fsync");
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     private int mLastOpMboxId;
@@ -453,12 +486,14 @@ public class FileLogWriter implements LogWriter {
     private void fsync() throws IOException {
         boolean fsyncNeeded = false;
         int seq = 0;
+        long logCount = 0;
         synchronized (mLock) {
             if (mFsyncSeq < mLogSeq) {
                 if (mRAF == null)
                     throw new IOException("Redolog file closed");
                 fsyncNeeded = true;
                 seq = mLogSeq;
+                logCount = mLogCount;
                 if (!mFsyncDisabled)
                     mFsyncCount++;
             }
@@ -466,15 +501,21 @@ public class FileLogWriter implements LogWriter {
         if (fsyncNeeded) {
             if (!mFsyncDisabled) {
                 synchronized (mLock) {
-                    if (mRAF != null)
-                        mRAF.getChannel().force(false);
-                    else
+                    if (mRAF != null) {
+                        long start = ZimbraPerf.STOPWATCH_REDO_FSYNC.start();
+                        force();
+                        ZimbraPerf.STOPWATCH_REDO_FSYNC.stop(start);
+                        // number of items made durable by this fsync
+                        ZimbraPerf.COUNTER_REDO_FSYNC_BATCH.increment(seq - mFsyncSeq);
+                    } else
                         throw new IOException("Redolog file closed");
                     mCommitNotifyQueue.flush(false);
                 }
             }
             synchronized (mLock) {
                 mFsyncSeq = seq;
+                if (logCount > mSyncedCount)
+                    mSyncedCount = logCount;
             }
             if (mFsyncIntervalMS > 0) {
                 synchronized (mFsyncCond) {
@@ -484,6 +525,11 @@ public class FileLogWriter implements LogWriter {
         }
     }
 
+    // Forces logged data to disk.  Called with mLock held; tests override it to hold up the fsync.
+    void force() throws IOException {
+        mRAF.getChannel().force(false);
+    }
+
 
     // Thread that calls fsync() periodically.  Threads that call log()
     // will write the log entry and wait for this thread to signal them
@@ -19,10 +19,17 @@ package com.zimbra.cs.server;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.file.DefaultFileRegion;
+import org.apache.mina.core.filterchain.IoFilter;
+import org.apache.mina.core.filterchain.IoFilterChain;
+import org.apache.mina.core.future.IoFutureListener;
 import org.apache.mina.core.future.WriteFuture;
 import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolCodecFilter;
+import org.apache.mina.filter.executor.ExecutorFilter;
 
 import com.google.common.base.Charsets;
 import com.zimbra.common.util.ZimbraLog;
@@ -45,10 +52,11 @@ public final class NioOutputStream extends OutputStream {
         if ((off | len | (b.length - (len + off)) | (off + len)) < 0) {
             throw new IndexOutOfBoundsException();
         }
-        // If the request is larger than the capacity, flush the buffer and write it directly.
+        // If the request is larger than the capacity, flush the buffer and write it directly. The caller may reuse
+        // the array as soon as we return while the session writes asynchronously, so the bytes must be copied.
         if (len > buf.capacity()) {
             flush();
-            writeToSession(IoBuffer.wrap(b, off, len));
+            writeToSession(IoBuffer.allocate(len).put(b, off, len).flip());
         } else {
             if (len > buf.remaining()) { // If not enough space left, flush the buffer first.
                 flush();
@@ -88,7 +96,69 @@ public final class NioOutputStream extends OutputStream {
         }
     }
 
-    private synchronized void writeToSession(Object output) throws IOException {
+    /**
+     * Writes {@code length} bytes of the file starting at {@code position}, then closes the channel.
+     * <p>
+     * If no filter in the session's chain transforms outgoing bytes, the file is handed to MINA as a file region so
+     * that the kernel sends it straight from the page cache ({@link FileChannel#transferTo}) without copying it
+     * through the heap; the channel is closed once that write completes. Otherwise (TLS, SASL security layer, custom
+     * filters) the file is read into session buffers chunk by chunk.
+     */
+    public synchronized void write(final FileChannel channel, long position, long length) throws IOException {
+        flush();
+        if (canWriteFileRegion()) {
+            WriteFuture future;
+            try {
+                future = writeToSession(new DefaultFileRegion(channel, position, length));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            future.addListener(new IoFutureListener<WriteFuture>() {
+                @Override
+                public void operationComplete(WriteFuture f) {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        ZimbraLog.nio.debug("error closing file channel after write", e);
+                    }
+                }
+            });
+            return;
+        }
+        try {
+            long end = position + length;
+            while (position < end) {
+                IoBuffer chunk = IoBuffer.allocate((int) Math.min(buf.capacity(), end - position));
+                while (chunk.hasRemaining()) {
+                    int read = channel.read(chunk.buf(), position);
+                    if (read < 0) {
+                        throw new IOException("unexpected end of file at offset " + position);
+                    }
+                    position += read;
+                }
+                writeToSession(chunk.flip());
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns true if every filter in the session's chain passes file regions through untouched.
+     */
+    private boolean canWriteFileRegion() {
+        for (IoFilterChain.Entry entry : session.getFilterChain().getAll()) {
+            IoFilter filter = entry.getFilter();
+            if (!(filter instanceof ExecutorFilter || filter instanceof NioLoggingFilter ||
+                    filter instanceof ProtocolCodecFilter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized WriteFuture writeToSession(Object output) throws IOException {
         long writeBytes = session.getScheduledWriteBytes();
         WriteFuture future = session.write(output);
         if (writeBytes > maxScheduledBytes) {
@@ -107,6 +177,7 @@ public final class NioOutputStream extends OutputStream {
                 ZimbraLog.nio.debug("now have %d scheduled bytes, %d messages; %d written bytes %d messages", session.getScheduledWriteBytes(), session.getScheduledWriteMessages(), session.getWrittenBytes(), session.getWrittenMessages());
             }
         }
+        return future;
     }
 
     @Override
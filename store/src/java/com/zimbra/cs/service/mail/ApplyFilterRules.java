@@ -40,12 +40,17 @@ import org.dom4j.QName;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 public class ApplyFilterRules extends MailDocumentHandler {
 
+    /** Number of messages looked up together before their rules are applied. */
+    private static final int PREFETCH_SIZE = 100;
+
     @Override
     public Element handle(Element request, Map<String, Object> context) throws ServiceException {
         ZimbraSoapContext zsc = getZimbraSoapContext(context);
@@ -138,6 +143,7 @@ public class ApplyFilterRules extends MailDocumentHandler {
         long sleepInterval = account.getFilterSleepInterval();
 
         // Apply filter rules.
+        Set<Integer> existing = new HashSet<Integer>();
         for (int i = 0; i < messageIds.size(); i++) {
             if (i > 0 && sleepInterval > 0) {
                 try {
@@ -146,9 +152,22 @@ public class ApplyFilterRules extends MailDocumentHandler {
                 }
             }
 
+            if (i % PREFETCH_SIZE == 0) {
+                // load the next messages in one query instead of one query per message
+                existing.clear();
+                List<Integer> batch = messageIds.subList(i, Math.min(i + PREFETCH_SIZE, messageIds.size()));
+                for (MailItem item : mbox.getItemsById(octxt, batch, MailItem.Type.MESSAGE)) {
+                    existing.add(item.getId());
+                }
+            }
+
             int id = messageIds.get(i);
             try {
-                mbox.getMessageById(octxt, id);
+                if (!existing.contains(id)) {
+                    // missing from the batch: look it up alone so that a deleted message (bug 41609)
+                    // and one the caller may not access are reported as such
+                    mbox.getMessageById(octxt, id);
+                }
                 if (RuleManager.applyRulesToExistingMessage(octxt, mbox, id, node)) {
                     affectedIds.add(id);
                 }
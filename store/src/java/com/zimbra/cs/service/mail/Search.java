@@ -41,6 +41,7 @@ import com.zimbra.cs.account.Account;
 import com.zimbra.cs.account.AuthToken;
 import com.zimbra.cs.account.Provisioning;
 import com.zimbra.cs.account.Server;
+import com.zimbra.cs.index.ConversationHit;
 import com.zimbra.cs.index.MessageHit;
 import com.zimbra.cs.index.QueryInfo;
 import com.zimbra.cs.index.ResultsPager;
@@ -63,6 +64,7 @@ import com.zimbra.cs.mailbox.calendar.cache.CalendarData;
 import com.zimbra.cs.mailbox.calendar.cache.CalendarItemData;
 import com.zimbra.cs.service.util.ItemId;
 import com.zimbra.cs.service.util.ItemIdFormatter;
+import com.zimbra.cs.store.StoreManager;
 import com.zimbra.cs.util.AccountUtil;
 import com.zimbra.soap.ZimbraSoapContext;
 import com.zimbra.soap.mail.message.SearchRequest;
@@ -114,7 +116,7 @@ public class Search extends MailDocumentHandler  {
             // must use results.getSortBy() because the results might have ignored our sortBy
             // request and used something else...
             response.addAttribute(MailConstants.A_SORTBY, results.getSortBy().toString());
-            putHits(zsc, octxt, response, results, params, memberOfMap);
+            putHits(zsc, octxt, mbox, response, results, params, memberOfMap);
         } catch (IOException e) {
         } 
         return response;
@@ -130,8 +132,9 @@ public class Search extends MailDocumentHandler  {
         }
     }
 
-    private void putHits(ZimbraSoapContext zsc, OperationContext octxt, Element el, ZimbraQueryResults results,
-            SearchParams params, Map<String,Set<String>> memberOfMap) throws ServiceException {
+    private void putHits(ZimbraSoapContext zsc, OperationContext octxt, Mailbox mbox, Element el,
+            ZimbraQueryResults results, SearchParams params, Map<String,Set<String>> memberOfMap)
+            throws ServiceException {
 
         if (params.getInlineRule() == ExpandResults.HITS ||
             params.getInlineRule() == ExpandResults.FIRST_MSG ||
@@ -162,6 +165,9 @@ public class Search extends MailDocumentHandler  {
         boolean expand;
         ExpandResults expandValue = params.getInlineRule();
         int hitNum = 0;
+        // the client is likely to open one of the first few messages next
+        int prefetchMax = LC.external_store_prefetch_search_hits.intValue();
+        List<Integer> prefetch = new ArrayList<Integer>(Math.max(prefetchMax, 0));
         while (pager.hasNext() && resp.size() < params.getLimit()) {
             hitNum ++;
             ZimbraHit hit = pager.getNextHit();
@@ -183,12 +189,25 @@ public class Search extends MailDocumentHandler  {
                     expand = expandValue.matches(hit.getParsedItemID());
                 }
                 resp.add(hit, expand);
+                if (!expand && prefetch.size() < prefetchMax) {
+                    prefetch.add(hit.getItemId());
+                }
             } else {
                 resp.add(hit);
+                // a conversation has no blob of its own; prefetch the message that matched instead
+                if (hit instanceof ConversationHit && prefetch.size() < prefetchMax) {
+                    MessageHit msgHit = ((ConversationHit) hit).getFirstMessageHit();
+                    if (msgHit != null) {
+                        prefetch.add(msgHit.getItemId());
+                    }
+                }
             }
         }
         resp.addHasMore(pager.hasNext());
         resp.add(results.getResultInfo());
+        if (!prefetch.isEmpty()) {
+            StoreManager.getInstance().prefetch(mbox, prefetch);
+        }
     }
     // Calendar summary cache stuff
 
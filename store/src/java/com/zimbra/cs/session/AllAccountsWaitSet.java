@@ -20,11 +20,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.Pair;
@@ -48,8 +48,18 @@ public final class AllAccountsWaitSet extends WaitSetBase {
     private static Map<AllAccountsWaitSet, String> sAllAccountsWaitSets = new ConcurrentHashMap<AllAccountsWaitSet, String>();
     private static volatile Set<MailItem.Type> interestTypes = EnumSet.noneOf(MailItem.Type.class);
 
-    /** If non-null, then we're buffering the commits during creation */
-    private List<Pair<String/*AccountId*/, String/*CommitId*/>> mBufferedCommits;
+    /**
+     * Accounts signalled by commits that have not been moved to mCurrentSignalledAccounts yet, with the id of their
+     * most recent commit.  Commit callbacks only add to this map; they take the wait set lock only when there is a
+     * callback waiting for the data, so commits across all accounts are not serialized on one busy wait set.
+     */
+    private final ConcurrentHashMap<String/*AccountId*/, String/*CommitId*/> mPendingCommits =
+            new ConcurrentHashMap<String, String>();
+    private volatile String mPendingSeqNo; // commitId of the most recent commit added to mPendingCommits
+    private final AtomicLong mPendingSince = new AtomicLong();
+
+    /** If true, then we're buffering the commits during creation */
+    private volatile boolean mBuffering;
 
     private String mCbSeqNo; // seqno returned by the most recent callback
     private String mCurrentSeqNo;
@@ -105,11 +115,7 @@ public final class AllAccountsWaitSet extends WaitSetBase {
         super(ownerAccountId, id, defaultInterest);
         mCurrentSeqNo = "0";
         mCbSeqNo = "0";
-        if (bufferCommitsAtCreate) {
-            mBufferedCommits = new LinkedList<Pair<String,String>>();
-        } else {
-            mBufferedCommits = null;
-        }
+        mBuffering = bufferCommitsAtCreate;
 
         // add us to the global set of AllAccounts waitsets, update the global interest mask
         synchronized(sAllAccountsWaitSets) {
@@ -143,24 +149,52 @@ public final class AllAccountsWaitSet extends WaitSetBase {
         // figure out if there is already data here
         mCb = cb;
         mCbSeqNo = lastKnownSeqNo;
+        drainPendingCommits();
         trySendData();
 
         return new ArrayList<WaitSetError>();
     }
 
-    private synchronized void onMailboxChangeCommitted(String commitIdStr, String accountId,
-            Set<MailItem.Type> changedTypes) {
+    private void onMailboxChangeCommitted(String commitIdStr, String accountId, Set<MailItem.Type> changedTypes) {
         if (!Collections.disjoint(changedTypes, defaultInterest)) {
-            if (mBufferedCommits != null) {
-                mBufferedCommits.add(new Pair<String/*acctId*/, String/*commitId*/>(accountId, commitIdStr));
-            } else {
-                mNextSeqNo = commitIdStr;
-                mCurrentSignalledAccounts.add(accountId);
-                trySendData();
+            // the account must be visible before the seqno that covers it, see drainPendingCommits()
+            mPendingCommits.put(accountId, commitIdStr);
+            mPendingSeqNo = commitIdStr;
+            mPendingSince.compareAndSet(0, System.currentTimeMillis());
+            // mCb is written before doWait() drains, so either we see the callback or it sees our commit
+            if (mCb != null && !mBuffering) {
+                synchronized(this) {
+                    drainPendingCommits();
+                    trySendData();
+                }
             }
         }
     }
 
+    /**
+     * Moves the accounts signalled by commits into mCurrentSignalledAccounts, unless we are still buffering.
+     * <p>
+     * The seqno is read before the accounts, so every account committed up to that seqno is picked up now or
+     * has been picked up before.  An account committed after it may be picked up too; it is then sent with an
+     * older seqno than its commit, which only makes a client that resyncs from that seqno see it again.
+     */
+    private synchronized void drainPendingCommits() {
+        String seqNo = mPendingSeqNo;
+        if (mBuffering || seqNo == null) {
+            return;
+        }
+        long since = mPendingSince.getAndSet(0);
+        for (Map.Entry<String, String> entry : mPendingCommits.entrySet()) {
+            mCurrentSignalledAccounts.add(entry.getKey());
+            // leaves the entry alone if the account has been committed again meanwhile
+            mPendingCommits.remove(entry.getKey(), entry.getValue());
+        }
+        mNextSeqNo = seqNo;
+        if (since > 0 && !mCurrentSignalledAccounts.isEmpty()) {
+            markSignalled(since);
+        }
+    }
+
     /**
      * Given a CommitId, bring this waitset into sync using the RedoLog system
      *
@@ -169,7 +203,7 @@ public final class AllAccountsWaitSet extends WaitSetBase {
      * @throws IOException
      */
     private void syncToCommitId(String commitIdStr) throws ServiceException, IOException {
-        assert(mBufferedCommits != null);
+        assert(mBuffering);
         assert(!Thread.holdsLock(this));
 
         //
@@ -208,13 +242,9 @@ public final class AllAccountsWaitSet extends WaitSetBase {
         // Step two, process any buffered changes that have happened since we were created
         //
         synchronized(this) {
-            for (Pair<String/*acctid*/,String/*commitId*/> p : mBufferedCommits) {
-                mCurrentSignalledAccounts.add(p.getFirst());
-                mNextSeqNo = p.getSecond();
-            }
-
             // no more buffering!
-            mBufferedCommits = null;
+            mBuffering = false;
+            drainPendingCommits();
 
             if (mCurrentSignalledAccounts.size() > 0) {
                 trySendData();
@@ -256,6 +286,7 @@ public final class AllAccountsWaitSet extends WaitSetBase {
             }
             interestTypes = types;
         }
+        mPendingCommits.clear();
         mCurrentSignalledSessions.clear();
         mSentSignalledSessions.clear();
         mSentSignalledAccounts.clear();
@@ -265,14 +296,15 @@ public final class AllAccountsWaitSet extends WaitSetBase {
 
     @Override
     public synchronized WaitSetInfo handleQuery() {
+        drainPendingCommits();
         WaitSetInfo info = super.handleQuery();
         info.setCbSeqNo(mCbSeqNo);
         info.setCurrentSeqNo(mCurrentSeqNo);
         info.setNextSeqNo(mNextSeqNo);
 
-        if (mBufferedCommits != null) {
-            for (Pair<String, String> p : mBufferedCommits) {
-                info.addBufferedCommit(new BufferedCommitInfo(p.getFirst(), p.getSecond()));
+        if (mBuffering) {
+            for (Map.Entry<String, String> entry : mPendingCommits.entrySet()) {
+                info.addBufferedCommit(new BufferedCommitInfo(entry.getKey(), entry.getValue()));
             }
         }
         return info;
@@ -398,6 +398,13 @@ public class SoapSession extends Session {
         RemoteNotifications mRemoteChanges;
         boolean mHasLocalChanges;
 
+        /** the serialized <notify> block, reused if the block has to be sent again */
+        Element mRendered;
+        String mRenderedKey;
+        /** the render key of the block's first serialization; a copy is only kept once the block is resent */
+        String mSentKey;
+        int mGeneration;
+
         /** used by the Session object to ensure that notifications are reliably
          *  received by the listener */
         private final int mSequence;
@@ -450,6 +457,10 @@ public class SoapSession extends Session {
         void clearMailboxChanges() {
             mMailboxChanges = null;
             mRemoteChanges = null;
+            mRendered = null;
+            mRenderedKey = null;
+            mSentKey = null;
+            mGeneration++;
             // note that mHasLocalChanges does *not* get reset when we trigger a <refresh> condition...
         }
     }
@@ -1411,15 +1422,66 @@ public class SoapSession extends Session {
 
         // send all the old changes
         QueuedNotifications last = notifications.getLast();
+        String renderKey = getRenderKey(ctxt, zsc);
         for (QueuedNotifications ntfn : notifications) {
             if (ntfn.hasNotifications() || ntfn == last) {
-                putQueuedNotifications(mbox, ntfn, ctxt, zsc);
+                putQueuedNotificationsOnce(mbox, ntfn, ctxt, zsc, renderKey);
             }
         }
 
         return ctxt;
     }
 
+    /** Everything other than the notifications themselves that a rendered <notify> block depends on. */
+    private static String getRenderKey(Element ctxt, ZimbraSoapContext zsc) {
+        return ctxt.getClass().getName() + ':' + zsc.getNotificationFormat() + ':' +
+                zsc.getRequestedAccountId() + ':' + zsc.wantsUnqualifiedIds();
+    }
+
+    /** Serializes a queued notification block, or copies it if it has been serialized for an earlier response
+     *  that the client has not acknowledged.  A client that keeps missing its acknowledgements gets the same
+     *  blocks resent on every request, and serializing them through ToXML each time is the expensive part.
+     *  Most clients acknowledge every block, so a copy is only kept from the first resend on. */
+    void putQueuedNotificationsOnce(Mailbox mbox, QueuedNotifications ntfn, Element ctxt,
+            ZimbraSoapContext zsc, String renderKey) {
+        Element rendered;
+        boolean resend;
+        int generation;
+        synchronized (sentChanges) {
+            rendered = renderKey.equals(ntfn.mRenderedKey) ? ntfn.mRendered : null;
+            resend = renderKey.equals(ntfn.mSentKey);
+            generation = ntfn.mGeneration;
+        }
+        if (rendered != null) {
+            ctxt.addNonUniqueElement(rendered.clone().detach());
+            return;
+        }
+
+        if (!putQueuedNotifications(mbox, ntfn, ctxt, zsc)) {
+            return;
+        }
+        if (!resend) {
+            synchronized (sentChanges) {
+                if (ntfn.mGeneration == generation) {
+                    ntfn.mSentKey = renderKey;
+                }
+            }
+            return;
+        }
+        List<Element> eNotifies = ctxt.listElements(ZimbraNamespace.E_NOTIFY);
+        if (eNotifies.isEmpty()) {
+            return;
+        }
+        rendered = eNotifies.get(eNotifies.size() - 1).clone().detach();
+        synchronized (sentChanges) {
+            // the block may have been cleared for a <refresh> while we were serializing it
+            if (ntfn.mGeneration == generation) {
+                ntfn.mRendered = rendered;
+                ntfn.mRenderedKey = renderKey;
+            }
+        }
+    }
+
     /** Size limit beyond which we suppress notifications on conversations
      *  belonging to other people's mailboxes.  We need to fetch the entire
      *  list of visible messages when serializing delegated conversations.
@@ -1434,8 +1496,9 @@ public class SoapSession extends Session {
     }
 
     /** Write a single instance of the PendingLocalModifications structure into the
-     *  passed-in <ctxt> block. */
-    protected void putQueuedNotifications(Mailbox mbox, QueuedNotifications ntfn, Element parent, ZimbraSoapContext zsc) {
+     *  passed-in <ctxt> block.
+     * @return false if an item could not be serialized and the <notify> block is incomplete */
+    protected boolean putQueuedNotifications(Mailbox mbox, QueuedNotifications ntfn, Element parent, ZimbraSoapContext zsc) {
         // create the base "notify" block:  <notify seq="6"/>
         Element eNotify = parent.addNonUniqueElement(ZimbraNamespace.E_NOTIFY);
         if (ntfn.getSequence() > 0) {
@@ -1446,7 +1509,7 @@ public class SoapSession extends Session {
             octxt = DocumentHandler.getOperationContext(zsc, this);
         } catch (ServiceException e) {
             ZimbraLog.session.warn("error fetching operation context for: " + zsc.getAuthtokenAccountId(), e);
-            return;
+            return false;
         }
 
         boolean debug = ZimbraLog.session.isDebugEnabled();
@@ -1496,7 +1559,7 @@ public class SoapSession extends Session {
                             }
                         } catch (ServiceException e) {
                             ZimbraLog.session.warn("error encoding item " + mi.getId(), e);
-                            return;
+                            return false;
                         }
                     }
                 }
@@ -1538,7 +1601,7 @@ public class SoapSession extends Session {
                             }
                         } catch (ServiceException e) {
                             ZimbraLog.session.warn("error encoding item " + item.getId(), e);
-                            return;
+                            return false;
                         }
                     } else if (chg.why != 0 && chg.what instanceof Mailbox) {
                         ToXML.encodeMailbox(eModified, octxt, (Mailbox) chg.what, chg.why);
@@ -1580,6 +1643,7 @@ public class SoapSession extends Session {
         } else {
             eDeleted.addAttribute(A_ID, deletedIds.toString());
         }
+        return true;
     }
 
     /*
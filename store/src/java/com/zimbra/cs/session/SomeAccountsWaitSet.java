@@ -22,6 +22,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.ZimbraLog;
@@ -47,8 +48,12 @@ public final class SomeAccountsWaitSet extends WaitSetBase implements MailboxMan
     private long mCbSeqNo = 0; // seqno passed in by the current waiting callback
     private long mCurrentSeqNo; // current sequence number
 
-    /** these are the accounts we are listening to.  Stores EITHER a WaitSetSession or an AccountID  */
-    private HashMap<String, WaitSetAccount> mSessions = new HashMap<String, WaitSetAccount>();
+    /**
+     * these are the accounts we are listening to.  Stores EITHER a WaitSetSession or an AccountID.  Modified only
+     * under the wait set lock, but concurrent so that mailbox and session callbacks for accounts we are not
+     * listening to can return without taking the lock.
+     */
+    private final ConcurrentHashMap<String, WaitSetAccount> mSessions = new ConcurrentHashMap<String, WaitSetAccount>();
 
     /** Constructor */
     SomeAccountsWaitSet(String ownerAccountId, String id, Set<MailItem.Type> defaultInterest) {
@@ -113,24 +118,35 @@ public final class SomeAccountsWaitSet extends WaitSetBase implements MailboxMan
     }
 
     @Override
-    public synchronized void mailboxLoaded(Mailbox mbox) {
-        WaitSetAccount wsa = mSessions.get(mbox.getAccountId());
-        if (wsa != null) {
-            // create a new session...
-            WaitSetError error = initializeWaitSetSession(wsa, mbox);
-            if (error != null) {
-                mSessions.remove(wsa.getAccountId());
-                signalError(error);
+    public void mailboxLoaded(Mailbox mbox) {
+        // every wait set hears about every mailbox that is loaded
+        if (!mSessions.containsKey(mbox.getAccountId())) {
+            return;
+        }
+        synchronized(this) {
+            WaitSetAccount wsa = mSessions.get(mbox.getAccountId());
+            if (wsa != null) {
+                // create a new session...
+                WaitSetError error = initializeWaitSetSession(wsa, mbox);
+                if (error != null) {
+                    mSessions.remove(wsa.getAccountId());
+                    signalError(error);
+                }
             }
         }
     }
 
     @Override
-    public synchronized void mailboxDeleted(String accountId) {
-        WaitSetAccount wsa = mSessions.get(accountId);
-        if (wsa != null) {
-            mSessions.remove(accountId);
-            signalError(new WaitSetError(accountId, WaitSetError.Type.MAILBOX_DELETED));
+    public void mailboxDeleted(String accountId) {
+        if (!mSessions.containsKey(accountId)) {
+            return;
+        }
+        synchronized(this) {
+            WaitSetAccount wsa = mSessions.get(accountId);
+            if (wsa != null) {
+                mSessions.remove(accountId);
+                signalError(new WaitSetError(accountId, WaitSetError.Type.MAILBOX_DELETED));
+            }
         }
     }
 
@@ -253,8 +269,8 @@ public final class SomeAccountsWaitSet extends WaitSetBase implements MailboxMan
             ZimbraLog.session.warn("Caught unexpected ServiceException while destroying WaitSet: "+e, e);
         }
         cancelExistingCB();
-        HashMap<String, WaitSetAccount> toRet = mSessions;
-        mSessions = new HashMap<String, WaitSetAccount>();
+        HashMap<String, WaitSetAccount> toRet = new HashMap<String, WaitSetAccount>(mSessions);
+        mSessions.clear();
         mCurrentSignalledSessions.clear();
         mSentSignalledSessions.clear();
         mSentSignalledAccounts.clear();
@@ -286,7 +302,7 @@ public final class SomeAccountsWaitSet extends WaitSetBase implements MailboxMan
      * Called by the WaitSetSession when there is data to be signalled by this session
      * @param session
      */
-    synchronized protected void signalDataReady(WaitSetSession session) {
+    protected void signalDataReady(WaitSetSession session) {
         signalDataReady(session, null);
     }
 
@@ -294,17 +310,23 @@ public final class SomeAccountsWaitSet extends WaitSetBase implements MailboxMan
      * Called by the WaitSetSession when there is data to be signalled by this session
      * @param session
      */
-    synchronized protected void signalDataReady(WaitSetSession session, PendingModifications pms) {
+    protected void signalDataReady(WaitSetSession session, PendingModifications pms) {
         boolean trace = ZimbraLog.session.isTraceEnabled();
         if (trace) ZimbraLog.session.trace("SomeAccountsWaitSet.signalDataReady 1");
         String targetAccId = session.getTargetAccountId();
-        if (mSessions.containsKey(targetAccId)) { // ...false if waitset is shutting down...
-            if (trace) ZimbraLog.session.trace("SomeAccountsWaitSet.signalDataReady 2");
-            if (mCurrentSignalledAccounts.add(targetAccId)) {
-                mCurrentSignalledSessions.add(session);
-                if (trace) ZimbraLog.session.trace("SomeAccountsWaitSet.signalDataReady 3");
-                addMods(currentPendingModifications, targetAccId, pms);
-                trySendData();
+        if (!mSessions.containsKey(targetAccId)) { // ...waitset is shutting down...
+            return;
+        }
+        synchronized(this) {
+            if (mSessions.containsKey(targetAccId)) {
+                if (trace) ZimbraLog.session.trace("SomeAccountsWaitSet.signalDataReady 2");
+                if (mCurrentSignalledAccounts.add(targetAccId)) {
+                    mCurrentSignalledSessions.add(session);
+                    if (trace) ZimbraLog.session.trace("SomeAccountsWaitSet.signalDataReady 3");
+                    addMods(currentPendingModifications, targetAccId, pms);
+                    markSignalled(System.currentTimeMillis());
+                    trySendData();
+                }
             }
         }
         if (trace) ZimbraLog.session.trace("SomeAccountsWaitSet.signalDataReady done");
@@ -364,23 +386,13 @@ public final class SomeAccountsWaitSet extends WaitSetBase implements MailboxMan
      * Keeping this for possible future use.  Currently it is not reliable as WaitSets aren't necessarily
      * cleaned up immediately, resulting in false positives.
      */
-    public synchronized boolean isMonitoringFolder(String accountId, int folderId) {
-        WaitSetInfo info = super.handleQuery();
-        info.setCbSeqNo(Long.toString(mCbSeqNo));
-        info.setCurrentSeqNo(Long.toString(mCurrentSeqNo));
-
-        for (Map.Entry<String, WaitSetAccount> entry : mSessions.entrySet()) {
-            String acctId = entry.getKey();
-            if (!accountId.equals(acctId)) {
-                continue;
-            }
-            WaitSetAccount wsa = entry.getValue();
-            Set<Integer> folderInterests = wsa.getFolderInterests();
-            if ((folderInterests != null) && folderInterests.contains(folderId)) {
-                return true;
-            }
+    public boolean isMonitoringFolder(String accountId, int folderId) {
+        WaitSetAccount wsa = mSessions.get(accountId);
+        if (wsa == null) {
+            return false;
         }
-        return false;
+        Set<Integer> folderInterests = wsa.getFolderInterests();
+        return (folderInterests != null) && folderInterests.contains(folderId);
     }
 
     public long getCurrentSeqNo() {
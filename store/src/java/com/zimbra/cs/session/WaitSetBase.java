@@ -27,6 +27,7 @@ import com.google.common.collect.Sets;
 import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.mailbox.MailItem;
 import com.zimbra.cs.service.mail.WaitSetRequest;
+import com.zimbra.cs.stats.ZimbraPerf;
 import com.zimbra.soap.admin.type.AccountsAttrib;
 import com.zimbra.soap.admin.type.WaitSetInfo;
 import com.zimbra.soap.type.IdAndType;
@@ -41,7 +42,11 @@ public abstract class WaitSetBase implements IWaitSet {
     protected final Set<MailItem.Type> defaultInterest;
 
     protected long mLastAccessedTime = -1;
-    protected WaitSetCallback mCb = null;
+    /** volatile so that signalling threads can check for a waiting callback without taking the lock */
+    protected volatile WaitSetCallback mCb = null;
+
+    /** when the oldest signal that has not been handed to a callback yet was raised, or 0 */
+    protected long mFirstSignalTime = 0;
 
     /**
      * List of errors (right now, only mailbox deletion notifications) to be sent
@@ -195,6 +200,10 @@ public abstract class WaitSetBase implements IWaitSet {
             ZimbraLog.session.trace("WaitSetBase.trySendData 3");
             mCb.dataReady(this, toNextSeqNo(), false, mSentErrors, mSentSignalledSessions, mSentSignalledAccounts, sentPendingModifications);
             mCb = null;
+            if (mFirstSignalTime > 0) {
+                ZimbraPerf.STOPWATCH_WAITSET_NOTIFY.stop(mFirstSignalTime);
+                mFirstSignalTime = 0;
+            }
             mLastAccessedTime = System.currentTimeMillis();
         }
         ZimbraLog.session.trace("WaitSetBase.trySendData done");
@@ -224,8 +233,18 @@ public abstract class WaitSetBase implements IWaitSet {
         return info;
     }
 
+    /**
+     * Records when data that no callback has seen yet was signalled, for the notification latency stats.
+     */
+    protected synchronized void markSignalled(long signalTime) {
+        if (mFirstSignalTime == 0) {
+            mFirstSignalTime = signalTime;
+        }
+    }
+
     protected synchronized void signalError(WaitSetError err) {
         mCurrentErrors.add(err);
+        markSignalled(System.currentTimeMillis());
         trySendData();
     }
 
@@ -20,6 +20,7 @@ package com.zimbra.cs.stats;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.zimbra.common.account.Key.AccountBy;
 import com.zimbra.common.stats.RealtimeStatsCallback;
 import com.zimbra.cs.account.Provisioning;
 import com.zimbra.cs.account.accesscontrol.PermissionCache;
@@ -35,6 +36,7 @@ public class ServerStatsCallback implements RealtimeStatsCallback {
         Map<String, Object> data = new HashMap<String, Object>();
         data.put(ZimbraPerf.RTS_MBOX_CACHE_SIZE, ZimbraPerf.getMailboxCacheSize());
         data.put(ZimbraPerf.RTS_MSG_CACHE_SIZE, MessageCache.getSize());
+        data.put(ZimbraPerf.RTS_MSG_CACHE_BYTES, MessageCache.getDataSize());
         
         FileDescriptorCache fdc = BlobInputStream.getFileDescriptorCache();
         data.put(ZimbraPerf.RTS_FD_CACHE_SIZE, fdc.getSize());
@@ -47,6 +49,8 @@ public class ServerStatsCallback implements RealtimeStatsCallback {
             LdapProv ldap = (LdapProv) prov;
             data.put(ZimbraPerf.RTS_ACCOUNT_CACHE_SIZE, ldap.getAccountCacheSize());
             data.put(ZimbraPerf.RTS_ACCOUNT_CACHE_HIT_RATE, ldap.getAccountCacheHitRate());
+            data.put(ZimbraPerf.RTS_ACCOUNT_CACHE_ID_HIT_RATE, ldap.getAccountCacheHitRate(AccountBy.id));
+            data.put(ZimbraPerf.RTS_ACCOUNT_CACHE_NAME_HIT_RATE, ldap.getAccountCacheHitRate(AccountBy.name));
             data.put(ZimbraPerf.RTS_COS_CACHE_SIZE, ldap.getCosCacheSize());
             data.put(ZimbraPerf.RTS_COS_CACHE_HIT_RATE, ldap.getCosCacheHitRate());
             data.put(ZimbraPerf.RTS_DOMAIN_CACHE_SIZE, ldap.getDomainCacheSize());
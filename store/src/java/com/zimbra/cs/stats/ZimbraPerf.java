@@ -112,6 +112,9 @@ public class ZimbraPerf {
     @Description("Number of message structures cached in memory")
     public static final String RTS_MSG_CACHE_SIZE = "msg_cache_size";
 
+    @Description("Number of bytes of message data held in memory by the message cache")
+    public static final String RTS_MSG_CACHE_BYTES = "msg_cache_bytes";
+
     @Description("Number of open file descriptors that reference message content")
     public static final String RTS_FD_CACHE_SIZE = "fd_cache_size";
 
@@ -128,6 +131,12 @@ public class ZimbraPerf {
     @Description("LDAP account cache hit rate")
     public static final String RTS_ACCOUNT_CACHE_HIT_RATE = "account_cache_hit_rate";
 
+    @Description("LDAP account cache hit rate for lookups by id")
+    public static final String RTS_ACCOUNT_CACHE_ID_HIT_RATE = "account_cache_id_hit_rate";
+
+    @Description("LDAP account cache hit rate for lookups by name")
+    public static final String RTS_ACCOUNT_CACHE_NAME_HIT_RATE = "account_cache_name_hit_rate";
+
     @Description("LDAP COS cache size")
     public static final String RTS_COS_CACHE_SIZE = "cos_cache_size";
 
@@ -177,12 +186,18 @@ public class ZimbraPerf {
     public static final Counter COUNTER_LMTP_RCVD_RCPT = new Counter();
     public static final Counter COUNTER_LMTP_DLVD_MSGS = new Counter();
     public static final Counter COUNTER_LMTP_DLVD_BYTES = new Counter();
+    public static final StopWatch STOPWATCH_LMTP_STORE = new StopWatch();       // LMTP: spooling the incoming blob
+    public static final StopWatch STOPWATCH_LMTP_PREPARE = new StopWatch();     // LMTP: recipient lookup and MIME parse
+    public static final StopWatch STOPWATCH_LMTP_DELIVER = new StopWatch();     // LMTP: delivery to a single local recipient
     public static final StopWatch STOPWATCH_DB_CONN = new StopWatch();
+    public static final Counter COUNTER_DB_ITEM_FETCH = new Counter();       // items per mail_item lookup by id
     public static final StopWatch STOPWATCH_LDAP_DC = new StopWatch();
     public static final StopWatch STOPWATCH_MBOX_ADD_MSG = new StopWatch();
     public static final StopWatch STOPWATCH_MBOX_GET = new StopWatch();         // Mailbox accessor response time
+    public static final StopWatch STOPWATCH_MBOX_LOCK_WAIT = new StopWatch();   // time spent waiting on a contended mailbox lock
     public static final Counter COUNTER_MBOX_CACHE = new Counter();           // Mailbox cache hit rate
     public static final Counter COUNTER_MBOX_MSG_CACHE = new Counter();
+    public static final Counter COUNTER_MBOX_MSG_CACHE_EVICT = new Counter();
     public static final Counter COUNTER_MBOX_ITEM_CACHE = new Counter();
     public static final StopWatch STOPWATCH_SOAP = new StopWatch();
     public static final StopWatch STOPWATCH_IMAP = new StopWatch();
@@ -193,11 +208,21 @@ public class ZimbraPerf {
     public static final Counter COUNTER_CALENDAR_CACHE_HIT = new Counter();
     public static final Counter COUNTER_CALENDAR_CACHE_MEM_HIT = new Counter();
     public static final Counter COUNTER_CALENDAR_CACHE_LRU_SIZE = new Counter();
+    public static final Counter COUNTER_CALENDAR_EXPANSION_CACHE_HIT = new Counter();
+    public static final Counter COUNTER_EXTRACTION_CACHE_HIT = new Counter();
+    public static final Counter COUNTER_EXTERNAL_BLOB_CACHE_HIT = new Counter();
     public static final Counter COUNTER_IDX_BYTES_WRITTEN = new Counter();
     public static final Counter COUNTER_IDX_BYTES_READ = new Counter();
     public static final Counter COUNTER_BLOB_INPUT_STREAM_READ = new Counter();
     public static final Counter COUNTER_BLOB_INPUT_STREAM_SEEK_RATE = new Counter();
     public static final StopWatch STOPWATCH_EWS = new StopWatch();
+    public static final StopWatch STOPWATCH_REDO_FSYNC = new StopWatch();       // redo log fsync latency
+    public static final Counter COUNTER_REDO_FSYNC_BATCH = new Counter();       // redo log items made durable per fsync
+    public static final StopWatch STOPWATCH_REDO_COMMIT_WAIT = new StopWatch(); // time a synchronous redo log writer waits for fsync
+    public static final StopWatch STOPWATCH_IMAP_LOAD_FULL = new StopWatch();   // IMAP folder loaded from the database
+    public static final StopWatch STOPWATCH_IMAP_LOAD_DELTA = new StopWatch();  // IMAP folder rebuilt from a cached snapshot
+    public static final Counter COUNTER_IMAP_LOAD_DELTA_SIZE = new Counter();   // changes applied per incremental folder load
+    public static final StopWatch STOPWATCH_WAITSET_NOTIFY = new StopWatch();   // first unsent waitset signal to callback
 
     public static final ActivityTracker SOAP_TRACKER = new ActivityTracker("soap.csv");
     public static final ActivityTracker IMAP_TRACKER = new ActivityTracker("imap.csv");
@@ -206,6 +231,8 @@ public class ZimbraPerf {
     public static final ActivityTracker LDAP_TRACKER = new ActivityTracker("ldap.csv");
     public static final ActivityTracker SYNC_TRACKER = new ActivityTracker("sync.csv");
     public static final ActivityTracker SQL_TRACKER  = new ActivityTracker("sql.csv");
+    public static final ActivityTracker MBOX_LOCK_TRACKER = new ActivityTracker("mailbox_lock.csv");
+    public static final ActivityTracker EXTRACTION_TRACKER = new ActivityTracker("extract.csv");  // by content type
 
     private static int mailboxCacheSize;
     private static long mailboxCacheSizeTimestamp = 0;
@@ -219,10 +246,11 @@ public class ZimbraPerf {
             RTS_POP_CONN, RTS_POP_THREADS, RTS_POP_SSL_CONN, RTS_POP_SSL_THREADS,
             RTS_IMAP_CONN, RTS_IMAP_THREADS, RTS_IMAP_SSL_CONN, RTS_IMAP_SSL_THREADS,
             RTS_HTTP_IDLE_THREADS, RTS_HTTP_THREADS, RTS_SOAP_SESSIONS,
-            RTS_MBOX_CACHE_SIZE, RTS_MSG_CACHE_SIZE,
+            RTS_MBOX_CACHE_SIZE, RTS_MSG_CACHE_SIZE, RTS_MSG_CACHE_BYTES,
             RTS_FD_CACHE_SIZE, RTS_FD_CACHE_HIT_RATE,
             RTS_ACL_CACHE_HIT_RATE,
             RTS_ACCOUNT_CACHE_SIZE, RTS_ACCOUNT_CACHE_HIT_RATE,
+            RTS_ACCOUNT_CACHE_ID_HIT_RATE, RTS_ACCOUNT_CACHE_NAME_HIT_RATE,
             RTS_COS_CACHE_SIZE, RTS_COS_CACHE_HIT_RATE,
             RTS_DOMAIN_CACHE_SIZE, RTS_DOMAIN_CACHE_HIT_RATE,
             RTS_SERVER_CACHE_SIZE, RTS_SERVER_CACHE_HIT_RATE,
@@ -252,12 +280,30 @@ public class ZimbraPerf {
     @Description("Number of bytes of data delivered to mailboxes as a result of LMTP delivery")
     private static final String DC_LMTP_DLVD_BYTES = "lmtp_dlvd_bytes";
 
+    @Description("Average time (ms) to spool an incoming LMTP message to disk")
+    private static final String DC_LMTP_STORE_MS_AVG = "lmtp_store_ms_avg";
+
+    @Description("Average time (ms) to look up the recipients of an LMTP message and parse it")
+    private static final String DC_LMTP_PREPARE_MS_AVG = "lmtp_prepare_ms_avg";
+
+    @Description("Number of LMTP deliveries to individual local recipients")
+    private static final String DC_LMTP_DELIVER_COUNT = "lmtp_deliver_count";
+
+    @Description("Average time (ms) to deliver an LMTP message to a single local recipient")
+    private static final String DC_LMTP_DELIVER_MS_AVG = "lmtp_deliver_ms_avg";
+
     @Description("Number of times that the server got a database connection from the pool")
     private static final String DC_DB_CONN_COUNT = "db_conn_count";
 
     @Description("Average latency (ms) of getting a database connection from the pool")
     private static final String DC_DB_CONN_MS_AVG = "db_conn_ms_avg";
 
+    @Description("Number of queries that looked up mail items by ID")
+    private static final String DC_DB_ITEM_FETCH_COUNT = "db_item_fetch_count";
+
+    @Description("Average number of mail items looked up per query")
+    private static final String DC_DB_ITEM_FETCH_AVG = "db_item_fetch_avg";
+
     @Description("Number of times that the server got an LDAP directory context")
     private static final String DC_LDAP_DC_COUNT = "ldap_dc_count";
 
@@ -276,12 +322,21 @@ public class ZimbraPerf {
     @Description("Average latency (ms) of getting a mailbox from the cache")
     private static final String DC_MBOX_GET_MS_AVG = "mbox_get_ms_avg";
 
+    @Description("Number of times that a mailbox lock was contended and the caller had to wait")
+    private static final String DC_MBOX_LOCK_WAIT_COUNT = "mbox_lock_wait_count";
+
+    @Description("Average time (ms) spent waiting for a contended mailbox lock")
+    private static final String DC_MBOX_LOCK_WAIT_MS_AVG = "mbox_lock_wait_ms_avg";
+
     @Description("Mailbox cache hit rate")
     private static final String DC_MBOX_CACHE = "mbox_cache";
 
     @Description("Message cache hit rate")
     private static final String DC_MBOX_MSG_CACHE = "mbox_msg_cache";
 
+    @Description("Number of messages evicted from the message cache to make room for others")
+    private static final String DC_MBOX_MSG_CACHE_EVICT = "mbox_msg_cache_evict";
+
     @Description("Item cache hit rate")
     private static final String DC_MBOX_ITEM_CACHE = "mbox_item_cache";
 
@@ -330,6 +385,36 @@ public class ZimbraPerf {
     @Description("Average of idx_bytes_read")
     private static final String DC_IDX_BYTES_READ_AVG = "idx_bytes_read_avg";
 
+    @Description("Number of redo log fsyncs")
+    private static final String DC_REDO_FSYNC_COUNT = "redo_fsync_count";
+
+    @Description("Average latency (ms) of a redo log fsync")
+    private static final String DC_REDO_FSYNC_MS_AVG = "redo_fsync_ms_avg";
+
+    @Description("Average number of redo log items made durable by a single fsync")
+    private static final String DC_REDO_FSYNC_BATCH_AVG = "redo_fsync_batch_avg";
+
+    @Description("Number of synchronous redo log writes")
+    private static final String DC_REDO_COMMIT_COUNT = "redo_commit_count";
+
+    @Description("Average time (ms) a synchronous redo log write waits for its data to be fsynced")
+    private static final String DC_REDO_COMMIT_WAIT_MS_AVG = "redo_commit_wait_ms_avg";
+
+    @Description("Number of IMAP folders whose contents were loaded in full from the database")
+    private static final String DC_IMAP_LOAD_FULL_COUNT = "imap_load_full_count";
+
+    @Description("Average time (ms) to load the contents of an IMAP folder from the database")
+    private static final String DC_IMAP_LOAD_FULL_MS_AVG = "imap_load_full_ms_avg";
+
+    @Description("Number of IMAP folders rebuilt by applying changes to a cached snapshot")
+    private static final String DC_IMAP_LOAD_DELTA_COUNT = "imap_load_delta_count";
+
+    @Description("Average time (ms) to rebuild an IMAP folder from a cached snapshot")
+    private static final String DC_IMAP_LOAD_DELTA_MS_AVG = "imap_load_delta_ms_avg";
+
+    @Description("Average number of changed items applied to a cached IMAP folder snapshot")
+    private static final String DC_IMAP_LOAD_DELTA_SIZE_AVG = "imap_load_delta_size_avg";
+
     @Description("Hit rate of calendar summary cache, counting cache hit from both memory and file")
     private static final String DC_CALCACHE_HIT = "calcache_hit";
 
@@ -339,6 +424,30 @@ public class ZimbraPerf {
     @Description("Number of calendars (folders) in the calendar summary cache LRU in Java heap")
     private static final String DC_CALCACHE_LRU_SIZE = "calcache_lru_size";
 
+    @Description("Hit rate of the calendar item recurrence expansion cache")
+    private static final String DC_CALCACHE_EXPAND_HIT = "calcache_expand_hit";
+
+    @Description("Number of calendar item recurrence expansions requested")
+    private static final String DC_CALCACHE_EXPAND_COUNT = "calcache_expand_count";
+
+    @Description("Hit rate of the extracted attachment text cache")
+    private static final String DC_EXTRACT_CACHE_HIT = "extract_cache_hit";
+
+    @Description("Number of attachment text extractions requested")
+    private static final String DC_EXTRACT_COUNT = "extract_count";
+
+    @Description("Hit rate of the local cache of blobs from an external store")
+    private static final String DC_EXTBLOB_CACHE_HIT = "extblob_cache_hit";
+
+    @Description("Number of blob reads from an external store")
+    private static final String DC_EXTBLOB_CACHE_COUNT = "extblob_cache_count";
+
+    @Description("Number of waitset callbacks notified of changes")
+    private static final String DC_WAITSET_NOTIFY_COUNT = "waitset_notify_count";
+
+    @Description("Average time from a change being signalled to a waitset until a callback is notified of it")
+    private static final String DC_WAITSET_NOTIFY_MS_AVG = "waitset_notify_ms_avg";
+
     private static CopyOnWriteArrayList<Accumulator> sAccumulators = null;
 
     private static final long CSV_DUMP_FREQUENCY = Constants.MILLIS_PER_MINUTE;
@@ -469,16 +578,25 @@ public class ZimbraPerf {
                             new DeltaCalculator(COUNTER_LMTP_RCVD_RCPT).setTotalName(DC_LMTP_RCVD_RCPT),
                             new DeltaCalculator(COUNTER_LMTP_DLVD_MSGS).setTotalName(DC_LMTP_DLVD_MSGS),
                             new DeltaCalculator(COUNTER_LMTP_DLVD_BYTES).setTotalName(DC_LMTP_DLVD_BYTES),
+                            new DeltaCalculator(STOPWATCH_LMTP_STORE).setAverageName(DC_LMTP_STORE_MS_AVG),
+                            new DeltaCalculator(STOPWATCH_LMTP_PREPARE).setAverageName(DC_LMTP_PREPARE_MS_AVG),
+                            new DeltaCalculator(STOPWATCH_LMTP_DELIVER).setCountName(DC_LMTP_DELIVER_COUNT)
+                                    .setAverageName(DC_LMTP_DELIVER_MS_AVG),
                             new DeltaCalculator(STOPWATCH_DB_CONN).setCountName(DC_DB_CONN_COUNT)
                                     .setAverageName(DC_DB_CONN_MS_AVG),
+                            new DeltaCalculator(COUNTER_DB_ITEM_FETCH).setCountName(DC_DB_ITEM_FETCH_COUNT)
+                                    .setAverageName(DC_DB_ITEM_FETCH_AVG),
                             new DeltaCalculator(STOPWATCH_LDAP_DC).setCountName(DC_LDAP_DC_COUNT)
                                     .setAverageName(DC_LDAP_DC_MS_AVG),
                             new DeltaCalculator(STOPWATCH_MBOX_ADD_MSG).setCountName(DC_MBOX_ADD_MSG_COUNT)
                                     .setAverageName(DC_MBOX_ADD_MSG_MS_AVG),
                             new DeltaCalculator(STOPWATCH_MBOX_GET).setCountName(DC_MBOX_GET_COUNT)
                                     .setAverageName(DC_MBOX_GET_MS_AVG),
+                            new DeltaCalculator(STOPWATCH_MBOX_LOCK_WAIT).setCountName(DC_MBOX_LOCK_WAIT_COUNT)
+                                    .setAverageName(DC_MBOX_LOCK_WAIT_MS_AVG),
                             new DeltaCalculator(COUNTER_MBOX_CACHE).setAverageName(DC_MBOX_CACHE),
                             new DeltaCalculator(COUNTER_MBOX_MSG_CACHE).setAverageName(DC_MBOX_MSG_CACHE),
+                            new DeltaCalculator(COUNTER_MBOX_MSG_CACHE_EVICT).setCountName(DC_MBOX_MSG_CACHE_EVICT),
                             new DeltaCalculator(COUNTER_MBOX_ITEM_CACHE).setAverageName(DC_MBOX_ITEM_CACHE),
                             new DeltaCalculator(STOPWATCH_SOAP).setCountName(DC_SOAP_COUNT)
                                     .setAverageName(DC_SOAP_MS_AVG),
@@ -495,6 +613,12 @@ public class ZimbraPerf {
                                     .setAverageName(DC_CALCACHE_MEM_HIT),
                             new DeltaCalculator(COUNTER_CALENDAR_CACHE_LRU_SIZE)
                                     .setAverageName(DC_CALCACHE_LRU_SIZE),
+                            new DeltaCalculator(COUNTER_CALENDAR_EXPANSION_CACHE_HIT)
+                                    .setCountName(DC_CALCACHE_EXPAND_COUNT).setAverageName(DC_CALCACHE_EXPAND_HIT),
+                            new DeltaCalculator(COUNTER_EXTRACTION_CACHE_HIT)
+                                    .setCountName(DC_EXTRACT_COUNT).setAverageName(DC_EXTRACT_CACHE_HIT),
+                            new DeltaCalculator(COUNTER_EXTERNAL_BLOB_CACHE_HIT)
+                                    .setCountName(DC_EXTBLOB_CACHE_COUNT).setAverageName(DC_EXTBLOB_CACHE_HIT),
                             new DeltaCalculator(COUNTER_IDX_BYTES_WRITTEN)
                                     .setTotalName(DC_IDX_BYTES_WRITTEN)
                                     .setAverageName(DC_IDX_BYTES_WRITTTEN_AVG),
@@ -503,6 +627,18 @@ public class ZimbraPerf {
                             new DeltaCalculator(COUNTER_BLOB_INPUT_STREAM_READ).setTotalName(DC_BIS_READ),
                             new DeltaCalculator(COUNTER_BLOB_INPUT_STREAM_SEEK_RATE)
                                     .setAverageName(DC_BIS_SEEK_RATE),
+                            new DeltaCalculator(STOPWATCH_REDO_FSYNC).setCountName(DC_REDO_FSYNC_COUNT)
+                                    .setAverageName(DC_REDO_FSYNC_MS_AVG),
+                            new DeltaCalculator(COUNTER_REDO_FSYNC_BATCH).setAverageName(DC_REDO_FSYNC_BATCH_AVG),
+                            new DeltaCalculator(STOPWATCH_REDO_COMMIT_WAIT).setCountName(DC_REDO_COMMIT_COUNT)
+                                    .setAverageName(DC_REDO_COMMIT_WAIT_MS_AVG),
+                            new DeltaCalculator(STOPWATCH_IMAP_LOAD_FULL).setCountName(DC_IMAP_LOAD_FULL_COUNT)
+                                    .setAverageName(DC_IMAP_LOAD_FULL_MS_AVG),
+                            new DeltaCalculator(STOPWATCH_IMAP_LOAD_DELTA).setCountName(DC_IMAP_LOAD_DELTA_COUNT)
+                                    .setAverageName(DC_IMAP_LOAD_DELTA_MS_AVG),
+                            new DeltaCalculator(COUNTER_IMAP_LOAD_DELTA_SIZE).setAverageName(DC_IMAP_LOAD_DELTA_SIZE_AVG),
+                            new DeltaCalculator(STOPWATCH_WAITSET_NOTIFY).setCountName(DC_WAITSET_NOTIFY_COUNT)
+                                    .setAverageName(DC_WAITSET_NOTIFY_MS_AVG),
                             realtimeStats
                     }
                 );
@@ -513,6 +649,11 @@ public class ZimbraPerf {
                     new Accumulator[] {
                             new DeltaCalculator(STOPWATCH_IMAP)
                                     .setCountName(DC_IMAP_COUNT).setAverageName(DC_IMAP_MS_AVG),
+                            new DeltaCalculator(STOPWATCH_IMAP_LOAD_FULL).setCountName(DC_IMAP_LOAD_FULL_COUNT)
+                                    .setAverageName(DC_IMAP_LOAD_FULL_MS_AVG),
+                            new DeltaCalculator(STOPWATCH_IMAP_LOAD_DELTA).setCountName(DC_IMAP_LOAD_DELTA_COUNT)
+                                    .setAverageName(DC_IMAP_LOAD_DELTA_MS_AVG),
+                            new DeltaCalculator(COUNTER_IMAP_LOAD_DELTA_SIZE).setAverageName(DC_IMAP_LOAD_DELTA_SIZE_AVG),
                             realtimeStats
                     }
                 );
@@ -562,6 +703,8 @@ public class ZimbraPerf {
         StatsDumper.schedule(LDAP_TRACKER, CSV_DUMP_FREQUENCY);
         StatsDumper.schedule(SYNC_TRACKER, CSV_DUMP_FREQUENCY);
         StatsDumper.schedule(SQL_TRACKER, CSV_DUMP_FREQUENCY);
+        StatsDumper.schedule(MBOX_LOCK_TRACKER, CSV_DUMP_FREQUENCY);
+        StatsDumper.schedule(EXTRACTION_TRACKER, CSV_DUMP_FREQUENCY);
         ThreadStats threadStats = new ThreadStats("threads.csv");
         StatsDumper.schedule(threadStats, CSV_DUMP_FREQUENCY);
     }
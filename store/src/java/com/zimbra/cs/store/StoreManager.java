@@ -18,6 +18,7 @@ package com.zimbra.cs.store;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 
 import com.zimbra.common.localconfig.LC;
 import com.zimbra.common.service.ServiceException;
@@ -382,6 +383,16 @@ public abstract class StoreManager {
         return mblob;
     }
 
+    /**
+     * Hints that the content of the given messages is likely to be read soon, e.g. because they were just returned
+     * by a search or their folder was SELECTed over IMAP.  A store with a local cache in front of remote storage may
+     * start fetching their blobs in the background.  The default implementation does nothing.
+     * @param mbox
+     * @param itemIds ids of messages in <code>mbox</code>
+     */
+    public void prefetch(Mailbox mbox, Collection<Integer> itemIds) {
+    }
+
     /**
      * Return an InputStream of blob content.  Caller should close the
      * stream when done.
@@ -24,15 +24,24 @@ import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.zimbra.common.localconfig.LC;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.ByteUtil;
 import com.zimbra.common.util.FileCache;
 import com.zimbra.common.util.FileUtil;
 import com.zimbra.common.util.ZimbraLog;
+import com.zimbra.cs.mailbox.MailItem;
 import com.zimbra.cs.mailbox.Mailbox;
 import com.zimbra.cs.mailbox.MessageCache;
 import com.zimbra.cs.store.Blob;
@@ -43,6 +52,7 @@ import com.zimbra.cs.store.IncomingDirectory;
 import com.zimbra.cs.store.MailboxBlob;
 import com.zimbra.cs.store.StagedBlob;
 import com.zimbra.cs.store.StoreManager;
+import com.zimbra.cs.stats.ZimbraPerf;
 
 /**
  * Abstract base class for external store integration.
@@ -52,6 +62,8 @@ public abstract class ExternalStoreManager extends StoreManager implements Exter
 
     private final IncomingDirectory incoming = new IncomingDirectory(LC.zimbra_tmp_directory.value() + File.separator + "incoming");
     protected FileCache<String> localCache;
+    private ThreadPoolExecutor prefetcher;
+    private final Set<String> prefetching = ConcurrentHashMap.newKeySet();
 
     @Override
     public void startup() throws IOException, ServiceException {
@@ -80,6 +92,12 @@ public abstract class ExternalStoreManager extends StoreManager implements Exter
             .removeCallback(new MessageCacheChecker()).build();
         BlobInputStream.setFileDescriptorCache(new FileDescriptorCache(ufCache).loadSettings());
 
+        int prefetchThreads = LC.external_store_prefetch_threads.intValue();
+        if (prefetchThreads > 0) {
+            prefetcher = new ThreadPoolExecutor(prefetchThreads, prefetchThreads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(Math.max(LC.external_store_prefetch_queue_size.intValue(), 1)),
+                    new ThreadFactoryBuilder().setNameFormat("BlobPrefetch-%d").setDaemon(true).build());
+        }
     }
 
     private class MessageCacheChecker implements FileCache.RemoveCallback {
@@ -181,6 +199,7 @@ public abstract class ExternalStoreManager extends StoreManager implements Exter
         FileCache.Item cached = null;
         if (fromCache) {
             cached = localCache.get(locator);
+            ZimbraPerf.COUNTER_EXTERNAL_BLOB_CACHE_HIT.increment(cached != null ? 1 : 0);
             if (cached != null) {
                 ExternalBlob blob = new ExternalBlob(cached);
                 blob.setLocator(locator);
@@ -205,6 +224,51 @@ public abstract class ExternalStoreManager extends StoreManager implements Exter
         return getLocalBlob(mbox, locator, true);
     }
 
+    /**
+     * Downloads the blobs of the given messages into the local cache on the prefetch pool.  Prefetching is a hint:
+     * when the pool's queue is full the request is dropped.
+     */
+    @Override
+    public void prefetch(final Mailbox mbox, Collection<Integer> itemIds) {
+        if (prefetcher == null || itemIds.isEmpty()) {
+            return;
+        }
+        final List<Integer> ids = new ArrayList<Integer>(itemIds);
+        try {
+            prefetcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int id : ids) {
+                        prefetch(mbox, id);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            ZimbraLog.store.debug("prefetch queue full; dropping prefetch of %d blobs", ids.size());
+        }
+    }
+
+    private void prefetch(Mailbox mbox, int itemId) {
+        MailItem item;
+        try {
+            item = mbox.getItemById(null, itemId, MailItem.Type.MESSAGE);
+        } catch (ServiceException e) {
+            ZimbraLog.store.debug("unable to prefetch blob for item %d", itemId, e);
+            return;
+        }
+        String locator = item.getLocator();
+        if (item.getDigest() == null || locator == null || localCache.contains(locator) || !prefetching.add(locator)) {
+            return;
+        }
+        try {
+            getLocalBlob(mbox, locator, false);
+        } catch (IOException e) {
+            ZimbraLog.store.debug("unable to prefetch blob %s", locator, e);
+        } finally {
+            prefetching.remove(locator);
+        }
+    }
+
     @Override
     public MailboxBlob getMailboxBlob(Mailbox mbox, int itemId, int revision, String locator, boolean validate) throws ServiceException {
         ExternalMailboxBlob mblob = new ExternalMailboxBlob(mbox, itemId, revision, locator);
@@ -232,6 +296,10 @@ public abstract class ExternalStoreManager extends StoreManager implements Exter
     @Override
     public void shutdown() {
         IncomingDirectory.stopSweeper();
+        if (prefetcher != null) {
+            prefetcher.shutdownNow();
+            prefetcher = null;
+        }
     }
 
     @Override
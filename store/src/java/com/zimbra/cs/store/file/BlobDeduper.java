@@ -76,10 +76,10 @@ public class BlobDeduper {
         } finally {
             DbPool.quietClose(conn);
         }
-        // dedupe the paths
-        if (blobs.size() > 1) {
+        // dedupe the paths; with a digest directory even a single blob has to be linked to the stored copy
+        if (blobs.size() > 1 || (blobs.size() == 1 && DigestDirectory.isEnabled())) {
             ZimbraLog.misc.debug("Deduping " + blobs.size() + " files for digest " + digest + " volume " + volume.getId());
-            return deDupe(blobs);
+            return deDupe(blobs, digest, volume);
         } else if (blobs.size() == 1) { 
             // mark the blob as processed if there is only one blob for given digest.
             markBlobAsProcessed(blobs.get(0));
@@ -87,7 +87,8 @@ public class BlobDeduper {
         return new Pair<Integer,Long>(0, Long.valueOf(0));
     }
 
-    private Pair<Integer, Long> deDupe(List<BlobReference> blobs) throws ServiceException {
+    private Pair<Integer, Long> deDupe(List<BlobReference> blobs, String digest, Volume volume)
+    throws ServiceException {
         int linksCreated = 0;
         long sizeSaved = 0;
         long srcInodeNum = 0;
@@ -144,6 +145,21 @@ public class BlobDeduper {
         if (srcInodeNum == 0) {
             return new Pair<Integer,Long>(0, Long.valueOf(0));
         }
+        if (DigestDirectory.isEnabled()) {
+            // converge on the content-addressed copy, creating it from the source if there is none yet
+            String storedPath = DigestDirectory.adopt(volume, digest, srcPath);
+            if (storedPath != null) {
+                try {
+                    IO.FileInfo fileInfo = IO.fileInfo(storedPath);
+                    if (fileInfo != null) {
+                        srcInodeNum = fileInfo.getInodeNum();
+                        srcPath = storedPath;
+                    }
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
         // First create a hard link for the source path, so that the file
         // doesn't get deleted in the middle.
         String holdPath = srcPath + "_HOLD";
@@ -0,0 +1,205 @@
+/*
+ * ***** BEGIN LICENSE BLOCK *****
+ * Zimbra Collaboration Suite Server
+ * Copyright (C) 2016 Synacor, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation,
+ * version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>.
+ * ***** END LICENSE BLOCK *****
+ */
+package com.zimbra.cs.store.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TimerTask;
+
+import com.zimbra.common.localconfig.LC;
+import com.zimbra.common.util.Constants;
+import com.zimbra.common.util.FileUtil;
+import com.zimbra.common.util.ZimbraLog;
+import com.zimbra.cs.util.Zimbra;
+import com.zimbra.cs.volume.Volume;
+import com.zimbra.cs.volume.VolumeManager;
+import com.zimbra.znative.IO;
+import com.zimbra.znative.Util;
+
+/**
+ * Content-addressed copies of the blobs on a local volume, at
+ * <tt>&lt;volume root&gt;/digest/&lt;d0d1&gt;/&lt;d2d3&gt;/&lt;digest&gt;.msg</tt>.
+ * <p>
+ * When enabled, {@link FileBlobStore} stages every blob as a hard link to the stored copy of its content, so a blob
+ * that is delivered again (mailing list traffic, the same attachment forwarded around) is linked instead of written
+ * to the mailbox directories once more.  Mailbox blob paths stay where {@link FileBlobStore#getBlobPath} says; they
+ * are just further links to the same inode.  The link count of the stored copy is its reference count: a stored copy
+ * that nothing links to anymore is removed by the sweeper.
+ * <p>
+ * Existing blobs are moved into the directory by {@link BlobDeduper}.
+ */
+final class DigestDirectory {
+
+    static final String DIR_NAME = "digest";
+
+    private static final boolean ENABLED = LC.zimbra_store_content_addressed.booleanValue();
+
+    private static TimerTask sSweeper;
+
+    private DigestDirectory() {
+    }
+
+    /**
+     * Content addressing needs real hard links, so it is off without the native library.
+     */
+    static boolean isEnabled() {
+        return ENABLED && Util.haveNativeCode();
+    }
+
+    static File getFile(Volume volume, String digest) {
+        StringBuilder sb = new StringBuilder(volume.getRootPath().length() + digest.length() + 20);
+        sb.append(volume.getRootPath()).append(File.separator).append(DIR_NAME).append(File.separator);
+        sb.append(digest, 0, 2).append(File.separator).append(digest, 2, 4).append(File.separator);
+        sb.append(digest).append(".msg");
+        return new File(sb.toString());
+    }
+
+    /**
+     * Creates <tt>dest</tt> as a hard link to the stored copy of the blob's content.  If the content is not stored
+     * yet, the blob becomes the stored copy.  The blob itself is left alone.
+     *
+     * @return true if the content was already stored
+     */
+    static boolean link(VolumeBlob blob, Volume volume, File dest) throws IOException {
+        File stored = getFile(volume, blob.getDigest());
+        if (stored.exists()) {
+            try {
+                IO.link(stored.getPath(), dest.getPath());
+                ZimbraLog.store.debug("Deduped %s against %s.", blob.getPath(), stored.getPath());
+                return true;
+            } catch (IOException e) {
+                // the sweeper removed a stored copy nothing linked to since exists(); store this blob instead
+                ZimbraLog.store.debug("unable to link %s to %s; storing %s instead", dest.getPath(), stored.getPath(),
+                        blob.getPath(), e);
+            }
+        }
+        FileUtil.ensureDirExists(stored.getParentFile());
+        try {
+            IO.link(blob.getPath(), stored.getPath());
+        } catch (IOException e) {
+            // an identical blob may have been stored concurrently
+            if (!stored.exists()) {
+                throw e;
+            }
+        }
+        // the blob has the same content and, unlike a stored copy, cannot be swept from under us
+        IO.link(blob.getPath(), dest.getPath());
+        return false;
+    }
+
+    /**
+     * Makes the stored copy of the digest an existing blob file, unless the digest is already stored.
+     *
+     * @return the path of the stored copy, or null if it could not be created
+     */
+    static String adopt(Volume volume, String digest, String path) {
+        File stored = getFile(volume, digest);
+        if (stored.exists()) {
+            return stored.getPath();
+        }
+        try {
+            FileUtil.ensureDirExists(stored.getParentFile());
+            IO.link(path, stored.getPath());
+        } catch (IOException e) {
+            if (!stored.exists()) {
+                ZimbraLog.store.warn("unable to store %s as %s", path, stored.getPath(), e);
+                return null;
+            }
+        }
+        return stored.getPath();
+    }
+
+    /**
+     * Removes stored copies that no blob links to anymore.  Copies younger than <tt>maxAge</tt> are left alone,
+     * so that content that has just been stored is not swept before it is linked into a mailbox.
+     *
+     * @return number of stored copies removed
+     */
+    static int sweep(Volume volume, long maxAge) {
+        File root = new File(volume.getRootPath(), DIR_NAME);
+        File[] level1 = root.listFiles();
+        if (level1 == null) {
+            return 0;
+        }
+        int numDeleted = 0;
+        long cutoff = System.currentTimeMillis() - maxAge;
+        for (File dir1 : level1) {
+            File[] level2 = dir1.listFiles();
+            if (level2 == null) {
+                continue;
+            }
+            for (File dir2 : level2) {
+                File[] files = dir2.listFiles();
+                if (files == null) {
+                    continue;
+                }
+                for (File file : files) {
+                    long lastMod = file.lastModified();
+                    if (lastMod <= 0L || lastMod > cutoff) {
+                        continue;
+                    }
+                    try {
+                        if (IO.linkCount(file.getPath()) == 1 && file.delete()) {
+                            numDeleted++;
+                        }
+                    } catch (IOException e) {
+                        // deleted by someone else since listFiles()
+                    }
+                }
+            }
+        }
+        return numDeleted;
+    }
+
+    static synchronized void startSweeper() {
+        if (sSweeper != null || !isEnabled()) {
+            return;
+        }
+        final long maxAge = LC.zimbra_store_sweeper_max_age.intValue() * Constants.MILLIS_PER_MINUTE;
+        long interval = LC.zimbra_store_content_addressed_sweep_interval.intValue() * Constants.MILLIS_PER_MINUTE;
+        sSweeper = new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    for (Volume volume : VolumeManager.getInstance().getAllVolumes()) {
+                        switch (volume.getType()) {
+                            case Volume.TYPE_MESSAGE:
+                            case Volume.TYPE_MESSAGE_SECONDARY:
+                                break;
+                            default:
+                                continue;
+                        }
+                        long start = System.currentTimeMillis();
+                        int numDeleted = sweep(volume, maxAge);
+                        ZimbraLog.store.info("Digest directory sweep of volume %s deleted %d files in %dms",
+                                volume.getName(), numDeleted, System.currentTimeMillis() - start);
+                    }
+                } catch (RuntimeException e) {
+                    ZimbraLog.store.warn("digest directory sweep failed", e);
+                }
+            }
+        };
+        Zimbra.sTimer.schedule(sSweeper, interval, interval);
+    }
+
+    static synchronized void stopSweeper() {
+        if (sSweeper != null) {
+            sSweeper.cancel();
+            sSweeper = null;
+        }
+    }
+}
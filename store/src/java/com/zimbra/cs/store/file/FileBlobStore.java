@@ -57,11 +57,14 @@ public final class FileBlobStore extends StoreManager {
         FileCache<String> ufCache = FileCache.Builder.createWithStringKey(ufCacheDir, false)
             .minLifetime(LC.uncompressed_cache_min_lifetime.longValue()).build();
         BlobInputStream.setFileDescriptorCache(new FileDescriptorCache(ufCache).loadSettings());
+
+        DigestDirectory.startSweeper();
     }
 
     @Override
     public void shutdown() {
         IncomingDirectory.stopSweeper();
+        DigestDirectory.stopSweeper();
         BlobInputStream.getFileDescriptorCache().shutdown();
     }
 
@@ -83,13 +86,17 @@ public final class FileBlobStore extends StoreManager {
 
     private Blob getUniqueIncomingBlob() throws IOException, ServiceException {
         Volume volume = MANAGER.getCurrentMessageVolume();
+        return new VolumeBlob(getNewIncomingFile(volume), volume.getId());
+    }
+
+    private static File getNewIncomingFile(Volume volume) throws IOException, ServiceException {
         IncomingDirectory incdir = volume.getIncomingDirectory();
         if (incdir == null) {
             throw ServiceException.FAILURE("storing blob to volume without incoming directory: " + volume.getName(), null);
         }
         File f = incdir.getNewIncomingFile();
         ensureParentDirExists(f);
-        return new VolumeBlob(f, volume.getId());
+        return f;
     }
 
     @Override
@@ -113,15 +120,38 @@ public final class FileBlobStore extends StoreManager {
     throws IOException, ServiceException {
         // mailbox store is on the same volume as incoming directory, so just storeIncoming() and wrap it
         Blob blob = storeIncoming(in);
-        return new VolumeStagedBlob(mbox, (VolumeBlob) blob).markStagedDirectly();
+        if (!DigestDirectory.isEnabled()) {
+            return new VolumeStagedBlob(mbox, (VolumeBlob) blob).markStagedDirectly();
+        }
+        try {
+            return stageLinked((VolumeBlob) blob, mbox);
+        } finally {
+            quietDelete(blob);
+        }
     }
 
     @Override
-    public VolumeStagedBlob stage(Blob blob, Mailbox mbox) throws IOException {
+    public VolumeStagedBlob stage(Blob blob, Mailbox mbox) throws IOException, ServiceException {
+        if (DigestDirectory.isEnabled()) {
+            return stageLinked((VolumeBlob) blob, mbox);
+        }
         // mailbox store is on the same volume as incoming directory, so no need to stage the blob
         return new VolumeStagedBlob(mbox, (VolumeBlob) blob);
     }
 
+    /**
+     * Stages a private hard link to the content-addressed copy of the blob, so that content that is already on the
+     * volume is not written to it again.  The caller's blob is left alone.
+     */
+    private VolumeStagedBlob stageLinked(VolumeBlob blob, Mailbox mbox) throws IOException, ServiceException {
+        Volume volume = MANAGER.getVolume(blob.getVolumeId());
+        File f = getNewIncomingFile(volume);
+        DigestDirectory.link(blob, volume, f);
+        VolumeBlob linked = (VolumeBlob) new VolumeBlob(f, volume.getId())
+            .setDigest(blob.getDigest()).setRawSize(blob.getRawSize());
+        return new VolumeStagedBlob(mbox, linked).markStagedDirectly();
+    }
+
     @Override
     public VolumeMailboxBlob copy(MailboxBlob src, Mailbox destMbox, int destItemId, int destRevision)
     throws IOException, ServiceException {
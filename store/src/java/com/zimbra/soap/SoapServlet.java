@@ -17,6 +17,7 @@
 
 package com.zimbra.soap;
 
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -377,9 +378,11 @@ public class SoapServlet extends ZimbraServlet {
             out.flush();
         } else {
             // serialize the envelope to a byte array and send the response with Content-Length header.
-            byte[] soapBytes = envelope.toUTF8();
-            resp.setContentLength(soapBytes.length);
-            resp.getOutputStream().write(soapBytes);
+            // Encode straight to UTF-8 bytes; going through toString() would hold the response as chars too.
+            ByteArrayOutputStream soapBytes = new ByteArrayOutputStream();
+            envelope.outputUTF8(soapBytes);
+            resp.setContentLength(soapBytes.size());
+            soapBytes.writeTo(resp.getOutputStream());
             resp.getOutputStream().flush();
         }
         envelope.destroy();